@@ -0,0 +1,30 @@
+/* =================================================================================
+ *
+ * DenseAlert: Incremental Dense-Block Detection in Tensor Streams
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: Oct 24, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package densealert;
+
+/**
+ * Receiver of the changes in the block maintained by DenseStream or DenseAlert (see setAlertSink)
+ *
+ * @author kijungs
+ */
+public interface AlertSink {
+
+    /**
+     * called on the thread updating the engine whenever the block changes, and thus should return without waiting (see AlertWriter)
+     * @param alert
+     */
+    void accept(BlockAlert alert);
+}
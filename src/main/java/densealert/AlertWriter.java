@@ -0,0 +1,325 @@
+/* =================================================================================
+ *
+ * DenseAlert: Incremental Dense-Block Detection in Tensor Streams
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: Oct 24, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package densealert;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AlertSink writing alerts to a file or a stream on a background thread, in batches
+ *
+ * Alerts are queued without waiting, and a single writer thread writes all the alerts queued at a time before flushing the output once.
+ * When the given number of alerts are already queued, the overflow policy decides whether to drop alerts or to keep them in memory.
+ * ndjson format: one JSON object per line, {"timestamp":T,"density":D,"reset":R,"entered":{"0":[ids],...},"left":{"0":[ids],...}},
+ *   where D is null if the density is not finite (JSON has no NaN or infinity)
+ * binary format: one record per alert, timestamp (8-byte long), density (8-byte double), reset (1 byte), N (4-byte int),
+ *   and for each mode the number of entered ids followed by the ids and the number of left ids followed by the ids (4-byte ints), in big-endian order
+ *
+ * @author kijungs
+ */
+public class AlertWriter implements AlertSink, Closeable {
+
+    public static final String NDJSON = "ndjson";
+    public static final String BINARY = "binary";
+
+    /**
+     * what to do with an alert arriving when the queue is full
+     */
+    public enum OverflowPolicy {
+        DROP_NEWEST, // drop the arriving alert
+        DROP_OLDEST, // drop the oldest queued alert instead
+        SPILL // keep the arriving alert, growing the queue beyond its capacity
+    }
+
+    // maximum number of alerts written before the output is flushed
+    private static final int MAX_BATCH_SIZE = 1024;
+
+    // marks the end of the alerts for the writer thread
+    private static final BlockAlert END = new BlockAlert(0, 0, false, null, null);
+
+    private final OverflowPolicy policy;
+    private final OutputStream output;
+    private final DataOutputStream binaryOutput;
+    private final Writer textOutput;
+    private final ArrayBlockingQueue<BlockAlert> queue;
+
+    // alerts arriving while the queue is full, or while earlier ones are here, by the SPILL policy (written after the queue is empty)
+    private final LinkedBlockingQueue<BlockAlert> spill = new LinkedBlockingQueue<BlockAlert>();
+    private final Thread writerThread;
+    private volatile boolean isClosed = false;
+    private volatile IOException error = null;
+
+    private final AtomicLong droppedNum = new AtomicLong(0);
+    private final AtomicLong spilledNum = new AtomicLong(0);
+    private volatile long writtenNum = 0;
+
+    /**
+     * @param path file to write alerts to (overwritten)
+     * @param format NDJSON or BINARY
+     * @param capacity number of alerts queued before the overflow policy is applied
+     * @param policy
+     * @throws IOException
+     */
+    public AlertWriter(String path, String format, int capacity, OverflowPolicy policy) throws IOException {
+        this(new FileOutputStream(path), format, capacity, policy);
+    }
+
+    /**
+     * @param output stream to write alerts to, closed with the writer
+     * @param format NDJSON or BINARY
+     * @param capacity number of alerts queued before the overflow policy is applied
+     * @param policy
+     */
+    public AlertWriter(OutputStream output, String format, int capacity, OverflowPolicy policy) {
+        if(!NDJSON.equals(format) && !BINARY.equals(format)) {
+            throw new IllegalArgumentException("unknown format: " + format);
+        }
+        if(capacity < 1) {
+            throw new IllegalArgumentException("capacity should be positive: " + capacity);
+        }
+        this.queue = new ArrayBlockingQueue<BlockAlert>(capacity);
+        this.policy = policy;
+        this.output = new BufferedOutputStream(output, 1 << 16);
+        this.binaryOutput = BINARY.equals(format) ? new DataOutputStream(this.output) : null;
+        this.textOutput = NDJSON.equals(format) ? new OutputStreamWriter(this.output, StandardCharsets.UTF_8) : null;
+
+        writerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                write();
+            }
+        }, "densealert-alert-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * queue an alert to be written, without waiting (from a single thread)
+     * @param alert
+     */
+    @Override
+    public void accept(BlockAlert alert) {
+        if(isClosed) {
+            throw new IllegalStateException("already closed");
+        }
+        switch(policy) {
+            case DROP_NEWEST:
+                if(!queue.offer(alert)) {
+                    droppedNum.incrementAndGet();
+                }
+                break;
+            case DROP_OLDEST:
+                while(!queue.offer(alert)) {
+                    if(queue.poll() != null) {
+                        droppedNum.incrementAndGet();
+                    }
+                }
+                break;
+            default:
+                if(!spill.isEmpty() || !queue.offer(alert)) { // after the spilled alerts, to keep the order
+                    spill.add(alert);
+                    spilledNum.incrementAndGet();
+                }
+        }
+    }
+
+    /**
+     * number of alerts written to the output
+     * @return
+     */
+    public long getWrittenNum() {
+        return writtenNum;
+    }
+
+    /**
+     * number of alerts dropped by the overflow policy, or because the output failed
+     * @return
+     */
+    public long getDroppedNum() {
+        return droppedNum.get();
+    }
+
+    /**
+     * number of alerts queued beyond the capacity by the SPILL policy
+     * @return
+     */
+    public long getSpilledNum() {
+        return spilledNum.get();
+    }
+
+    /**
+     * number of alerts waiting to be written
+     * @return
+     */
+    public int getQueuedNum() {
+        return queue.size() + spill.size();
+    }
+
+    /**
+     * write the alerts already queued, stop the writer thread, and close the output
+     * @throws IOException if writing an alert failed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if(isClosed) {
+            return;
+        }
+        isClosed = true;
+        try {
+            if(spill.isEmpty()) {
+                queue.put(END);
+            }
+            else {
+                spill.add(END);
+            }
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        output.close();
+        if(error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * write the queued alerts batch by batch (the only thread accessing the output)
+     * the spilled alerts are newer than those in the queue, and thus they are written once the queue is empty
+     */
+    private void write() {
+        final List<BlockAlert> batch = new ArrayList<BlockAlert>(MAX_BATCH_SIZE);
+        while(true) {
+            if(queue.isEmpty() && !spill.isEmpty()) {
+                spill.drainTo(batch, MAX_BATCH_SIZE);
+            }
+            else {
+                try {
+                    batch.add(queue.take()); // nothing is spilled while the queue is empty
+                } catch (InterruptedException e) {
+                    return;
+                }
+                queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+            }
+            boolean isEnd = false;
+            int count = 0;
+            for(BlockAlert alert : batch) {
+                if(alert == END) {
+                    isEnd = true;
+                    break;
+                }
+                if(error != null) { // the output failed, and the remaining alerts are discarded
+                    droppedNum.incrementAndGet();
+                    continue;
+                }
+                try {
+                    if(binaryOutput != null) {
+                        writeBinary(alert);
+                    }
+                    else {
+                        writeText(alert);
+                    }
+                    count++;
+                } catch (IOException e) {
+                    error = e;
+                    droppedNum.incrementAndGet();
+                }
+            }
+            batch.clear();
+            if(error == null) {
+                try {
+                    if(textOutput != null) {
+                        textOutput.flush();
+                    }
+                    else {
+                        binaryOutput.flush();
+                    }
+                } catch (IOException e) {
+                    error = e;
+                }
+            }
+            writtenNum += count;
+            if(isEnd) {
+                return;
+            }
+        }
+    }
+
+    private void writeText(BlockAlert alert) throws IOException {
+        final StringBuilder line = new StringBuilder(128);
+        final double density = alert.getDensity();
+        line.append("{\"timestamp\":").append(alert.getTimestamp())
+                .append(",\"density\":").append(Double.isFinite(density) ? Double.toString(density) : "null")
+                .append(",\"reset\":").append(alert.isReset())
+                .append(",\"entered\":");
+        appendIds(line, alert.getEnteredIds());
+        line.append(",\"left\":");
+        appendIds(line, alert.getLeftIds());
+        line.append("}\n");
+        textOutput.write(line.toString());
+    }
+
+    private static void appendIds(StringBuilder line, Map<Integer, int[]> modeToIds) {
+        line.append('{');
+        for(int mode = 0; mode < modeToIds.size(); mode++) {
+            if(mode > 0) {
+                line.append(',');
+            }
+            line.append('"').append(mode).append("\":[");
+            int[] ids = modeToIds.get(mode);
+            for(int i = 0; i < ids.length; i++) {
+                if(i > 0) {
+                    line.append(',');
+                }
+                line.append(ids[i]);
+            }
+            line.append(']');
+        }
+        line.append('}');
+    }
+
+    private void writeBinary(BlockAlert alert) throws IOException {
+        binaryOutput.writeLong(alert.getTimestamp());
+        binaryOutput.writeDouble(alert.getDensity());
+        binaryOutput.writeByte(alert.isReset() ? 1 : 0);
+        final Map<Integer, int[]> enteredIds = alert.getEnteredIds();
+        final Map<Integer, int[]> leftIds = alert.getLeftIds();
+        binaryOutput.writeInt(enteredIds.size());
+        for(int mode = 0; mode < enteredIds.size(); mode++) {
+            writeIds(enteredIds.get(mode));
+            writeIds(leftIds.get(mode));
+        }
+    }
+
+    private void writeIds(int[] ids) throws IOException {
+        binaryOutput.writeInt(ids.length);
+        for(int id : ids) {
+            binaryOutput.writeInt(id);
+        }
+    }
+}
@@ -0,0 +1,276 @@
+/* =================================================================================
+ *
+ * DenseAlert: Incremental Dense-Block Detection in Tensor Streams
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: Oct 24, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package densealert;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Recomputation of the ordering from scratch by the batch algorithm on a background thread,
+ * which removes any drift accumulated by incremental updates without stalling the thread processing updates
+ *
+ * The entries of the current tensor when started are copied by the background thread, chunk by chunk of entry ids, into a new tensor and core.
+ * Meanwhile, the current tensor logs every change (see TensorFull.observer), and before changing an entry in a chunk not copied yet,
+ * it saves the entry as it was when started (copy on write of a single entry), which the copy of the chunk uses instead.
+ * A chunk and a change never interleave, since both hold the lock of this object.
+ * The logged changes are replayed on the new core, first on the background thread,
+ * and for the few logged after it caught up, on the thread swapping in the new core (see finish).
+ * Thus, the thread processing updates waits at most for the copy of one chunk, and it never copies more than one entry per change.
+ * The indices of attribute values are shared with the current tensor, and thus compaction should cancel the recomputation.
+ *
+ * @author kijungs
+ */
+class BackgroundBatch implements Runnable {
+
+    // number of entry ids copied at once
+    private static final int CHUNK_SIZE = 1024;
+
+    private final int order;
+    private final boolean isOffHeap;
+    private final int reorderBudget;
+
+    // current tensor, whose entries are copied
+    private final TensorFull source;
+
+    // number of entry ids handed out by the current tensor when started, which are copied
+    private final int copiedIdNum;
+
+    // chunk -> whether the entries in the chunk are copied
+    private final boolean[] chunkToCopied;
+
+    // id -> (i_{1}, i_{2}, ..., i_{N}, Delta) when started (or RELEASED), for the entries changed before their chunk is copied
+    private final Map<Integer, int[]> idToOriginal = new HashMap<Integer, int[]>();
+
+    // mark of the ids without an entry when started
+    private static final int[] RELEASED = new int[0];
+
+    // mode -> number of attribute values the new tensor and core can hold
+    private final int[] modeToCapacity;
+
+    // changes after started, (i_{1}, i_{2}, ..., i_{N}, Delta, 1 if insertion or 0 if deletion) each
+    private final Queue<int[]> changes = new ConcurrentLinkedQueue<int[]>();
+
+    private TensorFull tensor;
+    private Core core;
+
+    private volatile boolean isReady = false;
+    private volatile boolean isCancelled = false;
+    private volatile Throwable error = null;
+
+    /**
+     * start logging the changes of the given tensor, whose entries are copied later by the background thread
+     * @param tensor current input tensor
+     * @param reorderBudget reorder budget of the current core, also applied while replaying updates so that the replay keeps pace with them
+     */
+    BackgroundBatch(TensorFull tensor, int reorderBudget) {
+        this.order = tensor.order;
+        this.reorderBudget = reorderBudget;
+        this.isOffHeap = tensor.arena instanceof OffHeapEntryArena;
+        this.source = tensor;
+        this.copiedIdNum = tensor.arena.size;
+        this.chunkToCopied = new boolean[(int) (((long) copiedIdNum + CHUNK_SIZE - 1) / CHUNK_SIZE)];
+        this.modeToCapacity = new int[order];
+        for(int mode = 0; mode < order; mode++) {
+            modeToCapacity[mode] = tensor.modeToAttValToDegree[mode].length;
+        }
+        tensor.observer = this;
+    }
+
+    /**
+     * start the recomputation on a new daemon thread
+     */
+    void start() {
+        Thread thread = new Thread(this, "densealert-batch");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        try {
+            EntryArena arena = EntryArena.create(order, isOffHeap);
+            arena.ensureCapacity(copiedIdNum);
+            tensor = new TensorFull(order, modeToCapacity.clone(), arena);
+            final int[] buffer = new int[CHUNK_SIZE * (order + 1)];
+            final int[] entry = new int[order + 1];
+            for(int chunk = 0; chunk < chunkToCopied.length && !isCancelled; chunk++) {
+                final int copiedNum = copy(chunk, buffer);
+                for(int i = 0; i < copiedNum; i++) {
+                    System.arraycopy(buffer, i * (order + 1), entry, 0, order + 1);
+                    for(int mode = 0; mode < order; mode++) {
+                        ensureCapacity(mode, entry[mode] + 2);
+                    }
+                    tensor.insert(entry);
+                }
+            }
+            if(isCancelled) {
+                return;
+            }
+            core = Core.create(tensor);
+            core.setReorderBudget(reorderBudget);
+            replay();
+            isReady = !isCancelled;
+        } catch (Throwable e) {
+            error = e;
+        }
+    }
+
+    /**
+     * copy the entries in the given chunk as they were when started, while no change is made to the current tensor
+     * @param chunk
+     * @param buffer filled with (i_{1}, i_{2}, ..., i_{N}, Delta) of each copied entry
+     * @return number of copied entries
+     */
+    private synchronized int copy(int chunk, int[] buffer) {
+        final EntryArena arena = source.arena;
+        final int from = chunk * CHUNK_SIZE;
+        final int to = (int) Math.min((long) from + CHUNK_SIZE, copiedIdNum);
+        int copiedNum = 0;
+        int loc = 0;
+        for(int id = from; id < to; id++) {
+            final int[] original = idToOriginal.isEmpty() ? null : idToOriginal.remove(id);
+            if(original == RELEASED || (original == null && arena.isReleased(id))) {
+                continue;
+            }
+            for(int field = 0; field <= order; field++) {
+                buffer[loc++] = original == null ? arena.get(id, field) : original[field];
+            }
+            copiedNum++;
+        }
+        chunkToCopied[chunk] = true;
+        return copiedNum;
+    }
+
+    /**
+     * save the entry with the given id as it was when started, if it is about to change before its chunk is copied
+     * (on the thread processing updates, while holding the lock of this object)
+     * @param id id of the entry to change, or of the entry to be allocated, in the current tensor
+     */
+    void beforeChange(int id) {
+        if(id >= copiedIdNum || chunkToCopied[id / CHUNK_SIZE] || idToOriginal.containsKey(id)) {
+            return;
+        }
+        final EntryArena arena = source.arena;
+        if(arena.isReleased(id)) {
+            idToOriginal.put(id, RELEASED);
+            return;
+        }
+        final int[] original = new int[order + 1];
+        for(int field = 0; field <= order; field++) {
+            original[field] = arena.get(id, field);
+        }
+        idToOriginal.put(id, original);
+    }
+
+    /**
+     * log a change of the current tensor (on the thread processing updates, while holding the lock of this object)
+     * @param entry (i_{1}, i_{2}, ..., i_{N}, Delta) in indices
+     * @param isInsert
+     */
+    void log(int[] entry, boolean isInsert) {
+        int[] change = new int[order + 2];
+        System.arraycopy(entry, 0, change, 0, order + 1);
+        change[order + 1] = isInsert ? 1 : 0;
+        changes.add(change);
+    }
+
+    /**
+     * whether the new core has caught up with the logged updates, except for a few
+     * @return
+     */
+    boolean isReady() {
+        return isReady;
+    }
+
+    /**
+     * error thrown by the background thread (null if none)
+     * @return
+     */
+    Throwable getError() {
+        return error;
+    }
+
+    /**
+     * stop the recomputation and the logging (e.g., when the indices of attribute values change)
+     */
+    void cancel() {
+        isCancelled = true;
+        source.observer = null;
+    }
+
+    /**
+     * stop the logging, replay the remaining updates, and match the capacity of the new tensor and core to that of the current ones
+     * (on the thread processing updates, once ready, right before the new tensor and core replace the current ones)
+     * @param modeToCurrentCapacity mode -> capacity of the current tensor and core
+     */
+    void finish(int[] modeToCurrentCapacity) {
+        source.observer = null;
+        replay();
+        for(int mode = 0; mode < order; mode++) {
+            if(modeToCapacity[mode] < modeToCurrentCapacity[mode]) {
+                modeToCapacity[mode] = modeToCurrentCapacity[mode];
+                core.resize(mode, modeToCurrentCapacity[mode]);
+            }
+        }
+    }
+
+    TensorFull getTensor() {
+        return tensor;
+    }
+
+    Core getCore() {
+        return core;
+    }
+
+    private void replay() {
+        int[] change;
+        while(!isCancelled && (change = changes.poll()) != null) {
+            for(int mode = 0; mode < order; mode++) {
+                ensureCapacity(mode, change[mode] + 2);
+            }
+            int[] entry = new int[order + 1];
+            System.arraycopy(change, 0, entry, 0, order + 1);
+            if(change[order + 1] == 1) {
+                core.insert(entry);
+            }
+            else {
+                core.delete(entry);
+            }
+        }
+    }
+
+    /**
+     * grow the new tensor and core in the same way as CapacityCoordinator, so that they never exceed the current ones
+     * @param mode
+     * @param minCapacity
+     */
+    private void ensureCapacity(int mode, int minCapacity) {
+        final int capacity = modeToCapacity[mode];
+        if(capacity >= minCapacity) {
+            return;
+        }
+        final int newCapacity = (int) Math.min(Math.max((long) capacity * 2, minCapacity), Integer.MAX_VALUE - 8);
+        modeToCapacity[mode] = newCapacity;
+        if(core != null) {
+            core.resize(mode, newCapacity);
+        }
+        else {
+            tensor.resize(mode, newCapacity);
+        }
+    }
+}
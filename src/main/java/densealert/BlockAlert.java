@@ -0,0 +1,82 @@
+/* =================================================================================
+ *
+ * DenseAlert: Incremental Dense-Block Detection in Tensor Streams
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: Oct 24, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package densealert;
+
+import java.util.Map;
+
+/**
+ * Change in the maintained block reported to an AlertSink
+ * with the ids that entered or left the block since the previous alert, or the whole block if isReset
+ *
+ * @author kijungs
+ */
+public class BlockAlert {
+
+    private final long timestamp;
+    private final double density;
+    private final boolean isReset;
+    private final Map<Integer, int[]> enteredIds;
+    private final Map<Integer, int[]> leftIds;
+
+    BlockAlert(long timestamp, double density, boolean isReset, Map<Integer, int[]> enteredIds, Map<Integer, int[]> leftIds) {
+        this.timestamp = timestamp;
+        this.density = density;
+        this.isReset = isReset;
+        this.enteredIds = enteredIds;
+        this.leftIds = leftIds;
+    }
+
+    /**
+     * time of the change (the timestamp of the stream in DenseAlert, and the wall-clock time in milliseconds in DenseStream)
+     * @return
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * density of the block after the change
+     * @return
+     */
+    public double getDensity() {
+        return density;
+    }
+
+    /**
+     * whether the alert holds the whole block (in enteredIds) instead of the changes since the previous alert
+     * e.g., in the first alert, or if the changes are no longer kept
+     * @return
+     */
+    public boolean isReset() {
+        return isReset;
+    }
+
+    /**
+     * get mode and ids that entered the block (or composing the block if isReset)
+     * @return mode to ids
+     */
+    public Map<Integer, int[]> getEnteredIds() {
+        return enteredIds;
+    }
+
+    /**
+     * get mode and ids that left the block
+     * @return mode to ids
+     */
+    public Map<Integer, int[]> getLeftIds() {
+        return leftIds;
+    }
+}
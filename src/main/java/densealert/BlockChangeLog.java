@@ -0,0 +1,160 @@
+/* =================================================================================
+ *
+ * DenseAlert: Incremental Dense-Block Detection in Tensor Streams
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: Oct 24, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package densealert;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A log of attribute values entering or leaving the maintained block
+ * the version of the block is the number of changes logged so far
+ * @author kijungs
+ */
+class BlockChangeLog {
+
+    // maximum number of changes kept; once full, all of them are dropped at once, and callers holding an earlier version get a reset
+    static final int MAX_SIZE = 1 << 20;
+
+    private final int order;
+
+    // mode, index -> id (ids are recorded when changes are logged since indices may be reused)
+    private final int[][] modeToIndexToId;
+
+    // change -> mode, id, whether it entered (or left) the block
+    private int[] changeToMode = new int[64];
+    private int[] changeToId = new int[64];
+    private boolean[] changeToEntered = new boolean[64];
+
+    // number of changes kept
+    private int size = 0;
+
+    // version before the first change kept
+    private long firstVersion = 0;
+
+    BlockChangeLog(int order, int[][] modeToIndexToId) {
+        this.order = order;
+        this.modeToIndexToId = modeToIndexToId;
+    }
+
+    /**
+     * current version of the block
+     * @return
+     */
+    long getVersion() {
+        return firstVersion + size;
+    }
+
+    /**
+     * log an attribute value entering or leaving the block
+     * @param mode
+     * @param index
+     * @param entered
+     */
+    void add(int mode, int index, boolean entered) {
+        if(size == MAX_SIZE) {
+            firstVersion += size;
+            size = 0;
+        }
+        if(size == changeToMode.length) {
+            int newLength = size * 2;
+            changeToMode = Arrays.copyOf(changeToMode, newLength);
+            changeToId = Arrays.copyOf(changeToId, newLength);
+            changeToEntered = Arrays.copyOf(changeToEntered, newLength);
+        }
+        changeToMode[size] = mode;
+        changeToId[size] = modeToIndexToId[mode][index];
+        changeToEntered[size] = entered;
+        size++;
+    }
+
+    /**
+     * drop all changes, after the block is replaced without logging
+     * callers holding any earlier version are asked to rebuild their copy of the block
+     */
+    void reset() {
+        firstVersion += size + 1;
+        size = 0;
+    }
+
+    /**
+     * net changes since the given version; an id that entered and left (or left and entered) is omitted
+     * @param version
+     * @return
+     */
+    BlockChanges getChangesSince(long version) {
+
+        final Map<Integer, int[]> enteredIds = new HashMap<Integer, int[]>();
+        final Map<Integer, int[]> leftIds = new HashMap<Integer, int[]>();
+        if(version < firstVersion || version > getVersion()) {
+            for(int mode = 0; mode < order; mode++) {
+                enteredIds.put(mode, new int[0]);
+                leftIds.put(mode, new int[0]);
+            }
+            return new BlockChanges(getVersion(), true, enteredIds, leftIds);
+        }
+
+        // mode, id -> first and last change
+        final Map<Long, boolean[]> keyToFirstAndLast = new HashMap<Long, boolean[]>();
+        for(int change = (int) (version - firstVersion); change < size; change++) {
+            long key = (((long) changeToMode[change]) << 32) | (changeToId[change] & 0xFFFFFFFFL);
+            boolean[] firstAndLast = keyToFirstAndLast.get(key);
+            if(firstAndLast == null) {
+                keyToFirstAndLast.put(key, new boolean[]{changeToEntered[change], changeToEntered[change]});
+            }
+            else {
+                firstAndLast[1] = changeToEntered[change];
+            }
+        }
+
+        final int[] modeToEnteredNum = new int[order];
+        final int[] modeToLeftNum = new int[order];
+        for(Map.Entry<Long, boolean[]> keyAndChange : keyToFirstAndLast.entrySet()) {
+            boolean[] firstAndLast = keyAndChange.getValue();
+            int mode = (int) (keyAndChange.getKey() >>> 32);
+            if(firstAndLast[0] == firstAndLast[1]) {
+                if(firstAndLast[1]) {
+                    modeToEnteredNum[mode]++;
+                }
+                else {
+                    modeToLeftNum[mode]++;
+                }
+            }
+        }
+
+        for(int mode = 0; mode < order; mode++) {
+            enteredIds.put(mode, new int[modeToEnteredNum[mode]]);
+            leftIds.put(mode, new int[modeToLeftNum[mode]]);
+            modeToEnteredNum[mode] = 0;
+            modeToLeftNum[mode] = 0;
+        }
+        for(Map.Entry<Long, boolean[]> keyAndChange : keyToFirstAndLast.entrySet()) {
+            boolean[] firstAndLast = keyAndChange.getValue();
+            int mode = (int) (keyAndChange.getKey() >>> 32);
+            int id = (int) (long) keyAndChange.getKey();
+            if(firstAndLast[0] == firstAndLast[1]) {
+                if(firstAndLast[1]) {
+                    enteredIds.get(mode)[modeToEnteredNum[mode]++] = id;
+                }
+                else {
+                    leftIds.get(mode)[modeToLeftNum[mode]++] = id;
+                }
+            }
+        }
+
+        return new BlockChanges(getVersion(), false, enteredIds, leftIds);
+    }
+}
@@ -0,0 +1,71 @@
+/* =================================================================================
+ *
+ * DenseAlert: Incremental Dense-Block Detection in Tensor Streams
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: Oct 24, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package densealert;
+
+import java.util.Map;
+
+/**
+ * Attribute values that entered or left the maintained block between two versions
+ *
+ * @author kijungs
+ */
+public class BlockChanges {
+
+    private final long version;
+    private final boolean isReset;
+    private final Map<Integer, int[]> enteredIds;
+    private final Map<Integer, int[]> leftIds;
+
+    BlockChanges(long version, boolean isReset, Map<Integer, int[]> enteredIds, Map<Integer, int[]> leftIds) {
+        this.version = version;
+        this.isReset = isReset;
+        this.enteredIds = enteredIds;
+        this.leftIds = leftIds;
+    }
+
+    /**
+     * version of the block after the changes, which should be passed to get the next changes
+     * @return
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * whether the changes since the given version are no longer kept
+     * if true, the caller should rebuild its copy of the block from the block iterators
+     * @return
+     */
+    public boolean isReset() {
+        return isReset;
+    }
+
+    /**
+     * get mode and ids that entered the block
+     * @return mode to ids
+     */
+    public Map<Integer, int[]> getEnteredIds() {
+        return enteredIds;
+    }
+
+    /**
+     * get mode and ids that left the block
+     * @return mode to ids
+     */
+    public Map<Integer, int[]> getLeftIds() {
+        return leftIds;
+    }
+}
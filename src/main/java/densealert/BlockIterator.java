@@ -0,0 +1,67 @@
+/* =================================================================================
+ *
+ * DenseAlert: Incremental Dense-Block Detection in Tensor Streams
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: Oct 24, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package densealert;
+
+import java.util.BitSet;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Iterator over the ids of a mode in the maintained block, without materializing them
+ * it should not be used after the block is updated
+ * @author kijungs
+ */
+class BlockIterator implements PrimitiveIterator.OfInt {
+
+    private final BitSet indices; // null if the block is the entire tensor
+    private final int[] indexToCardinality;
+    private final int[] indexToId;
+    private int next;
+
+    BlockIterator(BitSet indices, int[] indexToCardinality, int[] indexToId) {
+        this.indices = indices;
+        this.indexToCardinality = indexToCardinality;
+        this.indexToId = indexToId;
+        this.next = advance(0);
+    }
+
+    private int advance(int from) {
+        if(indices != null) {
+            return indices.nextSetBit(from);
+        }
+        for(int index = from; index < indexToCardinality.length; index++) {
+            if(indexToCardinality[index] > 0) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next >= 0;
+    }
+
+    @Override
+    public int nextInt() {
+        if(next < 0) {
+            throw new NoSuchElementException();
+        }
+        int id = indexToId[next];
+        next = advance(next + 1);
+        return id;
+    }
+}
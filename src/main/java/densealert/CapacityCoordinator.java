@@ -0,0 +1,98 @@
+/* =================================================================================
+ *
+ * DenseAlert: Incremental Dense-Block Detection in Tensor Streams
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: Oct 24, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package densealert;
+
+/**
+ * Single path for changing the number of attribute values of each mode that the data structures can hold
+ * the index matching, the input tensor, and the core module (with its table, subtensor, and heaps) share the same capacity,
+ * which grows geometrically before an index that does not fit is assigned and shrinks only by compaction
+ * @author kijungs
+ */
+class CapacityCoordinator {
+
+    private final int order;
+    private final IndexMatching indexMatching;
+    private final TensorFull tensor;
+    private final Core core; // null if only the tensor is loaded
+
+    CapacityCoordinator(IndexMatching indexMatching, TensorFull tensor, Core core) {
+        this.order = tensor.order;
+        this.indexMatching = indexMatching;
+        this.tensor = tensor;
+        this.core = core;
+    }
+
+    /**
+     * change the ids in an entry to indices, after growing the data structures if a new index would not fit
+     * @param entry (i_{1}, i_{2}, ..., i_{N}, Delta)
+     * @return
+     */
+    int[] changeToIndex(int[] entry) {
+        for(int mode = 0; mode < order; mode++) {
+            // the next new index is the number of ids, and the last index is kept free
+            ensureCapacity(mode, indexMatching.modeToIdToIndex[mode].size() + 2);
+        }
+        return indexMatching.changeToIndex(entry);
+    }
+
+    /**
+     * grow every data structure of the given mode so that it holds at least the given number of attribute values
+     * @param mode
+     * @param minCapacity
+     */
+    void ensureCapacity(int mode, int minCapacity) {
+        final int capacity = indexMatching.modeToIndicesNum[mode];
+        if(capacity >= minCapacity) {
+            return;
+        }
+        final int newCapacity = (int) Math.min(Math.max((long) capacity * 2, minCapacity), Integer.MAX_VALUE - 8);
+        indexMatching.resize(mode, newCapacity);
+        if(core != null) {
+            core.resize(mode, newCapacity);
+        }
+        else {
+            tensor.resize(mode, newCapacity);
+        }
+    }
+
+    /**
+     * whether the indices of some mode are sparse enough to be compacted
+     * @param ratio minimum ratio of attribute values in use to the capacity
+     * @return
+     */
+    boolean needsCompaction(double ratio) {
+        for(int mode = 0; mode < order; mode++) {
+            if(indexMatching.needsCompaction(mode, tensor.modeToLiveAttValNum[mode], ratio)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * move the attribute values in use to the smallest indices and shrink every data structure
+     * @return mode -> old index -> new index (-1 if forgotten)
+     */
+    int[][] compact() {
+        core.catchUp(); // the ordering may refer to attribute values no longer in the input tensor
+        final int[][] modeToOldToNew = new int[order][];
+        for(int mode = 0; mode < order; mode++) {
+            modeToOldToNew[mode] = indexMatching.compact(mode, tensor.modeToAttValToCardinality[mode], core.getReferencedAttVals(mode));
+        }
+        core.compact(modeToOldToNew, indexMatching.modeToIndicesNum);
+        return modeToOldToNew;
+    }
+}
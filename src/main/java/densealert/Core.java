@@ -17,6 +17,7 @@
 package densealert;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Core Module For Dense-Block Detection
@@ -24,10 +25,10 @@ import java.util.*;
  */
 class Core {
 
-    private TensorFull oriTensor; // input tensor H
-    private TensorMinimal subTensor; // subtensor formed for reordering
+    TensorFull oriTensor; // input tensor H
+    TensorMinimal subTensor; // subtensor formed for reordering
 
-    private Table table; // table for intermediate data:  \pi, d_{\pi}, c_{\pi}
+    Table table; // table for intermediate data:  \pi, d_{\pi}, c_{\pi}
     private int order; // order of the input tensor
     private double density; //density of the densest block
     private int maintainedAttNum; //the number of attribute values in the maintained block
@@ -36,8 +37,41 @@ class Core {
     int maxMode = -1;
     int maxAttVal = -1;
 
-    //current densest block
-    private List<Integer>[] maintainedBlock;
+    // mode -> attribute values in the current densest block
+    private BitSet[] maintainedBlock;
+
+    // mode -> the number of attribute values in the current densest block
+    private int[] modeToMaintainedAttNum;
+
+    // log of changes in the maintained block (null if nobody follows the changes)
+    private BlockChangeLog changeLog = null;
+
+    // maximum number of attribute values reordered by an update (0 if unbounded)
+    private int reorderBudget = 0;
+
+    // whether updates have been applied to the input tensor without reordering since the ordering was computed
+    private boolean isDeferred = false;
+
+    // whether the ordering is being recomputed in the background, which replaces this core (see EngineState), and thus updates need not catch up
+    private boolean isRecomputing = false;
+
+    // maximum number of columns walked to order the attribute values of an incremented entry with the same core number
+    private static final int MAX_TIE_STEPS = 64;
+
+    // counters of the work done by updates (null if disabled)
+    private EngineStatistics statistics = null;
+
+    // work done by the current update
+    // the counters are incremented in the update loops whether or not statistics are enabled, since a check would cost as much as an increment;
+    // when disabled, they are neither reset nor recorded
+    private boolean isBatchUsed;
+    private boolean isFastPathUsed;
+    private boolean isDeferredUsed;
+    private int wideRangeAttNum;
+    private int narrowRangeAttNum;
+    private int expansionNum;
+    private int heapOperationNum;
+    private int traversedColNum;
 
     //whether maintained block is changed
     private boolean isBlockChanged = false; 
@@ -49,33 +83,61 @@ class Core {
     private int[] modeToAttValNum;
 
     // min heap for each mode
-    private HashIndexedMinHeap[] modeToMinHeap;
+    HashIndexedMinHeap[] modeToMinHeap;
 
     // mode, attVal -> 0: after wide range, 1: before wide range 2: in wide range 3: in narrow range
-    private byte[][] modeToAttValToStatus;
+    byte[][] modeToAttValToStatus;
 
     // mode -> list of attribute values in the wide range
     private int[][] modeToAttValsInWideRange;
     
     // mode -> list of attribute values in the narrow range
     private int[][] modeToAttValsInNarrowRange;
-    
-    // mode, attVal -> whether the attVal is in the densest block
-    private boolean[][] modeToAttValToInMaintained;
 
-    // array index used to check whether this entry (hyperedge) is processed or not
-    private int indexForProcessed;
+    // mode -> core number of the attribute value of the entry being added to the subtensor (see expandEntries)
+    private int[] modeToEntryCoreNumber;
+
+    // mode -> whether the attribute value of the entry being added to the subtensor is inserted (see expandEntries)
+    private boolean[] modeToEntryInsertFlag;
 
 
     /**
      * return the attribute values composing the dense block maintained
-     * @return
+     * @return mode -> attribute values, or null if the block is the entire tensor
+     */
+    BitSet[] getDenseBlockAttVals() {
+        return maintainedAttNum == -1 ? null : maintainedBlock;
+    }
+
+    /**
+     * return the number of attribute values of each mode in the dense block maintained
+     * @return mode -> number of attribute values, or null if the block is the entire tensor
      */
-    List<Integer>[] getDenseBlockAttVals() {
-        return maintainedBlock;
+    int[] getDenseBlockAttNums() {
+        return maintainedAttNum == -1 ? null : modeToMaintainedAttNum;
     }
 
 
+    /**
+     * start logging the changes in the maintained block
+     * @param changeLog
+     */
+    void setChangeLog(BlockChangeLog changeLog) {
+        this.changeLog = changeLog;
+    }
+
+    BlockChangeLog getChangeLog() {
+        return changeLog;
+    }
+
+    /**
+     * start (or stop, if null) counting the work done by updates
+     * @param statistics
+     */
+    void setStatistics(EngineStatistics statistics) {
+        this.statistics = statistics;
+    }
+
     boolean isBlockChanged() {
         return isBlockChanged;
     }
@@ -92,6 +154,23 @@ class Core {
         return density;
     }
     
+    /**
+     * From an initial oriTensor, with the engine specialized for the order of the tensor if any
+     * the loops over the modes of each entry, where most of the time goes, are unrolled for orders 2 and 3
+     * @param tensor
+     * @return
+     */
+    static Core create(TensorFull tensor) {
+        switch (tensor.order) {
+            case 2:
+                return new Order2Core(tensor);
+            case 3:
+                return new Order3Core(tensor);
+            default:
+                return new Core(tensor);
+        }
+    }
+
     /**
      * From an initial oriTensor
      * @param tensor
@@ -100,19 +179,22 @@ class Core {
         
         this.oriTensor = tensor;
         this.order = tensor.order;
-        this.indexForProcessed = order + 1;
         this.modeToAttValNum = new int[order];
         this.modeToMinHeap = new HashIndexedMinHeap[order];
         this.modeToAttValToStatus = new byte[order][];
-        this.modeToAttValToInMaintained = new boolean[order][];
+        this.maintainedBlock = new BitSet[order];
+        this.modeToMaintainedAttNum = new int[order];
+        this.maintainedAttNum = -1;
         this.modeToAttValsInWideRange = new int[order][];
         this.modeToAttValsInNarrowRange = new int[order][];
+        this.modeToEntryCoreNumber = new int[order];
+        this.modeToEntryInsertFlag = new boolean[order];
 
         for(int dim = 0; dim < order; dim++) {
             modeToAttValNum[dim] = tensor.modeToAttValToDegree[dim].length;
             modeToMinHeap[dim] = new HashIndexedMinHeap(modeToAttValNum[dim]);
             modeToAttValToStatus[dim] = new byte[modeToAttValNum[dim]];
-            modeToAttValToInMaintained[dim] = new boolean[modeToAttValNum[dim]];
+            maintainedBlock[dim] = new BitSet(modeToAttValNum[dim]);
             modeToAttValsInWideRange[dim] = new int[modeToAttValNum[dim]];
             modeToAttValsInNarrowRange[dim] = new int[modeToAttValNum[dim]];
         }
@@ -123,6 +205,62 @@ class Core {
         }
     }
 
+    /**
+     * return the core number of each attribute value
+     * @return mode, attVal -> core number
+     */
+    int[][] getCoreNumbers() {
+        return table.modeToAttValToCoreNumber;
+    }
+
+    /**
+     * return the core number of an attribute value
+     * @param mode
+     * @param attVal
+     * @return core number (0 if the attribute value does not appear)
+     */
+    int getCoreNumber(int mode, int attVal) {
+        return table == null ? 0 : table.modeToAttValToCoreNumber[mode][attVal];
+    }
+
+    /**
+     * return the degree (sum of the values of the entries) of an attribute value
+     * @param mode
+     * @param attVal
+     * @return
+     */
+    int getDegree(int mode, int attVal) {
+        return oriTensor.modeToAttValToDegree[mode][attVal];
+    }
+
+    /**
+     * fill the score of an entry from the table and the maintained block
+     * @param entry (i_{1}, i_{2}, ..., i_{N}) in indices
+     * @param score
+     */
+    void score(int[] entry, EntryScore score) {
+        int coreNumber = Integer.MAX_VALUE;
+        for(int dim = 0; dim < order; dim++) {
+            coreNumber = Math.min(coreNumber, table.modeToAttValToCoreNumber[dim][entry[dim]]);
+        }
+        score.coreNumber = coreNumber;
+        score.isInBlock = maintainedAttNum == -1 || isInMaintainedBlock(entry);
+    }
+
+    /**
+     * whether all the attribute values of an entry are in the maintained block, which is not the entire tensor
+     * @param entry
+     * @return
+     */
+    private boolean isInMaintainedBlock(int[] entry) {
+        for(int dim = 0; dim < order; dim++) {
+            if(!maintainedBlock[dim].get(entry[dim])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     TensorFull getTensor() {
         return oriTensor;
     }
@@ -132,18 +270,19 @@ class Core {
      */
     private void batch() {
 
-        final int[][][][] modeToAttValToEntries = oriTensor.modeToAttValToEntries;
+        final int[][][] modeToAttValToEntries = oriTensor.modeToAttValToEntries;
         final int[][] modeToAttValToDegree = oriTensor.modeToAttValToDegree;
         final int[][] modeToAttValToCardinality = oriTensor.modeToAttValToCardinality;
+        final EntryArena arena = oriTensor.arena;
 
         //make all entries unprocessed
-        final int[][][] attValToEntries = modeToAttValToEntries[0];
+        final int[][] attValToEntries = modeToAttValToEntries[0];
         final int[] attValToCardinality = modeToAttValToCardinality[0];
         for(int attVal = 0; attVal < attValToEntries.length; attVal++) {
             int entryNum = attValToCardinality[attVal];
             if(entryNum > 0 ) {
                 for (int index = 0; index < entryNum; index++) {
-                    attValToEntries[attVal][index][indexForProcessed] = 0;
+                    arena.setProcessed(attValToEntries[attVal][index], false);
                 }
             }
         }
@@ -162,10 +301,13 @@ class Core {
 
         long mass = oriTensor.mass;
         density = ((double)mass) / n;
+        maxMode = -1; // the entire tensor unless a denser block is found
+        maxAttVal = -1;
         int coreNumber = -1;
 
         table = new Table(order, modeToAttValNum);
         coreNumberToFirstColAndMass.clear();
+        isDeferred = false;
 
         final int[][] modeToAttValToCoreNumber = table.modeToAttValToCoreNumber;
         int remainedNum = n;
@@ -206,97 +348,634 @@ class Core {
             mass -= removeMass;
             remainedNum--;
 
-            int cardinality = modeToAttValToCardinality[dim][attVal];
-            int[][] indexToEntry = modeToAttValToEntries[dim][attVal];
-            for(int i=0; i<cardinality; i++) {
-                int[] entry = indexToEntry[i];
-                if(entry[indexForProcessed] == 0) {
-                    for (int _dim = 0; _dim < order; _dim++) {
-                        if (_dim != dim) {
-                            int key = entry[_dim];
-                            HashIndexedMinHeap minHeap = modeToMinHeap[_dim];
-                            if (minHeap.containsKey(key)) {
-                                minHeap.refreshPriority(key, minHeap.getPriority(key) - entry[order]);
-                            }
-                        }
-                    }
-                    entry[indexForProcessed] = 1;
+            peelEntries(dim, modeToAttValToEntries[dim][attVal], modeToAttValToCardinality[dim][attVal]);
+        }
+
+        rebuildMaintainedBlock();
+    }
+
+    /**
+     * compute the initial block by parallel (1+epsilon)-approximate peeling
+     * the approximate ordering is not the ordering maintained by incremental updates, and thus it is treated like an ordering
+     * with deferred updates (see setReorderBudget): the exact ordering is computed before the next update is reordered
+     * (by the next update if it is within the budget, or by catchUp)
+     * @param epsilon approximation parameter
+     * @param pool fork-join pool used for peeling
+     */
+    void approximateBatch(double epsilon, ForkJoinPool pool) {
+
+        ensureCapacity();
+
+        final ParallelPeeling peeling = new ParallelPeeling(oriTensor, pool);
+        peeling.peelApproximately(epsilon);
+        loadOrdering(peeling.orderToMode, peeling.orderToAttVal, peeling.orderToRemoveMass, peeling.length);
+        isDeferred = true;
+        if(changeLog != null) { // entries were added without logging
+            changeLog.reset();
+        }
+    }
+
+    /**
+     * compute the core numbers of attribute values in parallel, and load the ordering of the sequential peeling with the same core numbers
+     * so that incremental updates can continue from it
+     * @param pool fork-join pool used for computing core numbers and peeling
+     */
+    void parallelBatch(ForkJoinPool pool) {
+
+        ensureCapacity();
+
+        final int[][] modeToAttValToCoreNumber = new CoreDecomposition(oriTensor, pool).compute();
+        final ParallelPeeling peeling = new ParallelPeeling(oriTensor, pool);
+        peeling.peelByCoreNumbers(modeToAttValToCoreNumber);
+        loadOrdering(peeling.orderToMode, peeling.orderToAttVal, peeling.orderToRemoveMass, peeling.length);
+        if(changeLog != null) { // entries were added without logging
+            changeLog.reset();
+        }
+    }
+
+    /**
+     * compute the ordering by the sequential batch algorithm after entries were added to the input tensor in bulk,
+     * which is cheaper than parallelBatch on a single thread, where the core decomposition only adds to the work of peeling
+     */
+    void sequentialBatch() {
+
+        ensureCapacity();
+
+        if(oriTensor.omega > 0) {
+            batch();
+        }
+        else {
+            clearOrdering();
+        }
+        if(changeLog != null) { // entries were added without logging
+            changeLog.reset();
+        }
+    }
+
+    /**
+     * recompute the ordering from scratch after entries were added to or deleted from the input tensor directly (see DenseWindows)
+     * the subtensor used for incremental updates is not matched to the input tensor, and thus only rebatch should follow such changes
+     */
+    void rebatch() {
+        if(oriTensor.omega > 0) {
+            batch();
+        }
+        else {
+            clearOrdering();
+        }
+    }
+
+    /**
+     * build the table (\pi, d_{\pi}, c_{\pi}) from a given ordering of the attribute values
+     * every entry of the input tensor should be marked as processed
+     * @param orderToMode mode of the attribute value at each position
+     * @param orderToAttVal attribute value at each position
+     * @param orderToRemoveMass mass removed with the attribute value at each position
+     * @param length number of attribute values in the ordering
+     */
+    void loadOrdering(int[] orderToMode, int[] orderToAttVal, int[] orderToRemoveMass, int length) {
+
+        long mass = oriTensor.mass;
+        density = ((double)mass) / length;
+        maxMode = -1;
+        maxAttVal = -1;
+        int coreNumber = -1;
+
+        table = new Table(order, modeToAttValNum);
+        coreNumberToFirstColAndMass.clear();
+        isDeferred = false;
+
+        final int[][] modeToAttValToCoreNumber = table.modeToAttValToCoreNumber;
+        int remainedNum = length;
+        for(int position = 0; position < length; position++) {
+
+            int dim = orderToMode[position];
+            int attVal = orderToAttVal[position];
+            int removeMass = orderToRemoveMass[position];
+
+            TableCol col = new TableCol(dim, attVal, removeMass, coreNumber);
+            table.addToTail(col);
+            if(removeMass > coreNumber) {
+                col.coreNumber = removeMass;
+                modeToAttValToCoreNumber[dim][attVal] = removeMass;
+                for(int key = coreNumber+1; key <= removeMass; key++) {
+                    coreNumberToFirstColAndMass.put(key, new Pair<TableCol, long[]>(col, new long[]{mass, remainedNum}));
                 }
+                coreNumber = removeMass;
             }
+
+            double averageMass = ((double) mass) / remainedNum;
+            if(averageMass > density) {
+                density = averageMass;
+                maxMode = dim;
+                maxAttVal = attVal;
+            }
+            mass -= removeMass;
+            remainedNum--;
         }
 
+        rebuildMaintainedBlock();
+    }
+
+    /**
+     * rebuild the maintained block from the column maximizing the density
+     */
+    private void rebuildMaintainedBlock() {
+
         isBlockChanged = true;
-        if(maintainedBlock !=null) {
+        final boolean wasEntire = maintainedAttNum == -1;
+        BitSet[] oldBlock = null;
+        if(changeLog != null && !wasEntire) {
+            oldBlock = new BitSet[order];
             for (int dim = 0; dim < order; dim++) {
-                for (int attVal : maintainedBlock[dim]) {
-                    modeToAttValToInMaintained[dim][attVal] = false;
-                }
+                oldBlock[dim] = (BitSet) maintainedBlock[dim].clone();
             }
         }
 
+        for (int dim = 0; dim < order; dim++) {
+            maintainedBlock[dim].clear();
+            modeToMaintainedAttNum[dim] = 0;
+        }
+
         if(maxMode != -1) {
             maintainedAttNum = 0;
-            TableCol[][] modeToAttValToCol = table.modeToAttValToCol;
-            maintainedBlock = new List[order];
-            for(int dim = 0; dim < order; dim++) {
-                maintainedBlock[dim] = new LinkedList();
-            }
-            TableCol col = modeToAttValToCol[maxMode][maxAttVal];
+            TableCol col = table.modeToAttValToCol[maxMode][maxAttVal];
             while(col != null) {
-                maintainedBlock[col.mode].add(col.attVal);
-                modeToAttValToInMaintained[col.mode][col.attVal] = true;
+                maintainedBlock[col.mode].set(col.attVal);
+                modeToMaintainedAttNum[col.mode]++;
                 maintainedAttNum++;
                 col = col.next;
             }
         }
         else {
-            maintainedBlock = null;
             maintainedAttNum = -1;
         }
+
+        if(changeLog != null) {
+            logBlockChanges(oldBlock);
+        }
+    }
+
+    /**
+     * log the difference between the previous block and the current block
+     * @param oldBlock previous block (null if it was the entire tensor)
+     */
+    private void logBlockChanges(BitSet[] oldBlock) {
+        final boolean isEntire = maintainedAttNum == -1;
+        if(oldBlock == null && isEntire) {
+            return;
+        }
+        for (int dim = 0; dim < order; dim++) {
+            final int[] attValToCardinality = oriTensor.modeToAttValToCardinality[dim];
+            final BitSet newBits = maintainedBlock[dim];
+            if(oldBlock == null) { // entire tensor -> block
+                for(int attVal = 0; attVal < attValToCardinality.length; attVal++) {
+                    if(attValToCardinality[attVal] > 0 && !newBits.get(attVal)) {
+                        changeLog.add(dim, attVal, false);
+                    }
+                }
+            }
+            else if(isEntire) { // block -> entire tensor
+                final BitSet oldBits = oldBlock[dim];
+                for(int attVal = 0; attVal < attValToCardinality.length; attVal++) {
+                    if(attValToCardinality[attVal] > 0 && !oldBits.get(attVal)) {
+                        changeLog.add(dim, attVal, true);
+                    }
+                }
+                for(int attVal = oldBits.nextSetBit(0); attVal >= 0; attVal = oldBits.nextSetBit(attVal + 1)) {
+                    if(attVal >= attValToCardinality.length || attValToCardinality[attVal] == 0) {
+                        changeLog.add(dim, attVal, false);
+                    }
+                }
+            }
+            else { // block -> block
+                final BitSet oldBits = oldBlock[dim];
+                for(int attVal = oldBits.nextSetBit(0); attVal >= 0; attVal = oldBits.nextSetBit(attVal + 1)) {
+                    if(!newBits.get(attVal)) {
+                        changeLog.add(dim, attVal, false);
+                    }
+                }
+                for(int attVal = newBits.nextSetBit(0); attVal >= 0; attVal = newBits.nextSetBit(attVal + 1)) {
+                    if(!oldBits.get(attVal)) {
+                        changeLog.add(dim, attVal, true);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * take over the settings and the followers of the given core, which this core replaces after recomputing the ordering of the same tensor
+     * (see BackgroundBatch), and log the changes in the maintained block between them
+     * @param previous core replaced by this core
+     */
+    void takeOver(Core previous) {
+        this.statistics = previous.statistics;
+        this.reorderBudget = previous.reorderBudget;
+        this.changeLog = previous.changeLog;
+        this.isBlockChanged = true;
+        if(changeLog != null) {
+            logBlockChanges(previous.maintainedAttNum == -1 ? null : previous.maintainedBlock);
+        }
+    }
+
+    /**
+     * resize data structures of the given mode (called by CapacityCoordinator)
+     * @param dim
+     * @param newLength
+     */
+    void resize(int dim, int newLength) {
+        modeToAttValNum[dim] = newLength;
+        modeToMinHeap[dim] = new HashIndexedMinHeap(newLength);
+        modeToAttValToStatus[dim] = new byte[newLength];
+        modeToAttValsInWideRange[dim] = new int[newLength];
+        modeToAttValsInNarrowRange[dim] = new int[newLength];
+        if(table != null) {
+            table.resize(dim, newLength);
+        }
+        oriTensor.resize(dim, newLength);
+        subTensor.resize(dim, newLength);
+    }
+
+    /**
+     * return the attribute values of the given mode referred to by the maintained block,
+     * which should keep their indices in compaction even if they have no entries
+     * @param mode
+     * @return
+     */
+    BitSet getReferencedAttVals(int mode) {
+        final BitSet referenced = maintainedAttNum == -1 ? new BitSet() : (BitSet) maintainedBlock[mode].clone();
+        if(maxMode == mode && maxAttVal >= 0) {
+            referenced.set(maxAttVal);
+        }
+        return referenced;
+    }
+
+    /**
+     * move attribute values to new indices after the index matching is compacted, and shrink the data structures
+     * @param modeToOldToNew mode -> old attribute value -> new attribute value (null for modes not compacted)
+     * @param modeToNewLength mode -> new number of attribute values
+     */
+    void compact(int[][] modeToOldToNew, int[] modeToNewLength) {
+        for(int dim = 0; dim < order; dim++) {
+            final int[] oldToNew = modeToOldToNew[dim];
+            if(oldToNew == null) {
+                continue;
+            }
+            final int newLength = modeToNewLength[dim];
+
+            modeToAttValNum[dim] = newLength;
+            modeToMinHeap[dim] = new HashIndexedMinHeap(newLength);
+            modeToAttValToStatus[dim] = new byte[newLength];
+            modeToAttValsInWideRange[dim] = new int[newLength];
+            modeToAttValsInNarrowRange[dim] = new int[newLength];
+            if(table != null) {
+                table.remap(dim, oldToNew, newLength);
+            }
+            oriTensor.remap(dim, oldToNew, newLength);
+
+            final BitSet oldBlock = maintainedBlock[dim];
+            final BitSet newBlock = new BitSet(newLength);
+            for(int attVal = oldBlock.nextSetBit(0); attVal >= 0; attVal = oldBlock.nextSetBit(attVal + 1)) {
+                newBlock.set(oldToNew[attVal]);
+            }
+            maintainedBlock[dim] = newBlock;
+
+            if(maxMode == dim && maxAttVal >= 0) {
+                maxAttVal = oldToNew[maxAttVal];
+            }
+        }
+        this.subTensor = createTensorWithSameSize(oriTensor, modeToAttValNum);
+    }
+
+    /**
+     * match the size of data structures to the input tensor, which may have been filled in bulk
+     */
+    private void ensureCapacity() {
+        for(int dim = 0; dim < order; dim++) {
+            int length = oriTensor.modeToAttValToDegree[dim].length;
+            if(length > modeToAttValNum[dim]) {
+                resize(dim, length);
+            }
+        }
+        this.subTensor = createTensorWithSameSize(oriTensor, modeToAttValNum);
     }
     
     /**
      * insert a new entry (or increment the value if exists) to the input tensor, and updated the densest block
      * @param newEntry
      */
-    void insert(int[] newEntry){
+    void insert(int[] newEntry) {
+        if(statistics == null) {
+            insertEntry(newEntry);
+            return;
+        }
+        resetWork();
+        insertEntry(newEntry);
+        statistics.record(true, isBatchUsed, isFastPathUsed, isDeferredUsed, wideRangeAttNum, narrowRangeAttNum, expansionNum, heapOperationNum, traversedColNum);
+    }
 
-        newEntry = newEntry.clone();
+    /**
+     * delete an entry (or decrement the value if exists) and updated the densest block
+     * @param deletedEntry
+     * @return modeToRemoved mode to whether attribute value is removed
+     */
+    boolean[] delete(int[] deletedEntry) {
+        if(statistics == null) {
+            return deleteEntry(deletedEntry);
+        }
+        resetWork();
+        boolean[] modeToRemoved = deleteEntry(deletedEntry);
+        statistics.record(false, isBatchUsed, false, isDeferredUsed, wideRangeAttNum, narrowRangeAttNum, expansionNum, heapOperationNum, traversedColNum);
+        return modeToRemoved;
+    }
 
-        if(newEntry[order] == 0) { // ignore
+    /**
+     * delete multiple entries (e.g., entries expiring at the same time) at once, and recompute the densest block
+     * by a single reordering of the entire tensor, which is cheaper than deleting them one by one if they are many
+     * (see isBatchDeletionPreferred)
+     * @param deletedEntries
+     */
+    void deleteBatch(Collection<int[]> deletedEntries) {
+
+        if(oriTensor == null || oriTensor.omega == 0) {
             return;
         }
 
-        //resize data structures if necessary
-        for(int dim = 0; dim < order; dim++) {
+        final boolean isEntire = maintainedAttNum == -1;
+        final int[] modeToNewLength = oriTensor.modeToNewLength;
+        int deletedNum = 0;
+        for(int[] deletedEntry : deletedEntries) {
+            if(deletedEntry[order] == 0) {
+                continue;
+            }
+            if(!oriTensor.delete(deletedEntry)) { //ignore
+                System.out.println("Deletion failed: an unknown entry");
+                continue;
+            }
+            deletedNum++;
+            for(int dim = 0; dim < order; dim++) {
+                if(modeToNewLength[dim] > 0) {
+                    subTensor.resize(dim, deletedEntry[dim], modeToNewLength[dim]);
+                }
+                else if(modeToNewLength[dim] < 0 && changeLog != null && isEntire) { // leave the entire block
+                    changeLog.add(dim, deletedEntry[dim], false);
+                }
+            }
+        }
+
+        if(oriTensor.omega > 0) {
+            batch();
+        }
+        else { // nothing remains
+            clearOrdering();
+        }
 
-            //increase size
-            if(newEntry[dim] == modeToAttValNum[dim] - 1) {
-                int oldLength = modeToAttValNum[dim];
-                int newLength = oldLength * 2;
-                modeToAttValNum[dim] = newLength;
-                modeToMinHeap[dim] = new HashIndexedMinHeap(newLength);
-                modeToAttValToStatus[dim] = new byte[newLength];
-                modeToAttValToInMaintained[dim] = Arrays.copyOf(modeToAttValToInMaintained[dim], newLength); // should be preserved
-                modeToAttValsInWideRange[dim] = new int[newLength];
-                modeToAttValsInNarrowRange[dim] = new int[newLength];
-                table.resize(dim, newLength);
-                oriTensor.resize(dim, newLength);
-                subTensor.resize(dim, newLength);
+        if(statistics != null) {
+            statistics.recordBatchDeletion(deletedNum);
+        }
+    }
+
+    /**
+     * whether deleting the given number of entries at once (by deleteBatch) is expected to be cheaper than deleting them one by one
+     * @param deletedNum number of entries to delete
+     * @param ratio minimum ratio of the number of entries to delete to the number of entries in the input tensor
+     * @return
+     */
+    boolean isBatchDeletionPreferred(int deletedNum, double ratio) {
+        if(reorderBudget > 0 && oriTensor.cardinality > reorderBudget) { // reordering the entire tensor exceeds the budget
+            return false;
+        }
+        return ratio > 0 && deletedNum > 1 && deletedNum >= ratio * oriTensor.omega;
+    }
+
+    /**
+     * bound the number of attribute values reordered by an update. an update exceeding the bound is applied to the input tensor without reordering,
+     * and so are the following updates until the ordering is recomputed, in the background (see EngineState) or by catchUp
+     * (which updates run themselves once the input tensor is small enough).
+     * meanwhile, the density of the maintained block is kept exact, but it is only a lower bound of the density of the block found by reordering
+     * @param reorderBudget maximum number of attribute values reordered by an update (0 if unbounded)
+     */
+    void setReorderBudget(int reorderBudget) {
+        this.reorderBudget = reorderBudget;
+    }
+
+    int getReorderBudget() {
+        return reorderBudget;
+    }
+
+    /**
+     * whether the density is the one guaranteed by the algorithm (false if it is a lower bound, see setReorderBudget)
+     * @return
+     */
+    boolean isDensityExact() {
+        return !isDeferred;
+    }
+
+    /**
+     * mark whether the ordering is being recomputed in the background, during which updates do not catch up by themselves
+     * @param isRecomputing
+     */
+    void setRecomputing(boolean isRecomputing) {
+        this.isRecomputing = isRecomputing;
+    }
+
+    /**
+     * recompute the ordering if updates have been applied without reordering (see setReorderBudget)
+     * @return false if the ordering is up to date
+     */
+    boolean catchUp() {
+        if(!isDeferred) {
+            return false;
+        }
+        if(oriTensor.omega > 0) {
+            batch();
+        }
+        else {
+            clearOrdering();
+        }
+        return true;
+    }
+
+    /**
+     * recompute the ordering if updates have been applied without reordering, the recomputation is within the budget,
+     * and no recomputation in the background is about to replace this core
+     */
+    private void catchUpWithinBudget() {
+        if(isDeferred && !isRecomputing && (reorderBudget == 0 || oriTensor.cardinality <= reorderBudget)) {
+            isBatchUsed = true;
+            catchUp();
+        }
+    }
+
+    /**
+     * whether an update reordering the columns with core numbers in the given range exceeds the budget,
+     * which is checked by walking the columns in the range, up to the budget, from the first column with a core number in the range
+     * @param minMaxCoreNum minimum and maximum core numbers for reordering
+     * @return
+     */
+    private boolean isOverBudget(int[] minMaxCoreNum) {
+        final int minCoreNum = minMaxCoreNum[0];
+        final int maxCoreNum = minMaxCoreNum[1];
+        if(reorderBudget == 0 || minCoreNum >= maxCoreNum) {
+            return false;
+        }
+
+        // the first column with a core number in the range, which is the first column of the smallest core number in the range
+        TableCol col = null;
+        if(maxCoreNum - minCoreNum < coreNumberToFirstColAndMass.size()) {
+            for(int key = minCoreNum; key <= maxCoreNum && col == null; key++) {
+                Pair<TableCol, long[]> colAndMass = coreNumberToFirstColAndMass.get(key);
+                if(colAndMass != null) {
+                    col = colAndMass.getKey();
+                }
+            }
+        }
+        else {
+            int minKey = Integer.MAX_VALUE;
+            for(Map.Entry<Integer, Pair<TableCol, long[]>> keyAndColAndMass : coreNumberToFirstColAndMass.entrySet()) {
+                int key = keyAndColAndMass.getKey();
+                if(key >= minCoreNum && key <= maxCoreNum && key < minKey) {
+                    minKey = key;
+                    col = keyAndColAndMass.getValue().getKey();
+                }
+            }
+        }
+
+        // core numbers are non-decreasing along the table
+        int colNum = 0;
+        while(col != null && col.coreNumber <= maxCoreNum) {
+            if(++colNum > reorderBudget) {
+                return true;
+            }
+            col = col.next;
+        }
+        return false;
+    }
+
+    /**
+     * reflect an update applied to the input tensor without reordering in the density of the maintained block
+     * @param entry inserted or deleted entry
+     * @param isInsert
+     * @param modeToRemoved mode -> whether the attribute value is removed (null for insertion)
+     */
+    private void deferUpdate(int[] entry, boolean isInsert, boolean[] modeToRemoved) {
+
+        isDeferred = true;
+        isDeferredUsed = true;
+
+        if(oriTensor.omega == 0) {
+            clearOrdering();
+            return;
+        }
+
+        if(maintainedAttNum != -1) {
+            double blockMass = density * maintainedAttNum;
+            if(isInMaintainedBlock(entry)) {
+                blockMass += isInsert ? entry[order] : -entry[order];
+            }
+            if(modeToRemoved != null) {
+                for(int dim = 0; dim < order; dim++) {
+                    if(modeToRemoved[dim] && maintainedBlock[dim].get(entry[dim])) {
+                        if(changeLog != null) {
+                            changeLog.add(dim, entry[dim], false);
+                        }
+                        maintainedBlock[dim].clear(entry[dim]);
+                        modeToMaintainedAttNum[dim]--;
+                        maintainedAttNum--;
+                        isBlockChanged = true;
+                    }
+                }
+            }
+            density = maintainedAttNum == 0 ? 0 : blockMass / maintainedAttNum;
+        }
+
+        final double entireDensity = ((double) oriTensor.mass) / oriTensor.cardinality;
+        if(maintainedAttNum == -1) {
+            density = entireDensity;
+            isBlockChanged = true; // attribute values may enter or leave the entire tensor
+        }
+        else if(entireDensity >= density) { // the entire tensor is denser than the maintained block
+            density = entireDensity;
+            maxMode = -1;
+            maxAttVal = -1;
+            rebuildMaintainedBlock();
+        }
+    }
+
+    /**
+     * reset the ordering after all entries are deleted
+     */
+    private void clearOrdering() {
+        table = new Table(order, modeToAttValNum);
+        coreNumberToFirstColAndMass.clear();
+        isDeferred = false;
+        density = 0;
+        maxMode = -1;
+        maxAttVal = -1;
+        rebuildMaintainedBlock();
+    }
+
+    private void resetWork() {
+        isBatchUsed = false;
+        isFastPathUsed = false;
+        isDeferredUsed = false;
+        wideRangeAttNum = 0;
+        narrowRangeAttNum = 0;
+        expansionNum = 0;
+        heapOperationNum = 0;
+        traversedColNum = 0;
+    }
+
+    private void insertEntry(int[] newEntry){
+
+        if(newEntry[order] == 0) { // ignore
+            return;
+        }
+
+        if(changeLog != null && maintainedAttNum == -1) { // new attribute values enter the entire block
+            for(int dim = 0; dim < order; dim++) {
+                if(oriTensor.modeToAttValToCardinality[dim][newEntry[dim]] == 0) {
+                    changeLog.add(dim, newEntry[dim], true);
+                }
             }
         }
 
         if(oriTensor.omega == 0) {
             oriTensor.insert(newEntry);
+            isBatchUsed = true;
             batch();
             return;
         }
 
+        catchUpWithinBudget();
+        if(isDeferred || (reorderBudget > 0 && isOverBudget(findMinMaxCoreNumberForInsertion(newEntry)))) {
+            oriTensor.insert(newEntry);
+            final int[] modeToNewLength = oriTensor.modeToNewLength;
+            for(int dim = 0; dim < order; dim++) {
+                if(modeToNewLength[dim] > 0) {
+                    subTensor.resize(dim, newEntry[dim], modeToNewLength[dim]);
+                }
+            }
+            deferUpdate(newEntry, true, null);
+            return;
+        }
+
         // density before insertion
         final double prevMaxDensity = density;
 
         // add the new entry in a tensor
-        final int[] modeToNewLength = oriTensor.insert(newEntry);
+        final long prevOmega = oriTensor.omega;
+        final int newId = oriTensor.insert(newEntry);
+        final boolean isNewEntry = oriTensor.omega > prevOmega;
+        if(!isNewEntry && incrementInPlace(newEntry)) {
+            isFastPathUsed = true;
+            if(maintainedAttNum > 0 && isInMaintainedBlock(newEntry)) { // the maintained block gains the increment
+                density += ((double) newEntry[order]) / maintainedAttNum;
+            }
+            return;
+        }
+        final int[] modeToNewLength = oriTensor.modeToNewLength;
         for(int dim = 0; dim < order; dim++) {
             if(modeToNewLength[dim] > 0) {
                 subTensor.resize(dim, newEntry[dim], modeToNewLength[dim]);
@@ -316,6 +995,12 @@ class Core {
         // number of remained attribute values (not removed yet)
         long remainedNum = oriTensor.cardinality;
 
+        // number of new attributes in the inserted entry
+        int newAttNum = numNewAttValues(newEntry);
+
+        // the maintained block is the entire tensor, which gains attribute values outside the block found so far
+        final boolean isEntireExtended = maxMode == -1 && newAttNum > 0;
+
         // density of the entire block
         double currentDensity = ((double) oriTensor.mass) / remainedNum;
         if(currentDensity > density) {
@@ -333,9 +1018,6 @@ class Core {
         // minimum core number where we should look at
         final int startC = Math.min(minCReorder, minCFind);
 
-        // number of new attributes in the inserted entry
-        int newAttNum = numNewAttValues(newEntry);
-
         //smallest core number higher or equal to startC
         int closest = Integer.MAX_VALUE;
         if(minCReorder < coreNumberToFirstColAndMass.size() && coreNumberToFirstColAndMass.containsKey(minCReorder)) { // small minC
@@ -410,6 +1092,7 @@ class Core {
             mass -= col.removeMass;
             remainedNum--;
             col = col.next;
+            traversedColNum++;
         }
 
         if(col != null) {
@@ -452,6 +1135,7 @@ class Core {
                 mass -= col.removeMass;
                 remainedNum--;
                 col = col.next;
+                traversedColNum++;
             }
 
             TableCol tempCol = col;
@@ -466,6 +1150,7 @@ class Core {
                     modeToAttValToStatus[dim][attVal] = 2; //in wide range
                 }
                 tempCol= tempCol.next;
+                traversedColNum++;
             }
 
             for(int dim = 0; dim < order; dim++) {
@@ -480,11 +1165,14 @@ class Core {
 
             final Queue<int[]> seeds = new LinkedList<int[]>();
             seeds.add(new int[]{col.mode, col.attVal});
-            newEntry[indexForProcessed] = 1;
+            if(isNewEntry) { // an incremented entry is already marked as processed
+                oriTensor.arena.setProcessed(newId, true);
+            }
             modeToReorderedAttNum = composeSubTensor(seeds, minCReorder, maxCReorder);
 
             for (int dim = 0; dim < order; dim++) {
                 int attNum = modeToReorderedAttNumWide[dim];
+                wideRangeAttNum += attNum;
                 int[] indexToRemovedList = modeToAttValsInWideRange[dim];
                 byte[] attValToRemoved = modeToAttValToStatus[dim];
                 for(int i=0; i<attNum; i++) {
@@ -501,8 +1189,6 @@ class Core {
         }
         else { // minCReorder == maxCReorder
 
-            newEntry[indexForProcessed] = 0;
-
             modeToReorderedAttNum = new int[order];
             final TableCol[][] modeToAttValToCol = table.modeToAttValToCol;
             final boolean[] insertFlag = new boolean[order];
@@ -513,11 +1199,14 @@ class Core {
                     insertFlag[dim] = true;
                 }
             }
-            subTensor.insert(newEntry, insertFlag);
+            if(isNewEntry) { // otherwise, every attribute value of the entry already exists
+                oriTensor.arena.setProcessed(newId, false);
+                subTensor.insert(newId, insertFlag);
+            }
         }
 
         //initialize min heap
-        final int[][][][] modeToAttValToEntries = subTensor.modeToAttValToEntries;
+        final int[][][] modeToAttValToEntries = subTensor.modeToAttValToEntries;
         final int[][] modeToAttValToDegree = subTensor.modeToAttValToDegree;
         final int[][] modeToAttValToCardinality = subTensor.modeToAttValToCardinality;
 
@@ -531,9 +1220,11 @@ class Core {
             for(int i=0; i<attNum; i++) {
                 int attVal = indexToAttVal[i];
                 minHeap.insert(attVal, modeToAttValToDegree[dim][attVal]);
+                heapOperationNum++;
             }
             minHeapSizeSum += attNum;
         }
+        narrowRangeAttNum = minHeapSizeSum;
 
         // initial core number
         int coreNumber = (head == null) ? -1 : head.coreNumber;
@@ -587,11 +1278,13 @@ class Core {
                 col.prev = head;
                 head = col;
                 col = col.next;
+                traversedColNum++;
 
             }
 
             // pop an attribute value from heap
             final int[] pair = modeToMinHeap[minDim].poll();
+            heapOperationNum++;
             final int dim = minDim;
             final int attVal = pair[0];
             final int removeMass = pair[1];
@@ -632,23 +1325,7 @@ class Core {
             head = newCol;
 
             //update the degree of other attribute values
-            int cardinality = modeToAttValToCardinality[dim][attVal];
-            int[][] indexToEntry = modeToAttValToEntries[dim][attVal];
-            for(int i=0; i<cardinality; i++) {
-                int[] entry = indexToEntry[i];
-                if(entry[indexForProcessed] == 0) { // if this entry is not removed yet
-                    for (int _dim = 0; _dim < order; _dim++) {
-                        if (_dim != dim) {
-                            int key = entry[_dim];
-                            HashIndexedMinHeap minHeap = modeToMinHeap[_dim];
-                            if (minHeap.containsKey(key)) {
-                                minHeap.refreshPriority(key, minHeap.getPriority(key) - entry[order]);
-                            }
-                        }
-                    }
-                    entry[indexForProcessed] =1; // this entry is removed
-                }
-            }
+            heapOperationNum += peelEntries(dim, modeToAttValToEntries[dim][attVal], modeToAttValToCardinality[dim][attVal]);
 
             subTensor.deleteAttVal(dim, attVal);
         }
@@ -661,48 +1338,137 @@ class Core {
         }
 
         // update the maintained block if we found a denser one
-        if(density > prevMaxDensity) {
+        if(isEntireExtended) {
+            // the previous block (the previous entire tensor) may now start at any column outside the scanned range
+            findDensestSuffix();
+            rebuildMaintainedBlock();
+        }
+        else if(density > prevMaxDensity) {
+            rebuildMaintainedBlock();
+        }
+        else if(maintainedAttNum > 0 && isInMaintainedBlock(newEntry)) { // the maintained block, which is kept, gains the entry
+            density += ((double) value) / maintainedAttNum;
+        }
+    }
 
-            isBlockChanged = true;
+    /**
+     * find the densest block among the blocks composed of the attribute values from each column to the last one
+     */
+    private void findDensestSuffix() {
+        long mass = oriTensor.mass;
+        long remainedNum = oriTensor.cardinality;
+        density = ((double) mass) / remainedNum;
+        maxMode = -1;
+        maxAttVal = -1;
+        TableCol col = table.head;
+        while(col != null) {
+            double averageMass = ((double) mass) / remainedNum;
+            if(averageMass > density) {
+                density = averageMass;
+                maxMode = col.mode;
+                maxAttVal = col.attVal;
+            }
+            mass -= col.removeMass;
+            remainedNum--;
+            col = col.next;
+            traversedColNum++;
+        }
+    }
 
-            if(maintainedBlock !=null) {
-                for (int dim = 0; dim < order; dim++) {
-                    for (int attVal : maintainedBlock[dim]) {
-                        modeToAttValToInMaintained[dim][attVal] = false;
-                    }
+    /**
+     * apply an increment of an existing entry without reordering, if the ordering provably stays the same except for the removed mass
+     * (and the core number) of the first attribute value of the entry in the ordering, to which the entry is charged.
+     * the conditions are that the first attribute value is found (i.e., the attribute values of the entry with the smallest core number are ordered within a few columns),
+     * that its new removed mass does not exceed that of the next column (i.e., it is not moved),
+     * that its core number, if increased, is the first of its core number (i.e., the index of core numbers is known),
+     * and that no block up to it can reach the current density
+     * @param entry incremented entry, already added to the input tensor
+     * @return false if the entry should be processed by reordering
+     */
+    private boolean incrementInPlace(int[] entry) {
+
+        final int value = entry[order];
+        final TableCol[][] modeToAttValToCol = table.modeToAttValToCol;
+
+        // the first attribute value of the entry in the ordering, which has the smallest core number
+        TableCol first = null;
+        boolean isTied = false;
+        for(int dim = 0; dim < order; dim++) {
+            TableCol col = modeToAttValToCol[dim][entry[dim]];
+            if(first == null || col.coreNumber < first.coreNumber) {
+                first = col;
+                isTied = false;
+            }
+            else if(col.coreNumber == first.coreNumber) {
+                isTied = true;
+            }
+        }
+        if(isTied) {
+            // columns with the same core number are consecutive, and the first one among them is found by walking towards the head
+            final int coreNumber = first.coreNumber;
+            TableCol col = first.prev;
+            for(int step = 0; col != null && col.coreNumber == coreNumber; step++) {
+                if(step == MAX_TIE_STEPS) { // the order between them is unknown
+                    return false;
+                }
+                if(entry[col.mode] == col.attVal) {
+                    first = col;
                 }
+                col = col.prev;
+                traversedColNum++;
             }
+        }
 
-            if(maxMode != -1) {
+        final int removeMass = first.removeMass + value;
+        if(first.next != null && first.next.removeMass < removeMass) { // moved
+            return false;
+        }
 
-                maintainedBlock = new List[order];
-                maintainedAttNum = 0;
-                for (int dim = 0; dim < order; dim++) {
-                    maintainedBlock[dim] = new LinkedList();
+        final int prevCoreNumber = first.prev == null ? -1 : first.prev.coreNumber;
+        Pair<TableCol, long[]> firstColAndMass = null;
+        if(removeMass > prevCoreNumber) { // core number increases
+            firstColAndMass = coreNumberToFirstColAndMass.get(first.coreNumber);
+            if(first.coreNumber == prevCoreNumber || firstColAndMass == null || firstColAndMass.getKey() != first) {
+                return false;
+            }
+        }
+
+        if(((double) oriTensor.mass) / oriTensor.cardinality > density
+                || Math.max(prevCoreNumber, removeMass) >= (int) Math.ceil(density)) { // a denser block may appear
+            return false;
+        }
+
+        // the entry is removed with the first attribute value, and thus it is remained in front of the columns up to it
+        final int coreNumber = first.coreNumber;
+        if(coreNumber < coreNumberToFirstColAndMass.size()) {
+            for(int key = 0; key <= coreNumber; key++) {
+                Pair<TableCol, long[]> colAndMass = coreNumberToFirstColAndMass.get(key);
+                if(colAndMass != null) {
+                    colAndMass.getValue()[0] += value;
                 }
-                col = modeToAttValToCol[maxMode][maxAttVal];
-                while (col != null) {
-                    maintainedBlock[col.mode].add(col.attVal);
-                    modeToAttValToInMaintained[col.mode][col.attVal] = true;
-                    col = col.next;
-                    maintainedAttNum++;
+            }
+        }
+        else {
+            for(Map.Entry<Integer, Pair<TableCol, long[]>> keyAndColAndMass : coreNumberToFirstColAndMass.entrySet()) {
+                if(keyAndColAndMass.getKey() <= coreNumber) {
+                    keyAndColAndMass.getValue().getValue()[0] += value;
                 }
             }
-            else {
-                maintainedBlock = null;
-                maintainedAttNum = -1;
+        }
+
+        first.removeMass = removeMass;
+        if(firstColAndMass != null) {
+            for(int key = prevCoreNumber + 1; key < removeMass; key++) {
+                coreNumberToFirstColAndMass.remove(key);
             }
+            coreNumberToFirstColAndMass.put(removeMass, firstColAndMass);
+            first.coreNumber = removeMass;
+            table.modeToAttValToCoreNumber[first.mode][first.attVal] = removeMass;
         }
+        return true;
     }
 
-    /**
-     * delete an entry (or decrement the value if exists) and updated the densest block
-     * @param deletedEntry
-     * @return modeToRemoved mode to whether attribute value is removed
-     */
-    boolean[] delete(int[] deletedEntry) {
-
-        deletedEntry = deletedEntry.clone();
+    private boolean[] deleteEntry(int[] deletedEntry) {
 
         if (deletedEntry[order] == 0 || oriTensor == null) {
             return null;
@@ -715,14 +1481,16 @@ class Core {
             return null;
         }
 
-        // delete entry
-        final int[] modeToNewLength = oriTensor.delete(deletedEntry);
+        catchUpWithinBudget();
 
-        if(modeToNewLength==null) { //ignore
+        // delete entry
+        if(!oriTensor.delete(deletedEntry)) { //ignore
             System.out.println("Deletion failed: an unknown entry");
             return null;
         }
 
+        final int[] modeToNewLength = oriTensor.modeToNewLength;
+
         // number of attribute values deleted in the deleted entry
         int deletedAttNum = 0;
 
@@ -737,14 +1505,21 @@ class Core {
             else if(modeToNewLength[dim] < 0) { //remove
                 modeToRemoved[dim] = true;
                 deletedAttNum++;
+                if(changeLog != null && maintainedAttNum == -1) { // leave the entire block
+                    changeLog.add(dim, deletedEntry[dim], false);
+                }
             }
-            if(modeToAttValToInMaintained[dim][deletedEntry[dim]])
+            if(maintainedBlock[dim].get(deletedEntry[dim]))
                 maintainedNum++;
         }
 
         final int value = deletedEntry[order];
 
         final int[] minMaxC = findDeleteMinMaxCoreNum(deletedEntry, modeToRemoved);
+        if(isDeferred || isOverBudget(minMaxC)) {
+            deferUpdate(deletedEntry, false, modeToRemoved);
+            return modeToRemoved;
+        }
 
         // minimum core number we should look at for reordering
         final int minCReorder = minMaxC[0];
@@ -766,7 +1541,7 @@ class Core {
             density = (density * maintainedAttNum - value) / (maintainedAttNum - deletedAttNum);
         }
         else if (isMaintainedUpdated) {
-            density = oriTensor.cardinality == 0 ? 0 : oriTensor.mass / oriTensor.cardinality;
+            density = oriTensor.cardinality == 0 ? 0 : ((double) oriTensor.mass) / oriTensor.cardinality;
             maxMode = -1;
         }
 
@@ -872,6 +1647,7 @@ class Core {
             mass -= col.removeMass;
             remainedNum--;
             col = col.next;
+            traversedColNum++;
         }
 
         if(col != null) {
@@ -904,6 +1680,7 @@ class Core {
                 modeToAttValsInWideRange[dim][modeToReorderedAttNumWide[dim]++] = attVal;
                 modeToAttValToStatus[dim][attVal] = 2; //in wide range
                 tempCol= tempCol.next;
+                traversedColNum++;
             }
 
             //remove entries
@@ -926,6 +1703,7 @@ class Core {
 
             for (int dim = 0; dim < order; dim++) {
                 int attNum = modeToReorderedAttNumWide[dim];
+                wideRangeAttNum += attNum;
                 int[] indexToRemovedList = modeToAttValsInWideRange[dim];
                 byte[] attValToRemoved = modeToAttValToStatus[dim];
                 for(int i=0; i<attNum; i++) {
@@ -934,7 +1712,7 @@ class Core {
             }
 
             //initialize min heap
-            final int[][][][] modeToAttValToEntries = subTensor.modeToAttValToEntries;
+            final int[][][] modeToAttValToEntries = subTensor.modeToAttValToEntries;
             final int[][] modeToAttValToDegree = subTensor.modeToAttValToDegree;
             final int[][] modeToAttValToCardinality = subTensor.modeToAttValToCardinality;
 
@@ -948,9 +1726,11 @@ class Core {
                 for (int i = 0; i < attNum; i++) {
                     int attVal = indexToAttVal[i];
                     minHeap.insert(attVal, modeToAttValToDegree[dim][attVal]);
+                    heapOperationNum++;
                 }
                 minHeapSizeSum += attNum;
             }
+            narrowRangeAttNum = minHeapSizeSum;
 
             if(head != null) {
                 col = head.next;
@@ -1013,11 +1793,13 @@ class Core {
                     col.prev = head;
                     head = col;
                     col = col.next;
+                    traversedColNum++;
 
                 }
 
                 // pop an attribute-value from heap
                 final int[] pair = modeToMinHeap[minDim].poll();
+                heapOperationNum++;
                 final int dim = minDim;
                 final int attVal = pair[0];
                 final int removeMass = pair[1];
@@ -1058,23 +1840,7 @@ class Core {
                 head = newCol;
 
                 //update the degree of other attribute values
-                int cardinality = modeToAttValToCardinality[dim][attVal];
-                int[][] indexToEntry = modeToAttValToEntries[dim][attVal];
-                for (int i = 0; i < cardinality; i++) {
-                    int[] entry = indexToEntry[i];
-                    if (entry[indexForProcessed] == 0) {
-                        for (int _dim = 0; _dim < order; _dim++) {
-                            if (_dim != dim) {
-                                int key = entry[_dim];
-                                HashIndexedMinHeap minHeap = modeToMinHeap[_dim];
-                                if (minHeap.containsKey(key)) {
-                                    minHeap.refreshPriority(key, minHeap.getPriority(key) - entry[order]);
-                                }
-                            }
-                        }
-                        entry[indexForProcessed] = 1; // this entry is removed
-                    }
-                }
+                heapOperationNum += peelEntries(dim, modeToAttValToEntries[dim][attVal], modeToAttValToCardinality[dim][attVal]);
                 subTensor.deleteAttVal(dim, attVal);
             }
 
@@ -1118,6 +1884,7 @@ class Core {
                     mass -= col.removeMass;
                     remainedNum--;
                     col = col.next;
+                    traversedColNum++;
                 }
             }
 
@@ -1150,60 +1917,36 @@ class Core {
                 mass -= col.removeMass;
                 remainedNum--;
                 col = col.next;
+                traversedColNum++;
             }
         }
 
         if(maxMode == -1) { // entire block is the maintained block
             density =  oriTensor.cardinality == 0 ? 0 : ((double)oriTensor.mass) / oriTensor.cardinality;
-            maintainedAttNum = -1;
-            if(deletedAttNum > 0) {
-                isBlockChanged = true;
+            if(maintainedAttNum != -1 || deletedAttNum > 0) {
+                rebuildMaintainedBlock();
             }
             return modeToRemoved;
         }
         else if(isMaintainedUpdated) { // entry is included in the maintained block
 
-            isBlockChanged = true;
-
             if(!isDensestAttUpdated) { // maintained block is composed by the same attributes
+                isBlockChanged = true;
                 if(deletedAttNum > 0) {
                     for (int dim = 0; dim < order; dim++) {
                         if (modeToRemoved[dim]) {
-                            modeToAttValToInMaintained[dim][deletedEntry[dim]] = false;
-                            maintainedBlock[dim].remove((Object) deletedEntry[dim]);
+                            if(changeLog != null) {
+                                changeLog.add(dim, deletedEntry[dim], false);
+                            }
+                            maintainedBlock[dim].clear(deletedEntry[dim]);
+                            modeToMaintainedAttNum[dim]--;
                             maintainedAttNum -= 1;
                         }
                     }
                 }
             }
             else {
-                if (maintainedBlock != null) {
-                    for (int dim = 0; dim < order; dim++) {
-                        for (int attVal : maintainedBlock[dim]) {
-                            modeToAttValToInMaintained[dim][attVal] = false;
-                        }
-                    }
-                }
-
-                if (maxMode != -1) {
-                    final TableCol[][] modeToAttValToCol = table.modeToAttValToCol;
-                    maintainedBlock = new List[order];
-                    maintainedAttNum = 0;
-                    for (int dim = 0; dim < order; dim++) {
-                        maintainedBlock[dim] = new LinkedList();
-                    }
-                    col = modeToAttValToCol[maxMode][maxAttVal];
-                    while (col != null) {
-                        maintainedBlock[col.mode].add(col.attVal);
-                        modeToAttValToInMaintained[col.mode][col.attVal] = true;
-                        col = col.next;
-                        maintainedAttNum++;
-                    }
-                } else {
-                    maintainedBlock = null;
-                    maintainedAttNum = -1;
-                }
-
+                rebuildMaintainedBlock();
             }
 
         }
@@ -1220,12 +1963,11 @@ class Core {
      */
     private int[] composeSubTensor(Queue<int[]> seeds, int minCoreNum, int maxCoreNum) {
 
-        final int[][][][] modeToAttValToEntries = oriTensor.modeToAttValToEntries; //original oriTensor entries
+        final int[][][] modeToAttValToEntries = oriTensor.modeToAttValToEntries; //original oriTensor entries
         final int[][] modeToAttValToCardinality = oriTensor.modeToAttValToCardinality;
         final int[] modeToReorderNum = new int[order];
 
         final TableCol[][] modeToAttValToCol = table.modeToAttValToCol;
-        final int[][] modeToAttValToCoreNumber = table.modeToAttValToCoreNumber;
 
         final Queue<int[]> queue = seeds; // list of seeds
         for(int[] seed : seeds) {
@@ -1233,67 +1975,114 @@ class Core {
         }
 
         //until queue is empty
-        final int[] modeToCoreNumber = new int[order];
-        final boolean[] insertFlag = new boolean[order];
         while(!queue.isEmpty()) {
             final int[] pair = queue.poll();
+            expansionNum++;
             final int seedDim = pair[0];
             final int seedVal = pair[1];
             table.delete(modeToAttValToCol[seedDim][seedVal]);
             modeToAttValsInNarrowRange[seedDim][modeToReorderNum[seedDim]++] = seedVal;
+            expandEntries(seedDim, modeToAttValToEntries[seedDim][seedVal], modeToAttValToCardinality[seedDim][seedVal], minCoreNum, maxCoreNum, queue);
+        }
 
-            final int cardinality = modeToAttValToCardinality[seedDim][seedVal];
-            final int[][] indexToEntry = modeToAttValToEntries[seedDim][seedVal];
-            out:for(int i=0; i<cardinality; i++) {
-                int[] entry = indexToEntry[i];
-                if(entry[indexForProcessed] == 0) { //already added to the subtensor
-                    continue;
-                }
-
+        return modeToReorderNum;
+    }
 
-                for (int entryDim = 0; entryDim < order; entryDim++) {
-                    if (seedDim != entryDim) {
-                        modeToCoreNumber[entryDim] = modeToAttValToCoreNumber[entryDim][entry[entryDim]];
-                        if(modeToCoreNumber[entryDim] < minCoreNum ||
-                                (modeToCoreNumber[entryDim] == minCoreNum && modeToAttValToStatus[entryDim][entry[entryDim]] == 1)) { //removed
-                            continue out;
+    /**
+     * mark the entries of the given attribute value that are not removed yet as removed,
+     * and decrease the degrees of their other attribute values in the heaps by their values
+     * engines specialized for small orders override this (see create)
+     * @param dim mode of the removed attribute value
+     * @param indexToEntry ids of the entries with the attribute value
+     * @param cardinality number of the entries
+     * @return number of heap operations
+     */
+    int peelEntries(int dim, int[] indexToEntry, int cardinality) {
+        final EntryArena arena = oriTensor.arena;
+        int heapOperationNum = 0;
+        for(int i=0; i<cardinality; i++) {
+            int id = indexToEntry[i];
+            if(!arena.isProcessed(id)) { // if this entry is not removed yet
+                for (int _dim = 0; _dim < order; _dim++) {
+                    if (_dim != dim) {
+                        int key = arena.get(id, _dim);
+                        HashIndexedMinHeap minHeap = modeToMinHeap[_dim];
+                        if (minHeap.containsKey(key)) {
+                            minHeap.refreshPriority(key, minHeap.getPriority(key) - arena.get(id, order));
+                            heapOperationNum++;
                         }
                     }
                 }
+                arena.setProcessed(id, true); // this entry is removed
+            }
+        }
+        return heapOperationNum;
+    }
 
-                boolean isInsertOne = true;
-                for(int entryDim = 0; entryDim < order; entryDim++) {
-                    if(seedDim != entryDim) {
-                        if(modeToCoreNumber[entryDim] >= minCoreNum
-                                && modeToCoreNumber[entryDim] < maxCoreNum && modeToAttValToStatus[entryDim][entry[entryDim]] >= 2){ // appropriate core number
-                            isInsertOne = false;
-                            insertFlag[entryDim] = true;
-                            if(modeToAttValToStatus[entryDim][entry[entryDim]] != 3) { // not added to the queue yet
-                                queue.add(new int[]{entryDim, entry[entryDim]});
-                                modeToAttValToStatus[entryDim][entry[entryDim]] = 3;
-                            }
-                        }
-                        else {
-                            insertFlag[entryDim] = false;
-                        }
+    /**
+     * add the entries of the given seed attribute value to the subtensor, and enqueue their other attribute values that can be reordered
+     * engines specialized for small orders override this (see create)
+     * @param seedDim mode of the seed attribute value
+     * @param indexToEntry ids of the entries with the seed attribute value
+     * @param cardinality number of the entries
+     * @param minCoreNum
+     * @param maxCoreNum
+     * @param queue seeds to be expanded
+     */
+    void expandEntries(int seedDim, int[] indexToEntry, int cardinality, int minCoreNum, int maxCoreNum, Queue<int[]> queue) {
+
+        final EntryArena arena = oriTensor.arena;
+        final int[][] modeToAttValToCoreNumber = table.modeToAttValToCoreNumber;
+        final int[] modeToCoreNumber = modeToEntryCoreNumber;
+        final boolean[] insertFlag = modeToEntryInsertFlag;
+
+        out:for(int i=0; i<cardinality; i++) {
+            final int id = indexToEntry[i];
+            if(!arena.isProcessed(id)) { //already added to the subtensor
+                continue;
+            }
+
+
+            for (int entryDim = 0; entryDim < order; entryDim++) {
+                if (seedDim != entryDim) {
+                    modeToCoreNumber[entryDim] = modeToAttValToCoreNumber[entryDim][arena.get(id, entryDim)];
+                    if(modeToCoreNumber[entryDim] < minCoreNum ||
+                            (modeToCoreNumber[entryDim] == minCoreNum && modeToAttValToStatus[entryDim][arena.get(id, entryDim)] == 1)) { //removed
+                        continue out;
                     }
                 }
+            }
 
-                if(isInsertOne) {
-                    entry[indexForProcessed] = 1;
-                    subTensor.addDegree(entry, seedDim);
-                }
-                else {
-                    entry[indexForProcessed] = 0;
-                    insertFlag[seedDim] = true;
-                    subTensor.insert(entry, insertFlag);
+            boolean isInsertOne = true;
+            for(int entryDim = 0; entryDim < order; entryDim++) {
+                if(seedDim != entryDim) {
+                    final int attVal = arena.get(id, entryDim);
+                    if(modeToCoreNumber[entryDim] >= minCoreNum
+                            && modeToCoreNumber[entryDim] < maxCoreNum && modeToAttValToStatus[entryDim][attVal] >= 2){ // appropriate core number
+                        isInsertOne = false;
+                        insertFlag[entryDim] = true;
+                        if(modeToAttValToStatus[entryDim][attVal] != 3) { // not added to the queue yet
+                            queue.add(new int[]{entryDim, attVal});
+                            modeToAttValToStatus[entryDim][attVal] = 3;
+                        }
+                    }
+                    else {
+                        insertFlag[entryDim] = false;
+                    }
                 }
+            }
 
+            if(isInsertOne) {
+                arena.setProcessed(id, true);
+                subTensor.addDegree(id, seedDim);
+            }
+            else {
+                arena.setProcessed(id, false);
+                insertFlag[seedDim] = true;
+                subTensor.insert(id, insertFlag);
             }
 
         }
-
-        return modeToReorderNum;
     }
 
     /**
@@ -1381,14 +2170,14 @@ class Core {
      * @return
      */
     private TensorMinimal createTensorWithSameSize(TensorFull tensor, int[] modeToIndicesNum) {
-        final TensorMinimal newTensor = new TensorMinimal(tensor.order, modeToIndicesNum);
+        final TensorMinimal newTensor = new TensorMinimal(tensor.order, modeToIndicesNum, tensor.arena);
         for(int dim = 0; dim < tensor.order; dim++) {
-            int[][][] attValToEntryOld = tensor.modeToAttValToEntries[dim];
-            int[][][] attValToEntryNew = newTensor.modeToAttValToEntries[dim];
+            int[][] attValToEntryOld = tensor.modeToAttValToEntries[dim];
+            int[][] attValToEntryNew = newTensor.modeToAttValToEntries[dim];
             int attValNum = attValToEntryOld.length;
             for(int attVal = 0; attVal < attValNum; attVal++) {
                 if(attValToEntryOld[attVal]!=null) {
-                    attValToEntryNew[attVal] = new int[attValToEntryOld[attVal].length][];
+                    attValToEntryNew[attVal] = new int[attValToEntryOld[attVal].length];
                 }
             }
         }
@@ -0,0 +1,179 @@
+/* =================================================================================
+ *
+ * DenseAlert: Incremental Dense-Block Detection in Tensor Streams
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: Oct 24, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package densealert;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Parallel computation of the core number of every attribute value by iterative h-index updates
+ * (the core number of an attribute value is the maximum k such that it belongs to a subtensor where every attribute value has degree at least k)
+ * @author kijungs
+ */
+class CoreDecomposition {
+
+    // number of attribute values processed by a single task
+    private static final int LEAF_SIZE = 1024;
+
+    private final TensorFull tensor;
+    private final ForkJoinPool pool;
+    private final int order;
+
+    // mode, attVal -> upper bound of the core number, which decreases to the core number
+    private final int[][] modeToAttValToCoreNumber;
+
+    // mode, attVal -> whether the attribute value should be updated in the current iteration
+    private byte[][] modeToAttValToActive;
+
+    // mode, attVal -> whether the attribute value should be updated in the next iteration
+    private byte[][] modeToAttValToNextActive;
+
+    // number of iterations until convergence
+    int iterationNum = 0;
+
+    CoreDecomposition(TensorFull tensor, ForkJoinPool pool) {
+        this.tensor = tensor;
+        this.pool = pool;
+        this.order = tensor.order;
+        this.modeToAttValToCoreNumber = new int[order][];
+        this.modeToAttValToActive = new byte[order][];
+        this.modeToAttValToNextActive = new byte[order][];
+        for(int dim = 0; dim < order; dim++) {
+            int length = tensor.modeToAttValToDegree[dim].length;
+            modeToAttValToCoreNumber[dim] = Arrays.copyOf(tensor.modeToAttValToDegree[dim], length);
+            modeToAttValToActive[dim] = new byte[length];
+            modeToAttValToNextActive[dim] = new byte[length];
+            int[] attValToCardinality = tensor.modeToAttValToCardinality[dim];
+            for(int attVal = 0; attVal < length; attVal++) {
+                if(attValToCardinality[attVal] > 0) {
+                    modeToAttValToActive[dim][attVal] = 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * compute the core number of every attribute value
+     * @return mode, attVal -> core number (0 if the attribute value does not appear)
+     */
+    int[][] compute() {
+        while(true) {
+            iterationNum++;
+            long changedNum = 0;
+            for(int dim = 0; dim < order; dim++) {
+                changedNum += pool.invoke(new UpdateTask(dim, 0, modeToAttValToCoreNumber[dim].length));
+            }
+            if(changedNum == 0) {
+                break;
+            }
+            byte[][] temp = modeToAttValToActive;
+            modeToAttValToActive = modeToAttValToNextActive;
+            modeToAttValToNextActive = temp;
+        }
+        return modeToAttValToCoreNumber;
+    }
+
+    /**
+     * update the active attribute values of a mode in a range, and return the number of changed ones
+     */
+    private class UpdateTask extends RecursiveTask<Long> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int mode;
+        private final int from;
+        private final int to;
+
+        UpdateTask(int mode, int from, int to) {
+            this.mode = mode;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Long compute() {
+            if(to - from > LEAF_SIZE) {
+                int mid = (from + to) >>> 1;
+                UpdateTask left = new UpdateTask(mode, from, mid);
+                left.fork();
+                long right = new UpdateTask(mode, mid, to).compute();
+                return left.join() + right;
+            }
+
+            final byte[] attValToActive = modeToAttValToActive[mode];
+            final int[] attValToCoreNumber = modeToAttValToCoreNumber[mode];
+            final int[] attValToCardinality = tensor.modeToAttValToCardinality[mode];
+            final int[][] attValToEntries = tensor.modeToAttValToEntries[mode];
+            final EntryArena arena = tensor.arena;
+
+            long changedNum = 0;
+            long[] buffer = new long[16];
+            for(int attVal = from; attVal < to; attVal++) {
+                if(attValToActive[attVal] == 0) {
+                    continue;
+                }
+                attValToActive[attVal] = 0;
+
+                final int coreNumber = attValToCoreNumber[attVal];
+                final int cardinality = attValToCardinality[attVal];
+                final int[] indexToEntry = attValToEntries[attVal];
+                if(buffer.length < cardinality) {
+                    buffer = new long[Math.max(cardinality, buffer.length * 2)];
+                }
+
+                // (smallest core number among the other attribute values, value) of each entry
+                for(int i = 0; i < cardinality; i++) {
+                    int id = indexToEntry[i];
+                    int support = coreNumber;
+                    for(int _dim = 0; _dim < order; _dim++) {
+                        if(_dim != mode) {
+                            support = Math.min(support, modeToAttValToCoreNumber[_dim][arena.get(id, _dim)]);
+                        }
+                    }
+                    buffer[i] = (((long) support) << 32) | arena.get(id, order);
+                }
+                Arrays.sort(buffer, 0, cardinality);
+
+                // h-index: maximum k such that the entries whose support is at least k have mass at least k
+                int hIndex = 0;
+                long mass = 0;
+                for(int i = cardinality - 1; i >= 0; i--) {
+                    int support = (int) (buffer[i] >>> 32);
+                    if(support <= hIndex) {
+                        break;
+                    }
+                    mass += (int) buffer[i];
+                    hIndex = (int) Math.max(hIndex, Math.min(support, mass));
+                }
+
+                if(hIndex < coreNumber) {
+                    attValToCoreNumber[attVal] = hIndex;
+                    changedNum++;
+                    for(int i = 0; i < cardinality; i++) {
+                        int id = indexToEntry[i];
+                        for(int _dim = 0; _dim < order; _dim++) {
+                            if(_dim != mode) {
+                                modeToAttValToNextActive[_dim][arena.get(id, _dim)] = 1;
+                            }
+                        }
+                    }
+                }
+            }
+            return changedNum;
+        }
+    }
+}
@@ -15,6 +15,7 @@
 
 package densealert;
 
+import javax.management.JMException;
 import java.util.*;
 
 /**
@@ -24,26 +25,53 @@ import java.util.*;
  */
 public class DenseAlert {
 
-    private IndexMatching indexMatching;
-    private TensorFull tensor;
-    private Core core;
-    private int order;
-    private int arrayLength;
-    private int window;
-    private Map<Integer, int[]> blockIndices = new HashMap<Integer, int[]>();
+    private final EngineState state;
+    private final int order;
+    private final int window;
     private Queue<Pair<Long, int[]>> deleteQueue = new LinkedList();
 
+    // id of an entry in the tensor -> expired entry not deleted from the core yet (with the sum of the expired values)
+    private Map<Integer, int[]> idToExpiredEntry = new LinkedHashMap<Integer, int[]>();
+
+    // timestamp of the latest insertion (or clock tick), within which expirations and insertions of the same entry cancel out
+    private long currentTime = Long.MIN_VALUE;
+    private double expiryBatchRatio = DEFAULT_EXPIRY_BATCH_RATIO;
+
+    // deleting about 0.1-0.3% of the entries one by one costs as much as a reordering of the entire tensor
+    static final double DEFAULT_EXPIRY_BATCH_RATIO = 0.005;
+
     /**
      * @param order order of the input tensor
      * @param window size of window (in seconds)
      */
     public DenseAlert(int order, int window){
+        this(order, window, false);
+    }
+
+    /**
+     * @param order order of the input tensor
+     * @param window size of window (in seconds)
+     * @param isOffHeap whether to store the entries in the window outside the Java heap
+     *                  (recommended for hundreds of millions of entries, where heap storage causes long GC pauses);
+     *                  the entry lists of attribute values, degrees and cardinalities stay on the heap
+     */
+    public DenseAlert(int order, int window, boolean isOffHeap){
+        this(order, window, null, 0, isOffHeap);
+    }
+
+    /**
+     * @param order order of the input tensor
+     * @param window size of window (in seconds)
+     * @param modeToExpectedAttValNum mode -> expected number of distinct attribute values (null for the default),
+     *                                up to which no data structure of the mode is resized
+     * @param expectedEntryNum expected number of entries in the input tensor, for which storage is allocated in advance
+     * @param isOffHeap whether to store the entries of the input tensor outside the Java heap
+     *                  (entry records only; the entry lists of attribute values, degrees and cardinalities stay on the heap)
+     */
+    public DenseAlert(int order, int window, int[] modeToExpectedAttValNum, int expectedEntryNum, boolean isOffHeap){
         this.order = order;
         this.window = window;
-        this.indexMatching = new IndexMatching(order);
-        this.tensor = new TensorFull(order, indexMatching.modeToIndicesNum);
-        this.core = new Core(tensor);
-        this.arrayLength = order * 2 + 2;
+        this.state = new EngineState(order, modeToExpectedAttValNum, expectedEntryNum, isOffHeap);
     }
 
     /**
@@ -52,22 +80,186 @@ public class DenseAlert {
      * @param timestamp
      */
     public void insert(int[] insertedEntry, long timestamp) {
+        insert(insertedEntry, timestamp, null);
+    }
+
+    /**
+     * processing insertion/increment, and score the inserted entry
+     * @param insertedEntry (i_{1}, i_{2}, ..., i_{N}, Delta)
+     * @param timestamp
+     * @param score filled with the score of the inserted entry (or null to skip)
+     */
+    public void insert(int[] insertedEntry, long timestamp, EntryScore score) {
+
+        final LatencyStatistics latency = state.getLatency();
+        final long start = latency == null ? 0 : System.nanoTime();
+        expire(timestamp);
+
+        final int[] entry = state.changeToIndex(insertedEntry);
+        insertNet(entry);
+        deleteQueue.add(new Pair<Long, int[]>(timestamp + window, entry));
+        if(idToExpiredEntry.isEmpty()) { // pending expirations are keyed by the ids of entries in the current tensor
+            state.swapIfReady();
+        }
+        if(score != null) {
+            applyExpiry();
+        }
+        if(latency != null) {
+            latency.record(LatencyStatistics.Operation.INSERT, System.nanoTime() - start);
+        }
+        if(score != null) {
+            state.core.score(entry, score);
+        }
+    }
+
+    /**
+     * advance the clock without inserting an entry, deleting the entries that fall out of the window
+     * so that expiry can be driven by a timer while no entry arrives
+     * @param timestamp current time, not less than the timestamps of the earlier calls
+     */
+    public void advanceTime(long timestamp) {
+        expire(timestamp);
+        applyExpiry();
+        state.emitAlert(currentTime);
+    }
+
+    /**
+     * collect the entries inserted more than window seconds before the given time.
+     * they are deleted from the core when the clock advances (or the block is read),
+     * unless the same entries are inserted again in the meantime, and thus periodic entries do not cause a deletion and an insertion
+     * @param timestamp
+     */
+    private void expire(long timestamp) {
+
+        if(timestamp > currentTime) {
+            applyExpiry();
+            if(currentTime != Long.MIN_VALUE) {
+                state.emitAlert(currentTime);
+            }
+            currentTime = timestamp;
+        }
 
         while(!deleteQueue.isEmpty() && deleteQueue.peek().getKey() < timestamp) {
-            Pair<Long, int[]> pair = deleteQueue.poll();
-            int[] entryToDelete = pair.getValue();
-            core.delete(entryToDelete);
+            int[] expiredEntry = deleteQueue.poll().getValue();
+            if(expiredEntry[order] == 0) { // never inserted
+                continue;
+            }
+            int id = state.tensor.find(expiredEntry);
+            if(id < 0) {
+                continue;
+            }
+            int[] pendingEntry = idToExpiredEntry.get(id);
+            if(pendingEntry == null) {
+                idToExpiredEntry.put(id, expiredEntry);
+            }
+            else {
+                pendingEntry[order] += expiredEntry[order];
+            }
         }
+    }
+
+    /**
+     * insert an entry to the core, after cancelling it out with the expiration of the same entry if any
+     * @param entry
+     */
+    private void insertNet(int[] entry) {
 
-        int[] entry = new int[arrayLength];
-        for(int dim = 0; dim < order; dim++) {
-            entry[dim] = insertedEntry[dim];
+        if(!idToExpiredEntry.isEmpty()) {
+            final int id = state.tensor.find(entry);
+            final int[] expiredEntry = id < 0 ? null : idToExpiredEntry.get(id);
+            if(expiredEntry != null) {
+                final int netValue = entry[order] - expiredEntry[order];
+                if(netValue >= 0) {
+                    idToExpiredEntry.remove(id);
+                    if(netValue > 0) {
+                        int[] incrementedEntry = entry.clone();
+                        incrementedEntry[order] = netValue;
+                        state.core.insert(incrementedEntry);
+                        state.countUpdates(1);
+                    }
+                }
+                else {
+                    expiredEntry[order] = -netValue;
+                }
+                final EngineStatistics statistics = state.getStatistics();
+                if(statistics != null) {
+                    statistics.recordCancellation();
+                }
+                return;
+            }
         }
 
-        entry[order] = insertedEntry[order];
-        entry = indexMatching.changeToIndex(entry);
-        core.insert(entry);
-        deleteQueue.add(new Pair<Long, int[]>(timestamp + window, entry.clone()));
+        state.core.insert(entry);
+        state.countUpdates(1);
+    }
+
+    /**
+     * delete the expired entries from the core.
+     * the entries are deleted together by a single reordering if they are many enough (see setExpiryBatchRatio)
+     */
+    private void applyExpiry() {
+
+        if(idToExpiredEntry.isEmpty()) {
+            return;
+        }
+
+        final LatencyStatistics latency = state.getLatency();
+        final long start = latency == null ? 0 : System.nanoTime();
+        final Core core = state.core;
+        final Collection<int[]> expiredEntries = idToExpiredEntry.values();
+        if(core.isBatchDeletionPreferred(expiredEntries.size(), expiryBatchRatio)) {
+            core.deleteBatch(expiredEntries);
+            state.countUpdates(expiredEntries.size());
+        }
+        else {
+            for(int[] entryToDelete : expiredEntries) {
+                if(latency == null) {
+                    core.delete(entryToDelete);
+                }
+                else {
+                    long deleteStart = System.nanoTime();
+                    core.delete(entryToDelete);
+                    latency.record(LatencyStatistics.Operation.DELETE, System.nanoTime() - deleteStart);
+                }
+                state.countUpdates(1);
+            }
+        }
+        idToExpiredEntry.clear();
+        state.swapIfReady();
+
+        if(latency != null) {
+            latency.record(LatencyStatistics.Operation.EXPIRY, System.nanoTime() - start);
+        }
+        compactIfSparse();
+    }
+
+    /**
+     * delete all entries with the given attribute value (e.g., a banned user) by a single reordering of the entire tensor,
+     * regardless of the reorder budget, and release the index of the attribute value.
+     * the deleted entries do not expire later, even if entries with the same attribute value are inserted again
+     * @param mode
+     * @param id attribute value
+     * @return number of deleted entries
+     */
+    public int deleteAttribute(int mode, int id) {
+        applyExpiry();
+        final int index = state.indexMatching.getIndex(mode, id);
+        if(index < 0) {
+            return 0;
+        }
+        final int deletedNum = state.deleteAttribute(mode, id);
+
+        // entries waiting for expiration
+        for(Pair<Long, int[]> pair : deleteQueue) {
+            int[] entry = pair.getValue();
+            if(entry[mode] == index) {
+                entry[order] = 0; // never expire
+            }
+        }
+        state.swapIfReady();
+        compactIfSparse();
+        state.emitAlert(currentTime);
+        return deletedNum;
     }
 
     /**
@@ -75,7 +267,44 @@ public class DenseAlert {
      * @return
      */
     public double getDensity() {
-        return core.getDensity();
+        applyExpiry();
+        return state.core.getDensity();
+    }
+
+    /**
+     * get the core number of an attribute value in the current tensor in constant time
+     * (the maximum k such that the attribute value belongs to a subtensor where every attribute value has degree at least k),
+     * which is high for attribute values in dense blocks
+     * @param mode
+     * @param id id of the attribute value
+     * @return core number (0 if the attribute value does not appear)
+     */
+    public int getCoreNumber(int mode, int id) {
+        applyExpiry();
+        return state.getCoreNumber(mode, id);
+    }
+
+    /**
+     * get the degree (sum of the values of the entries) of an attribute value in the current tensor in constant time
+     * @param mode
+     * @param id id of the attribute value
+     * @return degree (0 if the attribute value does not appear)
+     */
+    public int getDegree(int mode, int id) {
+        applyExpiry();
+        return state.getDegree(mode, id);
+    }
+
+    /**
+     * get the core numbers and degrees of attribute values of a mode at once
+     * @param mode
+     * @param ids ids of the attribute values
+     * @param coreNumbers array of length at least ids.length filled with the core numbers (or null to skip)
+     * @param degrees array of length at least ids.length filled with the degrees (or null to skip)
+     */
+    public void getCoreNumbers(int mode, int[] ids, int[] coreNumbers, int[] degrees) {
+        applyExpiry();
+        state.getCoreNumbers(mode, ids, coreNumbers, degrees);
     }
 
     /**
@@ -83,52 +312,213 @@ public class DenseAlert {
      * @return mode to list of indices forming a dense block
      */
     public Map<Integer, int[]> getBlockIndices() {
+        applyExpiry();
+        return state.getBlockIndices();
+    }
 
-        if(core.isBlockChanged()) {
-            List<Integer>[] maintainedBlock = core.getDenseBlockAttVals();
-            if(maintainedBlock == null) {
-                int[][] modeToAttValToCardinality = tensor.modeToAttValToCardinality;
-                int[][] modeToIndexToId = indexMatching.modeToIndexToId;
-
-                for(int mode = 0; mode < order; mode++) {
-                    int[] indexToCardinality = modeToAttValToCardinality[mode];
-                    int[] indexToId = modeToIndexToId[mode];
-
-                    int count = 0;
-                    int length = indexToCardinality.length;
-                    for(int index = 0; index<length; index++) {
-                        if(indexToCardinality[index] > 0 ){
-                            count++;
-                        }
-                    }
+    /**
+     * get the current version of the maintained block, which can be passed to getBlockChanges
+     * @return
+     */
+    public long getBlockVersion() {
+        applyExpiry();
+        return state.changeLog().getVersion();
+    }
 
-                    int[] ids = new int[count];
-                    int loc = 0;
-                    for(int index = 0; index<length; index++) {
-                        if(indexToCardinality[index] > 0 ){
-                            ids[loc++] = indexToId[index];
-                        }
-                    }
-                    blockIndices.put(mode, ids);
-                }
-            }
-            else {
-                int[][] modeToIndexToId = indexMatching.modeToIndexToId;
-                for(int mode = 0; mode < order; mode++) {
-                    int[] indexToId = modeToIndexToId[mode];
-                    int[] ids = new int[maintainedBlock[mode].size()];
-                    int loc = 0;
-                    for(int index : maintainedBlock[mode]) {
-                        ids[loc++] = indexToId[index];
-                    }
-                    blockIndices.put(mode, ids);
-                }
+    /**
+     * get mode and ids that entered or left the maintained block since the given version
+     * changes are logged from the first call of getBlockVersion or getBlockChanges
+     * up to 2^20 changes are kept, and the log is cleared once it is full,
+     * after which the changes since an earlier version are reported as reset (see BlockChanges.isReset)
+     * @param version version held by the caller
+     * @return net changes and the current version
+     */
+    public BlockChanges getBlockChanges(long version) {
+        applyExpiry();
+        return state.changeLog().getChangesSince(version);
+    }
+
+    /**
+     * iterate over the ids of the given mode in the maintained block without materializing them
+     * the iterator should not be used after the next update
+     * @param mode
+     * @return
+     */
+    public PrimitiveIterator.OfInt getBlockIterator(int mode) {
+        applyExpiry();
+        return state.getBlockIterator(mode);
+    }
+
+    /**
+     * start counting the work done by each update, and register the counters as an MBean
+     * the work is counted by field increments in the update loops, which are kept even while statistics are disabled;
+     * enabling statistics adds the recording of the counters after each update
+     * @param mBeanName object name of the MBean (e.g., "densealert:type=DenseAlert"), or null not to register
+     * @return counters
+     * @throws JMException if the MBean cannot be registered
+     */
+    public EngineStatistics enableStatistics(String mBeanName) throws JMException {
+        return state.enableStatistics(mBeanName);
+    }
+
+    /**
+     * stop counting the work done by updates, and unregister the MBean if registered
+     * @throws JMException if the MBean cannot be unregistered
+     */
+    public void disableStatistics() throws JMException {
+        state.disableStatistics();
+    }
+
+    /**
+     * start recording the latency of each operation in histograms
+     * @return latency histograms
+     */
+    public LatencyStatistics enableLatencyTracking() {
+        return state.enableLatencyTracking();
+    }
+
+    /**
+     * stop recording latencies
+     */
+    public void disableLatencyTracking() {
+        state.disableLatencyTracking();
+    }
+
+    /**
+     * bound the work of each update, for a latency budget. an update that would reorder more attribute values than the given number
+     * is applied to the input tensor without reordering, and so are all the following updates, however small, since the ordering they would
+     * start from is out of date; meanwhile, the ordering is recomputed on a background thread started by the first such update (see startBackgroundBatch),
+     * which replaces it at a later update, and catchUp does so while no update arrives. the thread processing updates thus never reorders more than
+     * the given number of attribute values per update, except that it runs the batch algorithm itself while the input tensor has at most that number of attribute values.
+     * meanwhile, the density of the maintained block stays exact but is only a lower bound of the density found with reordering (see isDensityExact)
+     * @param maxReorderedAttNum maximum number of attribute values reordered by an update, or 0 for no bound (default)
+     */
+    public void setReorderBudget(int maxReorderedAttNum) {
+        state.setReorderBudget(maxReorderedAttNum);
+    }
+
+    /**
+     * whether the density (and the block) is the one guaranteed by the algorithm,
+     * or only a lower bound because updates have been applied without reordering (see setReorderBudget)
+     * @return
+     */
+    public boolean isDensityExact() {
+        applyExpiry();
+        return state.core.isDensityExact();
+    }
+
+    /**
+     * recompute the ordering delayed by the reorder budget from scratch on a background thread (see startBackgroundBatch),
+     * and replace the current ordering with the result if it is ready; the calling thread neither copies entries nor reorders.
+     * to be called repeatedly when no update is waiting (e.g., between bursts), since the result also replaces the current ordering at a later update
+     * @return false if the ordering is up to date, and true if the recomputation is in progress
+     * @throws IllegalStateException if the recomputation failed (e.g., out of memory); the current ordering is kept, and the next call starts another
+     */
+    public boolean catchUp() {
+        applyExpiry();
+        final boolean isRecomputed = state.catchUp();
+        state.emitAlert(currentTime);
+        return isRecomputed;
+    }
+
+    /**
+     * pass the changes in the maintained block to the given sink whenever the time advances and the block has changed
+     * (the first alert holds the whole block), with the last time whose entries and expirations are reflected as the timestamp
+     * @param sink receiver of alerts (e.g., AlertWriter), or null to stop
+     */
+    public void setAlertSink(AlertSink sink) {
+        state.setAlertSink(sink);
+    }
 
+    /**
+     * recompute the ordering from scratch on a background thread every given number of updates,
+     * as a safety net against drift after many incremental updates (see startBackgroundBatch)
+     * @param updateNum number of updates between the starts of recomputations, or 0 to disable (default)
+     */
+    public void setBackgroundBatchInterval(long updateNum) {
+        state.setBackgroundBatchInterval(updateNum);
+    }
+
+    /**
+     * start recomputing the ordering from scratch by the batch algorithm on a background thread.
+     * the entries are copied on the background thread, and the updates arriving meanwhile are replayed on the result,
+     * which replaces the current ordering at a later update once it catches up (and doubles the memory for the input tensor until then)
+     * @return false if a recomputation is already in progress
+     */
+    public boolean startBackgroundBatch() {
+        return state.startBackgroundBatch();
+    }
+
+    /**
+     * whether a recomputation started by startBackgroundBatch has not replaced the current ordering yet
+     * @return
+     */
+    public boolean isBackgroundBatchRunning() {
+        return state.isBackgroundBatchRunning();
+    }
+
+    /**
+     * error of the last recomputation that failed on the background thread (e.g., out of memory) and was discarded,
+     * which is checked at each update; the current ordering is kept meanwhile
+     * @return the error, or null if no recomputation failed since the last one replaced the ordering
+     */
+    public Throwable getBackgroundBatchError() {
+        return state.getBackgroundBatchError();
+    }
+
+    /**
+     * compact the indices of attribute values automatically whenever, in some mode,
+     * the number of attribute values in use falls below the given ratio of the capacity
+     * @param ratio ratio in (0, 0.5), or 0 to disable automatic compaction (default)
+     */
+    public void setCompactionRatio(double ratio) {
+        state.setCompactionRatio(ratio);
+    }
+
+    /**
+     * delete the entries expiring at once by a single reordering of the entire tensor, instead of one by one,
+     * if their number is at least the given ratio of the number of entries in the window.
+     * the reordering runs on the calling thread and takes as long as computing the block from scratch, whatever the number of expiring entries,
+     * so the insertion (or advanceTime) that expires such a sweep takes that long; it is chosen because deleting the entries one by one
+     * in the same call is expected to take longer. to bound the latency of every call instead, set a reorder budget (see setReorderBudget):
+     * sweeps are then deleted one by one whenever the input tensor has more attribute values than the budget
+     * @param ratio ratio in [0, 1], or 0 to always delete expired entries one by one (default: 0.005)
+     */
+    public void setExpiryBatchRatio(double ratio) {
+        if(ratio < 0 || ratio > 1) {
+            throw new IllegalArgumentException("ratio should be in [0, 1]: " + ratio);
+        }
+        this.expiryBatchRatio = ratio;
+    }
+
+    /**
+     * move the attribute values in use to the smallest indices and shrink the per-mode data structures,
+     * releasing the memory for attribute values that no longer appear in the input tensor
+     * the indices in use keep their relative order, and thus the block and the core numbers are unchanged by compaction itself;
+     * however, an id that is forgotten and appears again gets a new index, which may break later ties differently,
+     * so the blocks found afterwards may differ from (with the same guarantee as) those of an engine that never compacts
+     * block iterators obtained before compaction should not be used after it
+     */
+    public void compact() {
+        applyExpiry();
+        final int[][] modeToOldToNew = state.compact();
+
+        // entries waiting for expiration
+        for(Pair<Long, int[]> pair : deleteQueue) {
+            int[] entry = pair.getValue();
+            if(entry[order] == 0) { // never inserted
+                continue;
+            }
+            for(int mode = 0; mode < order; mode++) {
+                entry[mode] = modeToOldToNew[mode][entry[mode]];
             }
-            core.setBlockChanged(false);
         }
-        return null;
     }
 
+    private void compactIfSparse() {
+        if(state.needsCompaction()) {
+            compact();
+        }
+    }
 
 }
@@ -15,9 +15,10 @@
 
 package densealert;
 
-import java.util.HashMap;
-import java.util.List;
+import javax.management.JMException;
 import java.util.Map;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * DenseStream
@@ -26,23 +27,39 @@ import java.util.Map;
  */
 public class DenseStream {
 
-    private IndexMatching indexMatching;
-    private TensorFull tensor;
-    private Core core;
-    private int order;
-    private int arrayLength;
-    private Map<Integer, int[]> blockIndices = new HashMap<Integer, int[]>();
+    private final EngineState state;
+    private final int order;
 
     /**
      *
      * @param order order of the input tensor
      */
     public DenseStream(int order){
+        this(order, false);
+    }
+
+    /**
+     *
+     * @param order order of the input tensor
+     * @param isOffHeap whether to store the entries of the input tensor outside the Java heap
+     *                  (recommended for hundreds of millions of entries, where heap storage causes long GC pauses);
+     *                  the entry lists of attribute values, degrees and cardinalities stay on the heap
+     */
+    public DenseStream(int order, boolean isOffHeap){
+        this(order, null, 0, isOffHeap);
+    }
+
+    /**
+     * @param order order of the input tensor
+     * @param modeToExpectedAttValNum mode -> expected number of distinct attribute values (null for the default),
+     *                                up to which no data structure of the mode is resized
+     * @param expectedEntryNum expected number of entries in the input tensor, for which storage is allocated in advance
+     * @param isOffHeap whether to store the entries of the input tensor outside the Java heap
+     *                  (entry records only; the entry lists of attribute values, degrees and cardinalities stay on the heap)
+     */
+    public DenseStream(int order, int[] modeToExpectedAttValNum, int expectedEntryNum, boolean isOffHeap){
         this.order = order;
-        this.indexMatching = new IndexMatching(order);
-        this.tensor = new TensorFull(order, indexMatching.modeToIndicesNum);
-        this.core = new Core(tensor);
-        this.arrayLength = order * 2 + 2;
+        this.state = new EngineState(order, modeToExpectedAttValNum, expectedEntryNum, isOffHeap);
     }
 
     /**
@@ -50,13 +67,33 @@ public class DenseStream {
      * @param insertedEntry (i_{1}, i_{2}, ..., i_{N}, Delta)
      */
     public void insert(int[] insertedEntry) {
-        int[] entry = new int[arrayLength];
-        for(int dim = 0; dim < order; dim++) {
-            entry[dim] = insertedEntry[dim];
+        insert(insertedEntry, null);
+    }
+
+    /**
+     * processing insertion/increment, and score the inserted entry
+     * @param insertedEntry (i_{1}, i_{2}, ..., i_{N}, Delta)
+     * @param score filled with the score of the inserted entry (or null to skip)
+     */
+    public void insert(int[] insertedEntry, EntryScore score) {
+        final int[] entry = state.changeToIndex(insertedEntry);
+        final LatencyStatistics latency = state.getLatency();
+        if(latency == null) {
+            state.core.insert(entry);
+            state.countUpdates(1);
+            state.swapIfReady();
         }
-        entry[order] = insertedEntry[order];
-        entry = indexMatching.changeToIndex(entry);
-        core.insert(entry);
+        else {
+            long start = System.nanoTime();
+            state.core.insert(entry);
+            state.countUpdates(1);
+            state.swapIfReady();
+            latency.record(LatencyStatistics.Operation.INSERT, System.nanoTime() - start);
+        }
+        if(score != null) {
+            state.core.score(entry, score);
+        }
+        state.emitAlert(System.currentTimeMillis());
     }
 
     /**
@@ -64,13 +101,101 @@ public class DenseStream {
      * @param deletedEntry (i_{1}, i_{2}, ..., i_{N}, Delta)
      */
     public void delete(int[] deletedEntry) {
-        int[] entry = new int[arrayLength];
-        for(int dim = 0; dim < order; dim++) {
-            entry[dim] = deletedEntry[dim];
+        final int[] entry = state.changeToIndex(deletedEntry);
+        final LatencyStatistics latency = state.getLatency();
+        if(latency == null) {
+            state.core.delete(entry);
+            state.countUpdates(1);
+            state.swapIfReady();
+        }
+        else {
+            long start = System.nanoTime();
+            state.core.delete(entry);
+            state.countUpdates(1);
+            state.swapIfReady();
+            latency.record(LatencyStatistics.Operation.DELETE, System.nanoTime() - start);
+        }
+        compactIfSparse();
+        state.emitAlert(System.currentTimeMillis());
+    }
+
+    /**
+     * delete all entries with the given attribute value (e.g., a banned user) by a single reordering of the entire tensor,
+     * regardless of the reorder budget, and release the index of the attribute value
+     * @param mode
+     * @param id attribute value
+     * @return number of deleted entries
+     */
+    public int deleteAttribute(int mode, int id) {
+        final int deletedNum = state.deleteAttribute(mode, id);
+        state.swapIfReady();
+        compactIfSparse();
+        state.emitAlert(System.currentTimeMillis());
+        return deletedNum;
+    }
+
+    /**
+     * insert entries in bulk, and compute the block by parallel (1+epsilon)-approximate peeling
+     * the density of the block is at least 1/(N(1+epsilon)) of the densest block, and it is reported as a lower bound (see isDensityExact)
+     * until the exact ordering, which is computed on a background thread started here, replaces it at a later insertion/deletion (or through catchUp);
+     * meanwhile, insertions/deletions are applied without reordering
+     * @param insertedEntries list of (i_{1}, i_{2}, ..., i_{N}, Delta)
+     * @param epsilon approximation parameter
+     * @param parallelism number of threads used for peeling
+     */
+    public void bootstrap(Iterable<int[]> insertedEntries, double epsilon, int parallelism) {
+        loadEntries(insertedEntries);
+        if(state.tensor.omega == 0) {
+            return;
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            state.core.approximateBatch(epsilon, pool);
+        } finally {
+            pool.shutdown();
+        }
+        state.startBackgroundBatch();
+        state.emitAlert(System.currentTimeMillis());
+    }
+
+    /**
+     * insert entries in bulk, and compute the block by parallel core decomposition
+     * the result is the same as that of inserting the entries one by one, and later insertions/deletions continue from it
+     * the core decomposition does several times the work of the sequential batch algorithm, which it replaces for a single thread
+     * @param insertedEntries list of (i_{1}, i_{2}, ..., i_{N}, Delta)
+     * @param parallelism number of threads used for core decomposition
+     */
+    public void bootstrap(Iterable<int[]> insertedEntries, int parallelism) {
+        loadEntries(insertedEntries);
+        if(state.tensor.omega == 0) {
+            return;
+        }
+        if(parallelism <= 1) {
+            state.core.sequentialBatch();
+            state.emitAlert(System.currentTimeMillis());
+            return;
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            state.core.parallelBatch(pool);
+        } finally {
+            pool.shutdown();
+        }
+        state.emitAlert(System.currentTimeMillis());
+    }
+
+    /**
+     * add entries to the input tensor without updating the block
+     * @param insertedEntries list of (i_{1}, i_{2}, ..., i_{N}, Delta)
+     */
+    private void loadEntries(Iterable<int[]> insertedEntries) {
+        state.cancelBackgroundBatch();
+        for(int[] insertedEntry : insertedEntries) {
+            if(insertedEntry[order] == 0) {
+                continue;
+            }
+            state.tensor.insert(state.changeToIndex(insertedEntry));
         }
-        entry[order] = deletedEntry[order];
-        entry = indexMatching.changeToIndex(entry);
-        core.delete(entry);
     }
 
     /**
@@ -78,7 +203,40 @@ public class DenseStream {
      * @return
      */
     public double getDensity() {
-        return core.getDensity();
+        return state.core.getDensity();
+    }
+
+    /**
+     * get the core number of an attribute value in the current tensor in constant time
+     * (the maximum k such that the attribute value belongs to a subtensor where every attribute value has degree at least k),
+     * which is high for attribute values in dense blocks
+     * @param mode
+     * @param id id of the attribute value
+     * @return core number (0 if the attribute value does not appear)
+     */
+    public int getCoreNumber(int mode, int id) {
+        return state.getCoreNumber(mode, id);
+    }
+
+    /**
+     * get the degree (sum of the values of the entries) of an attribute value in the current tensor in constant time
+     * @param mode
+     * @param id id of the attribute value
+     * @return degree (0 if the attribute value does not appear)
+     */
+    public int getDegree(int mode, int id) {
+        return state.getDegree(mode, id);
+    }
+
+    /**
+     * get the core numbers and degrees of attribute values of a mode at once
+     * @param mode
+     * @param ids ids of the attribute values
+     * @param coreNumbers array of length at least ids.length filled with the core numbers (or null to skip)
+     * @param degrees array of length at least ids.length filled with the degrees (or null to skip)
+     */
+    public void getCoreNumbers(int mode, int[] ids, int[] coreNumbers, int[] degrees) {
+        state.getCoreNumbers(mode, ids, coreNumbers, degrees);
     }
 
     /**
@@ -86,51 +244,179 @@ public class DenseStream {
      * @return mode to list of indices forming a dense block
      */
     public Map<Integer, int[]> getBlockIndices() {
+        return state.getBlockIndices();
+    }
 
-        if(core.isBlockChanged()) {
-            List<Integer>[] maintainedBlock = core.getDenseBlockAttVals();
-            if(maintainedBlock == null) {
-                int[][] modeToAttValToCardinality = tensor.modeToAttValToCardinality;
-                int[][] modeToIndexToId = indexMatching.modeToIndexToId;
-
-                for(int mode = 0; mode < order; mode++) {
-                    int[] indexToCardinality = modeToAttValToCardinality[mode];
-                    int[] indexToId = modeToIndexToId[mode];
-
-                    int count = 0;
-                    int length = indexToCardinality.length;
-                    for(int index = 0; index<length; index++) {
-                        if(indexToCardinality[index] > 0 ){
-                            count++;
-                        }
-                    }
-
-                    int[] ids = new int[count];
-                    int loc = 0;
-                    for(int index = 0; index<length; index++) {
-                        if(indexToCardinality[index] > 0 ){
-                            ids[loc++] = indexToId[index];
-                        }
-                    }
-                    blockIndices.put(mode, ids);
-                }
-            }
-            else {
-                int[][] modeToIndexToId = indexMatching.modeToIndexToId;
-                for(int mode = 0; mode < order; mode++) {
-                    int[] indexToId = modeToIndexToId[mode];
-                    int[] ids = new int[maintainedBlock[mode].size()];
-                    int loc = 0;
-                    for(int index : maintainedBlock[mode]) {
-                        ids[loc++] = indexToId[index];
-                    }
-                    blockIndices.put(mode, ids);
-                }
+    /**
+     * get the current version of the maintained block, which can be passed to getBlockChanges
+     * @return
+     */
+    public long getBlockVersion() {
+        return state.changeLog().getVersion();
+    }
 
-            }
-            core.setBlockChanged(false);
+    /**
+     * get mode and ids that entered or left the maintained block since the given version
+     * changes are logged from the first call of getBlockVersion or getBlockChanges
+     * up to 2^20 changes are kept, and the log is cleared once it is full (or once the block is recomputed by bootstrap),
+     * after which the changes since an earlier version are reported as reset (see BlockChanges.isReset)
+     * @param version version held by the caller
+     * @return net changes and the current version
+     */
+    public BlockChanges getBlockChanges(long version) {
+        return state.changeLog().getChangesSince(version);
+    }
+
+    /**
+     * iterate over the ids of the given mode in the maintained block without materializing them
+     * the iterator should not be used after the next update
+     * @param mode
+     * @return
+     */
+    public PrimitiveIterator.OfInt getBlockIterator(int mode) {
+        return state.getBlockIterator(mode);
+    }
+
+    /**
+     * start counting the work done by each update, and register the counters as an MBean
+     * the work is counted by field increments in the update loops, which are kept even while statistics are disabled;
+     * enabling statistics adds the recording of the counters after each update
+     * @param mBeanName object name of the MBean (e.g., "densealert:type=DenseStream"), or null not to register
+     * @return counters
+     * @throws JMException if the MBean cannot be registered
+     */
+    public EngineStatistics enableStatistics(String mBeanName) throws JMException {
+        return state.enableStatistics(mBeanName);
+    }
+
+    /**
+     * stop counting the work done by updates, and unregister the MBean if registered
+     * @throws JMException if the MBean cannot be unregistered
+     */
+    public void disableStatistics() throws JMException {
+        state.disableStatistics();
+    }
+
+    /**
+     * start recording the latency of each operation in histograms
+     * @return latency histograms
+     */
+    public LatencyStatistics enableLatencyTracking() {
+        return state.enableLatencyTracking();
+    }
+
+    /**
+     * stop recording latencies
+     */
+    public void disableLatencyTracking() {
+        state.disableLatencyTracking();
+    }
+
+    /**
+     * bound the work of each update, for a latency budget. an update that would reorder more attribute values than the given number
+     * is applied to the input tensor without reordering, and so are all the following updates, however small, since the ordering they would
+     * start from is out of date; meanwhile, the ordering is recomputed on a background thread started by the first such update (see startBackgroundBatch),
+     * which replaces it at a later update, and catchUp does so while no update arrives. the thread processing updates thus never reorders more than
+     * the given number of attribute values per update, except that it runs the batch algorithm itself while the input tensor has at most that number of attribute values.
+     * meanwhile, the density of the maintained block stays exact but is only a lower bound of the density found with reordering (see isDensityExact)
+     * @param maxReorderedAttNum maximum number of attribute values reordered by an update, or 0 for no bound (default)
+     */
+    public void setReorderBudget(int maxReorderedAttNum) {
+        state.setReorderBudget(maxReorderedAttNum);
+    }
+
+    /**
+     * whether the density (and the block) is the one guaranteed by the algorithm,
+     * or only a lower bound because updates have been applied without reordering (see setReorderBudget)
+     * @return
+     */
+    public boolean isDensityExact() {
+        return state.core.isDensityExact();
+    }
+
+    /**
+     * recompute the ordering delayed by the reorder budget from scratch on a background thread (see startBackgroundBatch),
+     * and replace the current ordering with the result if it is ready; the calling thread neither copies entries nor reorders.
+     * to be called repeatedly when no update is waiting (e.g., between bursts), since the result also replaces the current ordering at a later update
+     * @return false if the ordering is up to date, and true if the recomputation is in progress
+     * @throws IllegalStateException if the recomputation failed (e.g., out of memory); the current ordering is kept, and the next call starts another
+     */
+    public boolean catchUp() {
+        final boolean isRecomputed = state.catchUp();
+        state.emitAlert(System.currentTimeMillis());
+        return isRecomputed;
+    }
+
+    /**
+     * pass the changes in the maintained block to the given sink after each update that changes the block
+     * (the first alert holds the whole block), with the wall-clock time in milliseconds as the timestamp
+     * @param sink receiver of alerts (e.g., AlertWriter), or null to stop
+     */
+    public void setAlertSink(AlertSink sink) {
+        state.setAlertSink(sink);
+    }
+
+    /**
+     * recompute the ordering from scratch on a background thread every given number of updates,
+     * as a safety net against drift after many incremental updates (see startBackgroundBatch)
+     * @param updateNum number of updates between the starts of recomputations, or 0 to disable (default)
+     */
+    public void setBackgroundBatchInterval(long updateNum) {
+        state.setBackgroundBatchInterval(updateNum);
+    }
+
+    /**
+     * start recomputing the ordering from scratch by the batch algorithm on a background thread.
+     * the entries are copied on the background thread, and the updates arriving meanwhile are replayed on the result,
+     * which replaces the current ordering at a later update once it catches up (and doubles the memory for the input tensor until then)
+     * @return false if a recomputation is already in progress
+     */
+    public boolean startBackgroundBatch() {
+        return state.startBackgroundBatch();
+    }
+
+    /**
+     * whether a recomputation started by startBackgroundBatch has not replaced the current ordering yet
+     * @return
+     */
+    public boolean isBackgroundBatchRunning() {
+        return state.isBackgroundBatchRunning();
+    }
+
+    /**
+     * error of the last recomputation that failed on the background thread (e.g., out of memory) and was discarded,
+     * which is checked at each update; the current ordering is kept meanwhile
+     * @return the error, or null if no recomputation failed since the last one replaced the ordering
+     */
+    public Throwable getBackgroundBatchError() {
+        return state.getBackgroundBatchError();
+    }
+
+    /**
+     * compact the indices of attribute values automatically whenever, in some mode,
+     * the number of attribute values in use falls below the given ratio of the capacity
+     * @param ratio ratio in (0, 0.5), or 0 to disable automatic compaction (default)
+     */
+    public void setCompactionRatio(double ratio) {
+        state.setCompactionRatio(ratio);
+    }
+
+    /**
+     * move the attribute values in use to the smallest indices and shrink the per-mode data structures,
+     * releasing the memory for attribute values that no longer appear in the input tensor
+     * the indices in use keep their relative order, and thus the block and the core numbers are unchanged by compaction itself;
+     * however, an id that is forgotten and appears again gets a new index, which may break later ties differently,
+     * so the blocks found afterwards may differ from (with the same guarantee as) those of an engine that never compacts
+     * block iterators obtained before compaction should not be used after it
+     */
+    public void compact() {
+        state.compact();
+    }
+
+    private void compactIfSparse() {
+        if(state.needsCompaction()) {
+            compact();
         }
-        return blockIndices;
     }
 
 }
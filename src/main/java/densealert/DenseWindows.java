@@ -0,0 +1,231 @@
+/* =================================================================================
+ *
+ * DenseAlert: Incremental Dense-Block Detection in Tensor Streams
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: Oct 24, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package densealert;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Dense blocks in tumbling or hopping windows
+ *
+ * Time is divided into panes of the slide length (aligned to multiples of it), and each window consists of size / slide consecutive panes.
+ * Whenever the time passes the end of a window with entries, the densest block in the window is found from scratch by the batch algorithm
+ * and passed to the listener, instead of being maintained by an insertion and a deletion for each entry as in DenseAlert.
+ * After each window, tumbling windows (slide = size) drop the input tensor at once,
+ * while hopping windows delete the entries of the oldest pane from the input tensor without reordering.
+ *
+ * @author kijungs
+ */
+public class DenseWindows {
+
+    private final int order;
+    private final int size;
+    private final int slide;
+    private final int paneNum; // number of panes in a window
+    private final IndexMatching indexMatching;
+    private final TensorFull tensor;
+    private final Core core;
+    private final CapacityCoordinator capacity;
+    private final WindowListener listener;
+
+    // pane -> entries (i_{1}, i_{2}, ..., i_{N}, Delta) in ids, flattened, for the panes of the current window in a ring (hopping windows only)
+    private final int[][] paneToEntries;
+    private final int[] paneToLength;
+    private int lastPane = 0; // pane receiving entries
+
+    // end of the pane receiving entries (exclusive)
+    private long paneEnd = Long.MIN_VALUE;
+
+    /**
+     * tumbling windows
+     * @param order order of the input tensor
+     * @param size window size in seconds
+     * @param listener receiver of the block in each window
+     */
+    public DenseWindows(int order, int size, WindowListener listener) {
+        this(order, size, size, listener, false);
+    }
+
+    /**
+     * hopping windows, or tumbling windows if slide = size
+     * @param order order of the input tensor
+     * @param size window size in seconds
+     * @param slide interval between the starts of windows in seconds, which should divide the window size
+     * @param listener receiver of the block in each window
+     */
+    public DenseWindows(int order, int size, int slide, WindowListener listener) {
+        this(order, size, slide, listener, false);
+    }
+
+    /**
+     * @param order order of the input tensor
+     * @param size window size in seconds
+     * @param slide interval between the starts of windows in seconds, which should divide the window size
+     * @param listener receiver of the block in each window
+     * @param isOffHeap whether entries are stored outside the Java heap
+     *                  (entry records only; the entry lists of attribute values, degrees and cardinalities stay on the heap)
+     */
+    public DenseWindows(int order, int size, int slide, WindowListener listener, boolean isOffHeap) {
+        if(slide <= 0 || size % slide != 0) {
+            throw new IllegalArgumentException("size should be a positive multiple of slide: " + size + ", " + slide);
+        }
+        this.order = order;
+        this.size = size;
+        this.slide = slide;
+        this.paneNum = size / slide;
+        this.listener = listener;
+        this.indexMatching = new IndexMatching(order);
+        this.tensor = new TensorFull(order, indexMatching.modeToIndicesNum, EntryArena.create(order, isOffHeap));
+        this.core = Core.create(tensor);
+        this.capacity = new CapacityCoordinator(indexMatching, tensor, core);
+        this.paneToEntries = paneNum > 1 ? new int[paneNum][] : null;
+        this.paneToLength = paneNum > 1 ? new int[paneNum] : null;
+    }
+
+    /**
+     * add an entry to the current window, after ending the windows before the given time
+     * @param insertedEntry (i_{1}, i_{2}, ..., i_{N}, Delta)
+     * @param timestamp not less than the timestamps of the earlier calls
+     */
+    public void insert(int[] insertedEntry, long timestamp) {
+
+        advanceTime(timestamp);
+        if(insertedEntry[order] == 0) {
+            return;
+        }
+
+        int[] entry = new int[order + 1];
+        for(int dim = 0; dim <= order; dim++) {
+            entry[dim] = insertedEntry[dim];
+        }
+        if(paneNum > 1) {
+            addToPane(entry);
+        }
+        entry = capacity.changeToIndex(entry);
+        tensor.insert(entry);
+    }
+
+    /**
+     * end the windows ending at or before the given time, passing the block in each of them (if not empty) to the listener.
+     * to be called with the time after the end of the last window once the stream ends
+     * @param timestamp not less than the timestamps of the earlier calls
+     */
+    public void advanceTime(long timestamp) {
+
+        if(paneEnd == Long.MIN_VALUE) { // first call
+            paneEnd = alignedEnd(timestamp);
+            return;
+        }
+
+        while(timestamp >= paneEnd) {
+            if(tensor.omega == 0) { // no entry until the given time
+                paneEnd = alignedEnd(timestamp);
+                return;
+            }
+            endWindow();
+            paneEnd += slide;
+        }
+    }
+
+    /**
+     * find the block in the window ending at the end of the current pane, and drop the oldest pane of the window
+     */
+    private void endWindow() {
+
+        core.rebatch();
+        listener.onWindow(new WindowResult(paneEnd - size, paneEnd, tensor.omega, core.getDensity(), getBlockIds()));
+
+        if(paneNum == 1) {
+            tensor.reset();
+            indexMatching.clear();
+            return;
+        }
+
+        lastPane = (lastPane + 1) % paneNum; // the oldest pane, reused for the next pane
+        final int[] entries = paneToEntries[lastPane];
+        final int length = paneToLength[lastPane];
+        final int[] modeToNewLength = tensor.modeToNewLength;
+        final int[] entry = new int[order + 1];
+        final int[] ids = new int[order];
+        for(int loc = 0; loc < length; loc += order + 1) {
+            for(int dim = 0; dim < order; dim++) {
+                ids[dim] = entries[loc + dim];
+                entry[dim] = indexMatching.getIndex(dim, ids[dim]);
+            }
+            entry[order] = entries[loc + order];
+            tensor.delete(entry);
+            for(int dim = 0; dim < order; dim++) {
+                if(modeToNewLength[dim] < 0) { // no entry remains with the attribute value
+                    indexMatching.release(dim, ids[dim]);
+                }
+            }
+        }
+        paneToLength[lastPane] = 0;
+    }
+
+    private void addToPane(int[] entry) {
+        int[] entries = paneToEntries[lastPane];
+        final int length = paneToLength[lastPane];
+        if(entries == null) {
+            entries = paneToEntries[lastPane] = new int[64 * (order + 1)];
+        }
+        else if(length + order + 1 > entries.length) {
+            entries = paneToEntries[lastPane] = Arrays.copyOf(entries, entries.length * 2);
+        }
+        System.arraycopy(entry, 0, entries, length, order + 1);
+        paneToLength[lastPane] = length + order + 1;
+    }
+
+    /**
+     * get the ids composing the block found in the current window
+     * @return mode to ids
+     */
+    private Map<Integer, int[]> getBlockIds() {
+
+        final Map<Integer, int[]> blockIds = new HashMap<Integer, int[]>();
+        final BitSet[] maintainedBlock = core.getDenseBlockAttVals();
+        final int[][] modeToIndexToId = indexMatching.modeToIndexToId;
+        for(int mode = 0; mode < order; mode++) {
+            int[] indexToId = modeToIndexToId[mode];
+            BitSet indices;
+            if(maintainedBlock == null) { // the entire tensor
+                indices = new BitSet();
+                int[] indexToCardinality = tensor.modeToAttValToCardinality[mode];
+                for(int index = 0; index < indexToCardinality.length; index++) {
+                    if(indexToCardinality[index] > 0) {
+                        indices.set(index);
+                    }
+                }
+            }
+            else {
+                indices = maintainedBlock[mode];
+            }
+            int[] ids = new int[indices.cardinality()];
+            int loc = 0;
+            for(int index = indices.nextSetBit(0); index >= 0; index = indices.nextSetBit(index + 1)) {
+                ids[loc++] = indexToId[index];
+            }
+            blockIds.put(mode, ids);
+        }
+        return blockIds;
+    }
+
+    private long alignedEnd(long timestamp) {
+        return Math.floorDiv(timestamp, (long) slide) * slide + slide;
+    }
+}
@@ -0,0 +1,406 @@
+/* =================================================================================
+ *
+ * DenseAlert: Incremental Dense-Block Detection in Tensor Streams
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: Oct 24, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package densealert;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PrimitiveIterator;
+
+/**
+ * State shared by DenseStream and DenseAlert: the input tensor and the core module with their capacity,
+ * the background recomputation that replaces them, compaction, statistics, reorder budget, and alerts
+ * the engines add how entries arrive and leave (e.g., expiration in DenseAlert) and delegate the rest to this class
+ * @author kijungs
+ */
+class EngineState {
+
+    final int order;
+    final IndexMatching indexMatching;
+
+    // replaced by the background recomputation (see swapIfReady)
+    TensorFull tensor;
+    Core core;
+    private CapacityCoordinator capacity;
+
+    private Map<Integer, int[]> blockIndices = new HashMap<Integer, int[]>();
+    private ObjectName statisticsName = null;
+    private EngineStatistics statistics = null;
+    private LatencyStatistics latency = null;
+    private double compactionRatio = 0;
+    private BackgroundBatch backgroundBatch = null;
+    private Throwable backgroundBatchError = null;
+    private long backgroundBatchInterval = 0;
+    private long updateNumSinceBackgroundBatch = 0;
+    private AlertSink alertSink = null;
+    private long alertVersion = -1;
+
+    /**
+     * @param order order of the input tensor
+     * @param modeToExpectedAttValNum mode -> expected number of distinct attribute values (null for the default)
+     * @param expectedEntryNum expected number of entries in the input tensor
+     * @param isOffHeap whether to store the entries of the input tensor outside the Java heap
+     */
+    EngineState(int order, int[] modeToExpectedAttValNum, int expectedEntryNum, boolean isOffHeap) {
+        this.order = order;
+        this.indexMatching = new IndexMatching(order, modeToExpectedAttValNum);
+        EntryArena arena = EntryArena.create(order, isOffHeap);
+        arena.ensureCapacity(expectedEntryNum);
+        this.tensor = new TensorFull(order, indexMatching.modeToIndicesNum, arena);
+        this.core = Core.create(tensor);
+        this.capacity = new CapacityCoordinator(indexMatching, tensor, core);
+    }
+
+    /**
+     * copy an entry given by ids, and change the ids to indices (the tensor keeps its own copy of each entry)
+     * @param entry (i_{1}, i_{2}, ..., i_{N}, Delta)
+     * @return
+     */
+    int[] changeToIndex(int[] entry) {
+        int[] copied = new int[order + 1];
+        System.arraycopy(entry, 0, copied, 0, order + 1);
+        return capacity.changeToIndex(copied);
+    }
+
+    /**
+     * delete all entries with the given attribute value by a single reordering, and release the index of the attribute value
+     * @param mode
+     * @param id attribute value
+     * @return number of deleted entries
+     */
+    int deleteAttribute(int mode, int id) {
+        final int index = indexMatching.getIndex(mode, id);
+        if(index < 0) {
+            return 0;
+        }
+        final List<int[]> deletedEntries = tensor.getEntries(mode, index);
+        if(!deletedEntries.isEmpty()) {
+            core.deleteBatch(deletedEntries);
+            countUpdates(deletedEntries.size());
+        }
+        indexMatching.release(mode, id);
+        return deletedEntries.size();
+    }
+
+    int getCoreNumber(int mode, int id) {
+        int index = indexMatching.getIndex(mode, id);
+        return index < 0 ? 0 : core.getCoreNumber(mode, index);
+    }
+
+    int getDegree(int mode, int id) {
+        int index = indexMatching.getIndex(mode, id);
+        return index < 0 ? 0 : core.getDegree(mode, index);
+    }
+
+    void getCoreNumbers(int mode, int[] ids, int[] coreNumbers, int[] degrees) {
+        for(int i = 0; i < ids.length; i++) {
+            int index = indexMatching.getIndex(mode, ids[i]);
+            if(coreNumbers != null) {
+                coreNumbers[i] = index < 0 ? 0 : core.getCoreNumber(mode, index);
+            }
+            if(degrees != null) {
+                degrees[i] = index < 0 ? 0 : core.getDegree(mode, index);
+            }
+        }
+    }
+
+    Map<Integer, int[]> getBlockIndices() {
+        if(latency == null) {
+            return computeBlockIndices();
+        }
+        long start = System.nanoTime();
+        Map<Integer, int[]> result = computeBlockIndices();
+        latency.record(LatencyStatistics.Operation.BLOCK_RETRIEVAL, System.nanoTime() - start);
+        return result;
+    }
+
+    private Map<Integer, int[]> computeBlockIndices() {
+
+        if(core.isBlockChanged()) {
+            BitSet[] maintainedBlock = core.getDenseBlockAttVals();
+            if(maintainedBlock == null) {
+                int[][] modeToAttValToCardinality = tensor.modeToAttValToCardinality;
+                int[][] modeToIndexToId = indexMatching.modeToIndexToId;
+
+                for(int mode = 0; mode < order; mode++) {
+                    int[] indexToCardinality = modeToAttValToCardinality[mode];
+                    int[] indexToId = modeToIndexToId[mode];
+
+                    int count = 0;
+                    int length = indexToCardinality.length;
+                    for(int index = 0; index<length; index++) {
+                        if(indexToCardinality[index] > 0 ){
+                            count++;
+                        }
+                    }
+
+                    int[] ids = new int[count];
+                    int loc = 0;
+                    for(int index = 0; index<length; index++) {
+                        if(indexToCardinality[index] > 0 ){
+                            ids[loc++] = indexToId[index];
+                        }
+                    }
+                    blockIndices.put(mode, ids);
+                }
+            }
+            else {
+                int[][] modeToIndexToId = indexMatching.modeToIndexToId;
+                for(int mode = 0; mode < order; mode++) {
+                    int[] indexToId = modeToIndexToId[mode];
+                    BitSet indices = maintainedBlock[mode];
+                    int[] ids = new int[core.getDenseBlockAttNums()[mode]];
+                    int loc = 0;
+                    for(int index = indices.nextSetBit(0); index >= 0; index = indices.nextSetBit(index + 1)) {
+                        ids[loc++] = indexToId[index];
+                    }
+                    blockIndices.put(mode, ids);
+                }
+
+            }
+            core.setBlockChanged(false);
+        }
+        return blockIndices;
+    }
+
+    PrimitiveIterator.OfInt getBlockIterator(int mode) {
+        BitSet[] maintainedBlock = core.getDenseBlockAttVals();
+        return new BlockIterator(maintainedBlock == null ? null : maintainedBlock[mode],
+                tensor.modeToAttValToCardinality[mode], indexMatching.modeToIndexToId[mode]);
+    }
+
+    BlockChangeLog changeLog() {
+        if(core.getChangeLog() == null) {
+            core.setChangeLog(new BlockChangeLog(order, indexMatching.modeToIndexToId));
+        }
+        return core.getChangeLog();
+    }
+
+    EngineStatistics enableStatistics(String mBeanName) throws JMException {
+        disableStatistics();
+        EngineStatistics statistics = new EngineStatistics();
+        if(mBeanName != null) {
+            ObjectName objectName = new ObjectName(mBeanName);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(statistics, objectName);
+            statisticsName = objectName;
+        }
+        core.setStatistics(statistics);
+        this.statistics = statistics;
+        return statistics;
+    }
+
+    void disableStatistics() throws JMException {
+        core.setStatistics(null);
+        statistics = null;
+        if(statisticsName != null) {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(statisticsName);
+            statisticsName = null;
+        }
+    }
+
+    /**
+     * @return counters of the work done by updates (null if disabled)
+     */
+    EngineStatistics getStatistics() {
+        return statistics;
+    }
+
+    LatencyStatistics enableLatencyTracking() {
+        latency = new LatencyStatistics();
+        return latency;
+    }
+
+    void disableLatencyTracking() {
+        latency = null;
+    }
+
+    /**
+     * @return latency histograms (null if disabled)
+     */
+    LatencyStatistics getLatency() {
+        return latency;
+    }
+
+    void setReorderBudget(int maxReorderedAttNum) {
+        if(maxReorderedAttNum < 0) {
+            throw new IllegalArgumentException("budget should be non-negative: " + maxReorderedAttNum);
+        }
+        core.setReorderBudget(maxReorderedAttNum);
+    }
+
+    /**
+     * replace the core with the background recomputation if it is ready,
+     * and start one if updates have been applied without reordering and none is in progress
+     * @return false if the ordering is up to date
+     * @throws IllegalStateException if the background recomputation failed, which is discarded (the next call starts another)
+     */
+    boolean catchUp() {
+        if(backgroundBatch != null && backgroundBatch.getError() != null) {
+            swapIfReady();
+            throw new IllegalStateException("background batch failed", backgroundBatchError);
+        }
+        swapIfReady();
+        if(core.isDensityExact()) {
+            return false;
+        }
+        startBackgroundBatch();
+        return true;
+    }
+
+    void setAlertSink(AlertSink sink) {
+        this.alertSink = sink;
+        this.alertVersion = -1; // the whole block is sent first
+    }
+
+    /**
+     * pass the changes in the block since the previous alert to the alert sink, if any
+     * @param timestamp
+     */
+    void emitAlert(long timestamp) {
+        if(alertSink == null) {
+            return;
+        }
+        final BlockChangeLog changeLog = changeLog();
+        if(changeLog.getVersion() == alertVersion) {
+            return;
+        }
+        final BlockChanges changes = changeLog.getChangesSince(alertVersion);
+        alertVersion = changes.getVersion();
+        Map<Integer, int[]> enteredIds = changes.getEnteredIds();
+        if(changes.isReset()) { // the whole block
+            enteredIds = new HashMap<Integer, int[]>(computeBlockIndices());
+        }
+        else {
+            boolean isChanged = false;
+            for(int mode = 0; mode < order; mode++) {
+                isChanged |= enteredIds.get(mode).length > 0 || changes.getLeftIds().get(mode).length > 0;
+            }
+            if(!isChanged) { // attribute values entered and left again
+                return;
+            }
+        }
+        alertSink.accept(new BlockAlert(timestamp, core.getDensity(), changes.isReset(), enteredIds, changes.getLeftIds()));
+    }
+
+    void setBackgroundBatchInterval(long updateNum) {
+        if(updateNum < 0) {
+            throw new IllegalArgumentException("interval should be non-negative: " + updateNum);
+        }
+        this.backgroundBatchInterval = updateNum;
+    }
+
+    boolean startBackgroundBatch() {
+        if(backgroundBatch != null) {
+            return false;
+        }
+        backgroundBatch = new BackgroundBatch(tensor, core.getReorderBudget());
+        backgroundBatch.start();
+        core.setRecomputing(true);
+        updateNumSinceBackgroundBatch = 0;
+        return true;
+    }
+
+    boolean isBackgroundBatchRunning() {
+        return backgroundBatch != null;
+    }
+
+    /**
+     * @return error of the last background recomputation that failed and was discarded (null if none failed since the last swap)
+     */
+    Throwable getBackgroundBatchError() {
+        return backgroundBatchError;
+    }
+
+    void cancelBackgroundBatch() {
+        if(backgroundBatch != null) {
+            backgroundBatch.cancel();
+            backgroundBatch = null;
+            core.setRecomputing(false);
+        }
+    }
+
+    /**
+     * count updates applied to the core, for starting the background recomputation periodically (see setBackgroundBatchInterval)
+     * the updates are logged for the running recomputation (if any) by the tensor itself
+     * @param updateNum
+     */
+    void countUpdates(long updateNum) {
+        if(backgroundBatch == null) {
+            updateNumSinceBackgroundBatch += updateNum;
+        }
+    }
+
+    /**
+     * start a background recomputation if the interval has passed or updates have been applied without reordering,
+     * or replace the current core with its result if it is ready
+     * after a recomputation failed, the next one is started only by the interval or by catchUp
+     */
+    void swapIfReady() {
+        if(backgroundBatch == null) {
+            if((backgroundBatchInterval > 0 && updateNumSinceBackgroundBatch >= backgroundBatchInterval)
+                    || (!core.isDensityExact() && backgroundBatchError == null)) {
+                startBackgroundBatch();
+            }
+            return;
+        }
+        if(backgroundBatch.getError() != null) { // the current core is kept
+            backgroundBatchError = backgroundBatch.getError();
+            backgroundBatch.cancel();
+            backgroundBatch = null;
+            core.setRecomputing(false);
+            return;
+        }
+        if(!backgroundBatch.isReady()) {
+            return;
+        }
+        backgroundBatch.finish(indexMatching.modeToIndicesNum);
+        final Core newCore = backgroundBatch.getCore();
+        newCore.takeOver(core);
+        tensor = backgroundBatch.getTensor();
+        core = newCore;
+        capacity = new CapacityCoordinator(indexMatching, tensor, core);
+        backgroundBatch = null;
+        backgroundBatchError = null;
+    }
+
+    void setCompactionRatio(double ratio) {
+        if(ratio < 0 || ratio >= 0.5) {
+            throw new IllegalArgumentException("ratio should be in [0, 0.5): " + ratio);
+        }
+        this.compactionRatio = ratio;
+    }
+
+    /**
+     * whether automatic compaction is enabled and the indices of some mode are sparse enough (see setCompactionRatio)
+     * @return
+     */
+    boolean needsCompaction() {
+        return compactionRatio > 0 && capacity.needsCompaction(compactionRatio);
+    }
+
+    /**
+     * move the attribute values in use to the smallest indices, after cancelling the background recomputation, whose indices would change
+     * @return mode -> old index -> new index (-1 if forgotten)
+     */
+    int[][] compact() {
+        cancelBackgroundBatch();
+        return capacity.compact();
+    }
+}
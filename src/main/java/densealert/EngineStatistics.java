@@ -0,0 +1,215 @@
+/* =================================================================================
+ *
+ * DenseAlert: Incremental Dense-Block Detection in Tensor Streams
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: Oct 24, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package densealert;
+
+/**
+ * Counters of the work done by the updates of an engine
+ * counters are written only by the thread updating the engine and may be read from any thread.
+ * reset may also be called from any thread (e.g., through JMX), and thus it never writes the counters:
+ * it records their values instead, which the getters subtract, and the maxima are cleared by the next update
+ *
+ * @author kijungs
+ */
+public class EngineStatistics implements EngineStatisticsMXBean {
+
+    private static final int INSERT = 0;
+    private static final int DELETE = 1;
+    private static final int BATCH = 2;
+    private static final int FAST_PATH = 3;
+    private static final int CANCELLED = 4;
+    private static final int DEFERRED = 5;
+    private static final int WIDE_RANGE = 6;
+    private static final int NARROW_RANGE = 7;
+    private static final int EXPANSION = 8;
+    private static final int HEAP_OPERATION = 9;
+    private static final int TRAVERSED_COL = 10;
+    private static final int COUNTER_NUM = 11;
+
+    private volatile long insertNum;
+    private volatile long deleteNum;
+    private volatile long batchNum;
+    private volatile long fastPathNum;
+    private volatile long cancelledNum;
+    private volatile long deferredNum;
+    private volatile long wideRangeAttNum;
+    private volatile long maxWideRangeAttNum;
+    private volatile long narrowRangeAttNum;
+    private volatile long maxNarrowRangeAttNum;
+    private volatile long expansionNum;
+    private volatile long heapOperationNum;
+    private volatile long traversedColNum;
+    private volatile long maxTraversedColNum;
+
+    // counter -> value at the last reset
+    private volatile long[] baseline = new long[COUNTER_NUM];
+
+    // number of calls of reset, and the number of them whose maxima are cleared (by the thread updating the engine)
+    private volatile long resetNum = 0;
+    private volatile long clearedResetNum = 0;
+
+    /**
+     * add the work done by a single update
+     */
+    void record(boolean isInsert, boolean isBatch, boolean isFastPath, boolean isDeferred, int wideRangeAttNum, int narrowRangeAttNum,
+                int expansionNum, int heapOperationNum, int traversedColNum) {
+        clearMaximaIfReset();
+        if(isInsert) {
+            this.insertNum++;
+        }
+        else {
+            this.deleteNum++;
+        }
+        if(isBatch) {
+            this.batchNum++;
+        }
+        if(isFastPath) {
+            this.fastPathNum++;
+        }
+        if(isDeferred) {
+            this.deferredNum++;
+        }
+        this.wideRangeAttNum += wideRangeAttNum;
+        if(wideRangeAttNum > maxWideRangeAttNum) {
+            this.maxWideRangeAttNum = wideRangeAttNum;
+        }
+        this.narrowRangeAttNum += narrowRangeAttNum;
+        if(narrowRangeAttNum > maxNarrowRangeAttNum) {
+            this.maxNarrowRangeAttNum = narrowRangeAttNum;
+        }
+        this.expansionNum += expansionNum;
+        this.heapOperationNum += heapOperationNum;
+        this.traversedColNum += traversedColNum;
+        if(traversedColNum > maxTraversedColNum) {
+            this.maxTraversedColNum = traversedColNum;
+        }
+    }
+
+    /**
+     * add an insertion cancelled out with the expiration of the same entry
+     */
+    void recordCancellation() {
+        this.cancelledNum++;
+    }
+
+    /**
+     * add the deletions of multiple entries processed at once by the batch algorithm
+     */
+    void recordBatchDeletion(int deletedNum) {
+        this.deleteNum += deletedNum;
+        this.batchNum++;
+    }
+
+    @Override
+    public long getInsertNum() {
+        return insertNum - baseline[INSERT];
+    }
+
+    @Override
+    public long getDeleteNum() {
+        return deleteNum - baseline[DELETE];
+    }
+
+    @Override
+    public long getBatchNum() {
+        return batchNum - baseline[BATCH];
+    }
+
+    @Override
+    public long getFastPathNum() {
+        return fastPathNum - baseline[FAST_PATH];
+    }
+
+    @Override
+    public long getCancelledNum() {
+        return cancelledNum - baseline[CANCELLED];
+    }
+
+    @Override
+    public long getDeferredNum() {
+        return deferredNum - baseline[DEFERRED];
+    }
+
+    @Override
+    public long getWideRangeAttNum() {
+        return wideRangeAttNum - baseline[WIDE_RANGE];
+    }
+
+    @Override
+    public long getMaxWideRangeAttNum() {
+        return clearedResetNum == resetNum ? maxWideRangeAttNum : 0;
+    }
+
+    @Override
+    public long getNarrowRangeAttNum() {
+        return narrowRangeAttNum - baseline[NARROW_RANGE];
+    }
+
+    @Override
+    public long getMaxNarrowRangeAttNum() {
+        return clearedResetNum == resetNum ? maxNarrowRangeAttNum : 0;
+    }
+
+    @Override
+    public long getExpansionNum() {
+        return expansionNum - baseline[EXPANSION];
+    }
+
+    @Override
+    public long getHeapOperationNum() {
+        return heapOperationNum - baseline[HEAP_OPERATION];
+    }
+
+    @Override
+    public long getTraversedColNum() {
+        return traversedColNum - baseline[TRAVERSED_COL];
+    }
+
+    @Override
+    public long getMaxTraversedColNum() {
+        return clearedResetNum == resetNum ? maxTraversedColNum : 0;
+    }
+
+    @Override
+    public void reset() {
+        final long[] values = new long[COUNTER_NUM];
+        values[INSERT] = insertNum;
+        values[DELETE] = deleteNum;
+        values[BATCH] = batchNum;
+        values[FAST_PATH] = fastPathNum;
+        values[CANCELLED] = cancelledNum;
+        values[DEFERRED] = deferredNum;
+        values[WIDE_RANGE] = wideRangeAttNum;
+        values[NARROW_RANGE] = narrowRangeAttNum;
+        values[EXPANSION] = expansionNum;
+        values[HEAP_OPERATION] = heapOperationNum;
+        values[TRAVERSED_COL] = traversedColNum;
+        baseline = values;
+        resetNum++;
+    }
+
+    /**
+     * clear the maxima if reset was called since the previous update (on the thread updating the engine)
+     */
+    private void clearMaximaIfReset() {
+        final long resetNum = this.resetNum;
+        if(clearedResetNum != resetNum) {
+            maxWideRangeAttNum = 0;
+            maxNarrowRangeAttNum = 0;
+            maxTraversedColNum = 0;
+            clearedResetNum = resetNum;
+        }
+    }
+}
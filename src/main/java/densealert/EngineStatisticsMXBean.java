@@ -0,0 +1,99 @@
+/* =================================================================================
+ *
+ * DenseAlert: Incremental Dense-Block Detection in Tensor Streams
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: Oct 24, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package densealert;
+
+/**
+ * Management interface for the work done by the updates of DenseStream or DenseAlert
+ *
+ * @author kijungs
+ */
+public interface EngineStatisticsMXBean {
+
+    /**
+     * number of processed insertions/increments
+     */
+    long getInsertNum();
+
+    /**
+     * number of processed deletions/decrements
+     */
+    long getDeleteNum();
+
+    /**
+     * number of updates handled by the batch algorithm (insertions into an empty tensor and deletions of expired entries at once)
+     */
+    long getBatchNum();
+
+    /**
+     * number of increments of existing entries applied without reordering
+     */
+    long getFastPathNum();
+
+    /**
+     * number of insertions cancelled out with the expirations of the same entries at the same time, without reordering
+     */
+    long getCancelledNum();
+
+    /**
+     * number of updates applied without reordering because of the reorder budget
+     */
+    long getDeferredNum();
+
+    /**
+     * total number of attribute values in the wide ranges
+     */
+    long getWideRangeAttNum();
+
+    /**
+     * largest wide range of a single update
+     */
+    long getMaxWideRangeAttNum();
+
+    /**
+     * total number of attribute values in the narrow ranges (reordered attribute values)
+     */
+    long getNarrowRangeAttNum();
+
+    /**
+     * largest narrow range of a single update
+     */
+    long getMaxNarrowRangeAttNum();
+
+    /**
+     * total number of attribute values expanded while composing subtensors
+     */
+    long getExpansionNum();
+
+    /**
+     * total number of heap operations (insert, poll, priority update)
+     */
+    long getHeapOperationNum();
+
+    /**
+     * total number of table columns traversed
+     */
+    long getTraversedColNum();
+
+    /**
+     * largest number of table columns traversed by a single update
+     */
+    long getMaxTraversedColNum();
+
+    /**
+     * reset all counters
+     */
+    void reset();
+}
@@ -0,0 +1,168 @@
+/* =================================================================================
+ *
+ * DenseAlert: Incremental Dense-Block Detection in Tensor Streams
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: Oct 24, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package densealert;
+
+import java.util.Arrays;
+
+/**
+ * Storage of tensor entries addressed by entry id
+ * each entry consists of stride fields:
+ * (i_{1}, i_{2}, ..., i_{N}, value, location in the entry list of each mode)
+ * and a processed flag, which is stored apart from the fields, densely by id,
+ * since the flags of many entries are checked in a row while their other fields are not read
+ * @author kijungs
+ */
+abstract class EntryArena {
+
+    final int stride;
+
+    // number of ids handed out so far (including released ones)
+    int size = 0;
+
+    // ids released by deletion, reused before new ids
+    private int[] freeIds = new int[16];
+    private int freeNum = 0;
+
+    // ids below this number may still hold the fields of entries dropped by reset
+    private int dirtyNum = 0;
+
+    EntryArena(int order) {
+        this.stride = order * 2 + 1;
+    }
+
+    /**
+     * create an arena for entries of the given order
+     * @param order
+     * @param isOffHeap whether entries are stored outside the Java heap
+     * @return
+     */
+    static EntryArena create(int order, boolean isOffHeap) {
+        return isOffHeap ? new OffHeapEntryArena(order) : new HeapEntryArena(order);
+    }
+
+    /**
+     * return a field of an entry
+     * @param id
+     * @param field
+     * @return
+     */
+    abstract int get(int id, int field);
+
+    /**
+     * change a field of an entry
+     * @param id
+     * @param field
+     * @param value
+     */
+    abstract void set(int id, int field, int value);
+
+    /**
+     * return the processed flag of an entry
+     * @param id
+     * @return
+     */
+    abstract boolean isProcessed(int id);
+
+    /**
+     * change the processed flag of an entry
+     * @param id
+     * @param processed
+     */
+    abstract void setProcessed(int id, boolean processed);
+
+    /**
+     * make room for the ids smaller than the given size
+     * @param size
+     */
+    abstract void ensureCapacity(int size);
+
+    /**
+     * set every field of an entry to zero, and the processed flag to false
+     * @param id
+     */
+    void clear(int id) {
+        for(int field = 0; field < stride; field++) {
+            set(id, field, 0);
+        }
+        setProcessed(id, false);
+    }
+
+    /**
+     * return an id whose fields are all zero and which is not processed
+     * @return
+     */
+    int allocate() {
+        if(freeNum > 0) {
+            int id = freeIds[--freeNum];
+            clear(id);
+            return id;
+        }
+        if(size == Integer.MAX_VALUE) {
+            throw new IllegalStateException("too many entries: " + size);
+        }
+        ensureCapacity(size + 1);
+        if(size < dirtyNum) {
+            clear(size);
+        }
+        return size++;
+    }
+
+    /**
+     * return the id that the next call of allocate returns
+     * @return
+     */
+    int nextId() {
+        return freeNum > 0 ? freeIds[freeNum - 1] : size;
+    }
+
+    /**
+     * make the given id available for reuse, marking it by a negative attribute value, which no entry has (see isReleased)
+     * @param id
+     */
+    void release(int id) {
+        set(id, 0, -1);
+        if(freeNum == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeNum * 2);
+        }
+        freeIds[freeNum++] = id;
+    }
+
+    /**
+     * whether the given id (smaller than size) is released and not reused yet
+     * @param id
+     * @return
+     */
+    boolean isReleased(int id) {
+        return get(id, 0) < 0;
+    }
+
+    /**
+     * drop every entry at once, keeping the allocated memory for the next entries
+     */
+    void reset() {
+        dirtyNum = Math.max(dirtyNum, size);
+        size = 0;
+        freeNum = 0;
+    }
+
+    /**
+     * number of live entries
+     * @return
+     */
+    int getEntryNum() {
+        return size - freeNum;
+    }
+}
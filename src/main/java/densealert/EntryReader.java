@@ -0,0 +1,111 @@
+/* =================================================================================
+ *
+ * DenseAlert: Incremental Dense-Block Detection in Tensor Streams
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: Oct 24, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package densealert;
+
+import java.io.*;
+
+/**
+ * Reader of a tensor stream stored in a file or received from a connection
+ * text format: one entry per line, "i_{1} i_{2} ... i_{N} Delta timestamp" separated by a delimiter (the timestamp is optional)
+ * binary format: one entry per record, N ids, Delta (4-byte ints) and a timestamp (8-byte long), in big-endian order
+ *
+ * @author kijungs
+ */
+class EntryReader implements Closeable {
+
+    static final String TEXT = "text";
+    static final String BINARY = "binary";
+
+    private final int order;
+    private final String delim;
+    private final BufferedReader textInput;
+    private final DataInputStream binaryInput;
+    private long timestamp;
+
+    EntryReader(String path, String format, String delim, int order) throws IOException {
+        this(new FileInputStream(path), format, delim, order);
+    }
+
+    EntryReader(InputStream input, String format, String delim, int order) {
+        this.order = order;
+        this.delim = delim;
+        if(BINARY.equals(format)) {
+            this.binaryInput = new DataInputStream(new BufferedInputStream(input, 1 << 16));
+            this.textInput = null;
+        }
+        else if(TEXT.equals(format)) {
+            this.textInput = new BufferedReader(new InputStreamReader(input), 1 << 16);
+            this.binaryInput = null;
+        }
+        else {
+            throw new IllegalArgumentException("unknown format: " + format);
+        }
+    }
+
+    /**
+     * read the next entry
+     * @param entry array of length at least N+1 filled with (i_{1}, i_{2}, ..., i_{N}, Delta)
+     * @return false if the end of the stream is reached
+     * @throws IOException if the stream ends in the middle of a binary record
+     */
+    boolean read(int[] entry) throws IOException {
+        if(binaryInput != null) {
+            final int firstByte = binaryInput.read();
+            if(firstByte < 0) {
+                return false;
+            }
+            try {
+                entry[0] = (firstByte << 24) | (binaryInput.readUnsignedByte() << 16) | binaryInput.readUnsignedShort();
+                for(int mode = 1; mode <= order; mode++) {
+                    entry[mode] = binaryInput.readInt();
+                }
+                timestamp = binaryInput.readLong();
+            } catch (EOFException e) {
+                throw new IOException("truncated record at the end of the stream", e);
+            }
+            return true;
+        }
+
+        final String line = textInput.readLine();
+        if(line == null) {
+            return false;
+        }
+        String[] tokens = line.split(delim);
+        for(int mode = 0; mode <= order; mode++) {
+            entry[mode] = Integer.valueOf(tokens[mode].trim());
+        }
+        timestamp = tokens.length > order + 1 ? Long.valueOf(tokens[order + 1].trim()) : 0;
+        return true;
+    }
+
+    /**
+     * timestamp of the entry read last
+     * @return
+     */
+    long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(binaryInput != null) {
+            binaryInput.close();
+        }
+        else {
+            textInput.close();
+        }
+    }
+}
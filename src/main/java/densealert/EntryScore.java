@@ -0,0 +1,45 @@
+/* =================================================================================
+ *
+ * DenseAlert: Incremental Dense-Block Detection in Tensor Streams
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: Oct 24, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package densealert;
+
+/**
+ * Suspiciousness of an inserted entry, filled by insert
+ * a single instance can be reused across insertions
+ *
+ * @author kijungs
+ */
+public class EntryScore {
+
+    int coreNumber = 0;
+    boolean isInBlock = false;
+
+    /**
+     * minimum core number over the attribute values of the entry right after its insertion
+     * (the entry belongs to a subtensor where every attribute value has degree at least this number)
+     * @return
+     */
+    public int getCoreNumber() {
+        return coreNumber;
+    }
+
+    /**
+     * whether all the attribute values of the entry are in the maintained block right after its insertion
+     * @return
+     */
+    public boolean isInBlock() {
+        return isInBlock;
+    }
+}
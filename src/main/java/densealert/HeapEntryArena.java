@@ -0,0 +1,78 @@
+/* =================================================================================
+ *
+ * DenseAlert: Incremental Dense-Block Detection in Tensor Streams
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: Oct 24, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package densealert;
+
+import java.util.Arrays;
+
+/**
+ * Entries stored in a single int array on the Java heap
+ * the entry with id e occupies data[e * stride, (e+1) * stride), and its processed flag is processedFlags[e]
+ * @author kijungs
+ */
+class HeapEntryArena extends EntryArena {
+
+    private static final int MAX_LENGTH = Integer.MAX_VALUE - 8;
+
+    // entry id, field -> value (data[id * stride + field])
+    private int[] data;
+
+    // entry id -> processed flag (1 if processed)
+    private byte[] processedFlags;
+
+    HeapEntryArena(int order) {
+        super(order);
+        this.data = new int[1024 * stride];
+        this.processedFlags = new byte[1024];
+    }
+
+    @Override
+    int get(int id, int field) {
+        return data[id * stride + field];
+    }
+
+    @Override
+    void set(int id, int field, int value) {
+        data[id * stride + field] = value;
+    }
+
+    @Override
+    boolean isProcessed(int id) {
+        return processedFlags[id] != 0;
+    }
+
+    @Override
+    void setProcessed(int id, boolean processed) {
+        processedFlags[id] = processed ? (byte) 1 : (byte) 0;
+    }
+
+    @Override
+    void clear(int id) {
+        Arrays.fill(data, id * stride, (id + 1) * stride, 0);
+        processedFlags[id] = 0;
+    }
+
+    @Override
+    void ensureCapacity(int size) {
+        if((long) size * stride > data.length) {
+            long newLength = Math.min(Math.max((long) data.length * 2, (long) size * stride), MAX_LENGTH);
+            if(newLength < (long) size * stride) {
+                throw new IllegalStateException("too many entries for the heap arena: " + size);
+            }
+            data = Arrays.copyOf(data, (int) newLength);
+            processedFlags = Arrays.copyOf(processedFlags, (int) (newLength / stride));
+        }
+    }
+}
@@ -15,6 +15,8 @@
 
 package densealert;
 
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.Queue;
@@ -40,18 +42,31 @@ public class IndexMatching {
 
     public final int DEFAULT_SIZE = 1000;
 
+    // mode -> initial number of indices, below which compaction does not shrink
+    private final int[] modeToInitialNum;
+
     public IndexMatching(int order) {
+        this(order, null);
+    }
+
+    /**
+     * @param order
+     * @param modeToExpectedNum mode -> expected number of distinct ids (null for the default)
+     */
+    public IndexMatching(int order, int[] modeToExpectedNum) {
         this.order = order;
         modeToIndicesNum = new int[order];
+        modeToInitialNum = new int[order];
         modeToIdToIndex = new HashMap[order];
         modeToRemainedIndex = new Queue[order];
         modeToIndexToId = new int[order][];
 
         for(int dim = 0; dim < order; dim++) {
-            modeToIndicesNum[dim] = DEFAULT_SIZE;
-            modeToIdToIndex[dim] = new HashMap(DEFAULT_SIZE);
+            modeToInitialNum[dim] = modeToExpectedNum == null ? DEFAULT_SIZE : modeToExpectedNum[dim] + 2; // the last index is kept free
+            modeToIndicesNum[dim] = modeToInitialNum[dim];
+            modeToIdToIndex[dim] = new HashMap(modeToInitialNum[dim] * 4 / 3 + 1);
             modeToRemainedIndex[dim] = new LinkedList();
-            modeToIndexToId = new int[order][DEFAULT_SIZE];
+            modeToIndexToId[dim] = new int[modeToInitialNum[dim]];
         }
     }
 
@@ -73,17 +88,9 @@ public class IndexMatching {
                 modeToIndexToId[dim][index] = id;
             }
 
-            //increase size
+            //increase size (only when used without a CapacityCoordinator, which grows the arrays in advance)
             if(index == modeToIndicesNum[dim] - 1) {
-                int oldLength = modeToIndicesNum[dim];
-                int newLength = oldLength * 2;
-                modeToIndicesNum[dim] = newLength;
-                int[] oldArray = modeToIndexToId[dim];
-                modeToIndexToId[dim] = new int[newLength];
-                int[] newArray = modeToIndexToId[dim];
-                for(int i=0; i<oldLength; i++) {
-                    newArray[i] = oldArray[i];
-                }
+                resize(dim, modeToIndicesNum[dim] * 2);
             }
 
             entry[dim] = index;
@@ -92,4 +99,101 @@ public class IndexMatching {
         return entry;
     }
 
+    /**
+     * find the index of an id without assigning a new one
+     * @param mode
+     * @param id
+     * @return index, or -1 if the id has not appeared
+     */
+    public int getIndex(int mode, int id) {
+        Integer index = modeToIdToIndex[mode].get(id);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * forget an id, whose index is assigned to the next new id of the same mode
+     * the index should no longer appear in any data structure
+     * @param mode
+     * @param id
+     * @return the released index, or -1 if the id has not appeared
+     */
+    public int release(int mode, int id) {
+        Integer index = modeToIdToIndex[mode].remove(id);
+        if(index == null) {
+            return -1;
+        }
+        modeToRemainedIndex[mode].add(index);
+        return index;
+    }
+
+    /**
+     * forget every id, keeping the number of indices of each mode
+     */
+    public void clear() {
+        for(int dim = 0; dim < order; dim++) {
+            modeToIdToIndex[dim].clear();
+            modeToRemainedIndex[dim].clear();
+        }
+    }
+
+    /**
+     * change the number of indices of the given mode
+     * @param mode
+     * @param newLength
+     */
+    public void resize(int mode, int newLength) {
+        modeToIndexToId[mode] = Arrays.copyOf(modeToIndexToId[mode], newLength);
+        modeToIndicesNum[mode] = newLength;
+    }
+
+    /**
+     * whether the indices of the given mode are sparse enough to be compacted
+     * @param mode
+     * @param liveNum number of indices in use
+     * @param ratio minimum ratio of indices in use to the capacity
+     * @return
+     */
+    public boolean needsCompaction(int mode, int liveNum, double ratio) {
+        return modeToIndicesNum[mode] > modeToInitialNum[mode] && liveNum < ratio * modeToIndicesNum[mode];
+    }
+
+    /**
+     * forget the ids of the given mode not in use, assign the remaining ids to the smallest indices (keeping their order),
+     * and shrink the capacity to twice the number of the ids in use (but not below the initial capacity)
+     * @param mode
+     * @param indexToCardinality index -> number of entries with the index (ids with zero are forgotten)
+     * @param referenced indices kept even without entries
+     * @return old index -> new index (-1 if forgotten)
+     */
+    public int[] compact(int mode, int[] indexToCardinality, BitSet referenced) {
+        final int oldLength = modeToIndicesNum[mode];
+        final int[] oldIndexToId = modeToIndexToId[mode];
+        final int[] oldToNew = new int[oldLength];
+
+        int liveNum = 0;
+        for(int index = 0; index < oldLength; index++) {
+            if((index < indexToCardinality.length && indexToCardinality[index] > 0) || referenced.get(index)) {
+                oldToNew[index] = liveNum++;
+            }
+            else {
+                oldToNew[index] = -1;
+            }
+        }
+
+        final int newLength = Math.max(modeToInitialNum[mode], liveNum * 2 + 2);
+        final HashMap<Integer, Integer> idToIndex = new HashMap<Integer, Integer>(newLength * 4 / 3 + 1);
+        final int[] indexToId = new int[newLength];
+        for(int index = 0; index < oldLength; index++) {
+            if(oldToNew[index] >= 0) {
+                indexToId[oldToNew[index]] = oldIndexToId[index];
+                idToIndex.put(oldIndexToId[index], oldToNew[index]);
+            }
+        }
+        modeToIdToIndex[mode] = idToIndex;
+        modeToIndexToId[mode] = indexToId;
+        modeToIndicesNum[mode] = newLength;
+        modeToRemainedIndex[mode].clear();
+        return oldToNew;
+    }
+
 }
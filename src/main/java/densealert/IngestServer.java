@@ -0,0 +1,497 @@
+/* =================================================================================
+ *
+ * DenseAlert: Incremental Dense-Block Detection in Tensor Streams
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: Oct 24, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package densealert;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * TCP server receiving entries from collectors and forwarding them to DenseStream or DenseAlert
+ *
+ * Each connection sends entries in the text or binary format of EntryReader and shuts down its output when done.
+ * The server then replies with a single line "OK [number of entries] [density]" once all the entries of the connection are processed,
+ * or "ERROR [message]" if the input is malformed or the engine failed.
+ *
+ * Entries are read by one thread per connection, and processed by a single writer thread in the order they are received.
+ * The two are connected by a bounded queue of chunks; when the writer falls behind, reader threads block on the queue and stop reading their sockets,
+ * which in turn blocks the collectors by TCP flow control.
+ * If the engine throws, the writer thread stops processing: the connections waiting for their entries get an error,
+ * the others are closed, and the chunks still queued are dropped (see getError).
+ *
+ * usage: java densealert.IngestServer [options]
+ *   --port P                port to listen on, on the loopback address (default: 0, any free port)
+ *   --engine stream|alert   engine to run (default: alert)
+ *   --order N               order of the input tensor (default: 3)
+ *   --window W              window size in seconds, for alert (default: 60)
+ *   --delim D               delimiter of the text format (default: ,)
+ *   --format text|binary    input format (default: text), see EntryReader
+ *   --queue Q               number of chunks buffered before backpressure is applied (default: 64)
+ *   --reorder-budget B      maximum number of attribute values reordered by an update, beyond which reordering is delayed
+ *                           until the server is idle (default: 0, no bound)
+ *   --expiry-batch R        ratio of entries expiring at once to entries in the window, above which they are deleted
+ *                           by a single reordering, for alert (default: 0.005, 0 to delete them one by one)
+ *
+ * @author kijungs
+ */
+public class IngestServer implements Closeable {
+
+    // number of entries in a chunk
+    private static final int CHUNK_SIZE = 1024;
+
+    // marks the end of the stream for the writer thread
+    private static final Chunk END = new Chunk(0, 0);
+
+    // while idle and catching up, how often the writer thread checks whether the recomputed ordering can be swapped in
+    private static final long IDLE_POLL_MS = 10;
+
+    private final DenseStream denseStream;
+    private final DenseAlert denseAlert;
+    private final int order;
+    private final String format;
+    private final String delim;
+    private final BlockingQueue<Chunk> queue;
+
+    private ServerSocket serverSocket = null;
+    private ExecutorService connectionThreads = null;
+    private Thread acceptThread = null;
+    private Thread writerThread = null;
+    private volatile boolean isClosed = false;
+    private volatile Throwable error = null;
+    private final Set<Socket> openSockets = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong receivedNum = new AtomicLong(0);
+    private final AtomicLong blockedNum = new AtomicLong(0);
+    private volatile long processedNum = 0;
+
+    /**
+     * @param denseStream engine to which the received entries are inserted
+     * @param order order of the input tensor
+     * @param format input format, EntryReader.TEXT or EntryReader.BINARY
+     * @param delim delimiter of the text format
+     * @param queueCapacity number of chunks buffered before backpressure is applied
+     */
+    public IngestServer(DenseStream denseStream, int order, String format, String delim, int queueCapacity) {
+        this(denseStream, null, order, format, delim, queueCapacity);
+    }
+
+    /**
+     * @param denseAlert engine to which the received entries are inserted with their timestamps
+     * @param order order of the input tensor
+     * @param format input format, EntryReader.TEXT or EntryReader.BINARY
+     * @param delim delimiter of the text format
+     * @param queueCapacity number of chunks buffered before backpressure is applied
+     */
+    public IngestServer(DenseAlert denseAlert, int order, String format, String delim, int queueCapacity) {
+        this(null, denseAlert, order, format, delim, queueCapacity);
+    }
+
+    private IngestServer(DenseStream denseStream, DenseAlert denseAlert, int order, String format, String delim, int queueCapacity) {
+        if(!EntryReader.TEXT.equals(format) && !EntryReader.BINARY.equals(format)) {
+            throw new IllegalArgumentException("unknown format: " + format);
+        }
+        if(queueCapacity < 1) {
+            throw new IllegalArgumentException("queue capacity should be positive: " + queueCapacity);
+        }
+        this.denseStream = denseStream;
+        this.denseAlert = denseAlert;
+        this.order = order;
+        this.format = format;
+        this.delim = delim;
+        this.queue = new ArrayBlockingQueue<Chunk>(queueCapacity);
+    }
+
+    /**
+     * start accepting connections on the loopback address
+     * the engine should not be accessed by other threads until the server is closed
+     * @param port port to listen on (0 for any free port)
+     * @return port the server is bound to
+     * @throws IOException
+     */
+    public synchronized int start(int port) throws IOException {
+        if(serverSocket != null) {
+            throw new IllegalStateException("already started");
+        }
+        serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        connectionThreads = Executors.newCachedThreadPool(daemonThreads("densealert-ingest-connection"));
+
+        writerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                write();
+            }
+        }, "densealert-ingest-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+
+        acceptThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                accept();
+            }
+        }, "densealert-ingest-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * number of entries received from all connections
+     * @return
+     */
+    public long getReceivedNum() {
+        return receivedNum.get();
+    }
+
+    /**
+     * number of entries processed by the engine
+     * @return
+     */
+    public long getProcessedNum() {
+        return processedNum;
+    }
+
+    /**
+     * number of times a connection had to wait for the writer thread because the queue was full
+     * @return
+     */
+    public long getBlockedNum() {
+        return blockedNum.get();
+    }
+
+    /**
+     * error thrown by the engine, after which no entry is processed (null if none)
+     * @return
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    /**
+     * stop accepting connections, drop open connections, process the entries already queued, and stop the writer thread
+     * @throws IOException
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if(serverSocket == null || isClosed) {
+            return;
+        }
+        isClosed = true;
+        serverSocket.close();
+        for(Socket socket : openSockets) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // already closed
+            }
+        }
+        connectionThreads.shutdownNow();
+        try {
+            acceptThread.join();
+            queue.put(END);
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void accept() {
+        while(!isClosed) {
+            final Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if(isClosed || serverSocket.isClosed()) { // closed, or the engine failed
+                    return;
+                }
+                continue;
+            }
+            openSockets.add(socket);
+            connectionThreads.execute(new Runnable() {
+                @Override
+                public void run() {
+                    receive(socket);
+                }
+            });
+        }
+    }
+
+    /**
+     * read the entries sent through a connection, and hand them over to the writer thread chunk by chunk
+     */
+    private void receive(Socket socket) {
+        try {
+            final OutputStream output = socket.getOutputStream();
+            final EntryReader reader = new EntryReader(socket.getInputStream(), format, delim, order);
+            final int[] entry = new int[order + 1];
+            long count = 0;
+            String reply;
+            try {
+                Chunk chunk = new Chunk(CHUNK_SIZE, order);
+                while(reader.read(entry)) {
+                    chunk.add(entry, reader.getTimestamp());
+                    count++;
+                    if(chunk.size == CHUNK_SIZE) {
+                        enqueue(chunk);
+                        chunk = new Chunk(CHUNK_SIZE, order);
+                    }
+                }
+                openSockets.remove(socket); // the reply is not interrupted if the engine fails
+                chunk.done = new CountDownLatch(1);
+                enqueue(chunk);
+                chunk.done.await();
+                reply = error != null ? "ERROR engine failed: " + error : String.format("OK %d %s", count, chunk.density);
+            } catch (IOException e) {
+                if(e instanceof SocketException) {
+                    throw e;
+                }
+                reply = "ERROR " + e.getMessage();
+            } catch (RuntimeException e) {
+                reply = "ERROR " + e;
+            }
+            PrintWriter writer = new PrintWriter(output);
+            writer.println(reply);
+            writer.flush();
+        } catch (IOException e) {
+            // the connection is lost, and the entries received so far are kept
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            openSockets.remove(socket);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // already closed
+            }
+        }
+    }
+
+    private void enqueue(Chunk chunk) throws InterruptedException {
+        if(!queue.offer(chunk)) {
+            blockedNum.incrementAndGet();
+            queue.put(chunk);
+        }
+        receivedNum.addAndGet(chunk.size);
+    }
+
+    /**
+     * process the queued chunks one by one (the only thread accessing the engine)
+     */
+    private void write() {
+        final int[] entry = new int[order + 1];
+        Chunk chunk = null;
+        try {
+            while(true) {
+                chunk = queue.poll();
+                while(chunk == null) { // idle, and thus the ordering delayed by the reorder budget is recomputed in the background and swapped in
+                    boolean isCatchingUp;
+                    try {
+                        isCatchingUp = denseStream != null ? denseStream.catchUp() : denseAlert.catchUp();
+                    } catch (IllegalStateException e) {
+                        final Throwable backgroundBatchError = denseStream != null ? denseStream.getBackgroundBatchError() : denseAlert.getBackgroundBatchError();
+                        if(e.getCause() == null || e.getCause() != backgroundBatchError) {
+                            throw e;
+                        }
+                        // the current ordering is kept, and the recomputation is retried after a poll
+                        System.out.println("Background batch failed: " + backgroundBatchError);
+                        isCatchingUp = true;
+                    }
+                    try {
+                        chunk = isCatchingUp ? queue.poll(IDLE_POLL_MS, TimeUnit.MILLISECONDS) : queue.take();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if(chunk == END) {
+                    return;
+                }
+                for(int i = 0; i < chunk.size; i++) {
+                    System.arraycopy(chunk.entries, i * (order + 1), entry, 0, order + 1);
+                    if(denseStream != null) {
+                        denseStream.insert(entry);
+                    }
+                    else {
+                        denseAlert.insert(entry, chunk.timestamps[i]);
+                    }
+                }
+                processedNum += chunk.size;
+                if(chunk.done != null) {
+                    chunk.density = denseStream != null ? denseStream.getDensity() : denseAlert.getDensity();
+                    chunk.done.countDown();
+                }
+            }
+        } catch (Throwable e) {
+            error = e;
+            fail(chunk);
+        }
+    }
+
+    /**
+     * stop accepting connections and close those still sending, after the engine threw while processing a chunk,
+     * and then drop the queued chunks until the server is closed, so that no connection waits for the writer thread forever
+     * @param failedChunk chunk being processed when the engine threw (null if none)
+     */
+    private void fail(Chunk failedChunk) {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // already closed
+        }
+        for(Socket socket : openSockets) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // already closed
+            }
+        }
+        if(failedChunk != null && failedChunk.done != null) { // the connection replies with the error
+            failedChunk.done.countDown();
+        }
+        while(true) {
+            final Chunk chunk;
+            try {
+                chunk = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if(chunk == END) {
+                return;
+            }
+            if(chunk.done != null) { // the connection replies with the error
+                chunk.done.countDown();
+            }
+        }
+    }
+
+    private static ThreadFactory daemonThreads(final String name) {
+        return new ThreadFactory() {
+            private final AtomicLong threadNum = new AtomicLong(0);
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name + "-" + threadNum.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * entries received together, stored as consecutive (i_{1}, i_{2}, ..., i_{N}, Delta) records
+     */
+    private static class Chunk {
+
+        final int[] entries;
+        final long[] timestamps;
+        final int length;
+        int size = 0;
+
+        // set on the last chunk of a connection, which waits until the chunk is processed
+        CountDownLatch done = null;
+        volatile double density;
+
+        Chunk(int capacity, int order) {
+            this.length = order + 1;
+            this.entries = new int[capacity * length];
+            this.timestamps = new long[capacity];
+        }
+
+        void add(int[] entry, long timestamp) {
+            System.arraycopy(entry, 0, entries, size * length, length);
+            timestamps[size++] = timestamp;
+        }
+    }
+
+    public static void main(String[] ar) throws IOException, InterruptedException {
+
+        final Map<String, String> options = new HashMap<String, String>();
+        for(int i = 0; i < ar.length; i += 2) {
+            if(!ar[i].startsWith("--")) {
+                throw new IllegalArgumentException("unexpected argument: " + ar[i]);
+            }
+            if(i + 1 == ar.length) {
+                throw new IllegalArgumentException("missing value of " + ar[i]);
+            }
+            options.put(ar[i].substring(2), ar[i + 1]);
+        }
+
+        final int port = Integer.valueOf(get(options, "port", "0"));
+        final String engine = get(options, "engine", "alert");
+        final int order = Integer.valueOf(get(options, "order", "3"));
+        final int window = Integer.valueOf(get(options, "window", "60"));
+        final String delim = get(options, "delim", ",");
+        final String format = get(options, "format", EntryReader.TEXT);
+        final int queueCapacity = Integer.valueOf(get(options, "queue", "64"));
+        final int reorderBudget = Integer.valueOf(get(options, "reorder-budget", "0"));
+        final double expiryBatchRatio = Double.valueOf(get(options, "expiry-batch", String.valueOf(DenseAlert.DEFAULT_EXPIRY_BATCH_RATIO)));
+
+        final IngestServer server;
+        if("stream".equals(engine)) {
+            DenseStream denseStream = new DenseStream(order);
+            denseStream.setReorderBudget(reorderBudget);
+            server = new IngestServer(denseStream, order, format, delim, queueCapacity);
+        }
+        else {
+            DenseAlert denseAlert = new DenseAlert(order, window);
+            denseAlert.setReorderBudget(reorderBudget);
+            denseAlert.setExpiryBatchRatio(expiryBatchRatio);
+            server = new IngestServer(denseAlert, order, format, delim, queueCapacity);
+        }
+        final int boundPort = server.start(port);
+        System.out.println("Engine: " + ("stream".equals(engine) ? "DenseStream" : "DenseAlert (window: " + window + ")")
+                + ", Order: " + order + ", Format: " + format + ", Listening on " + InetAddress.getLoopbackAddress().getHostAddress() + ":" + boundPort);
+
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                try {
+                    server.close();
+                } catch (IOException e) {
+                    // exiting anyway
+                }
+            }
+        });
+
+        while(true) {
+            Thread.sleep(10000);
+            System.out.println(String.format("Received Entry Num: %d, Processed Entry Num: %d, Blocked Num: %d",
+                    server.getReceivedNum(), server.getProcessedNum(), server.getBlockedNum()));
+        }
+    }
+
+    private static String get(Map<String, String> options, String key, String defaultValue) {
+        return options.containsKey(key) ? options.get(key) : defaultValue;
+    }
+}
@@ -0,0 +1,176 @@
+/* =================================================================================
+ *
+ * DenseAlert: Incremental Dense-Block Detection in Tensor Streams
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: Oct 24, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package densealert;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * Histogram of latencies (in nanoseconds) with log-linear buckets, whose relative error is below 1%
+ * recording does not allocate; values above about 73 minutes are recorded as the maximum trackable value
+ *
+ * @author kijungs
+ */
+public class LatencyHistogram {
+
+    // values below 2 * HALF_COUNT are counted exactly
+    private static final int SUB_BUCKET_BITS = 8;
+    private static final int HALF_COUNT = 1 << (SUB_BUCKET_BITS - 1);
+
+    // largest magnitude tracked (2^42 ns ~ 73 minutes)
+    private static final int MAX_BITS = 42;
+    private static final long MAX_VALUE = (1L << MAX_BITS) - 1;
+    private static final int BUCKET_NUM = (MAX_BITS - SUB_BUCKET_BITS + 2) * HALF_COUNT;
+
+    private final long[] counts = new long[BUCKET_NUM];
+    private long totalCount = 0;
+    private long totalValue = 0;
+    private long max = 0;
+
+    /**
+     * record a latency
+     * @param value latency in nanoseconds
+     */
+    public void record(long value) {
+        if(value < 0) {
+            value = 0;
+        }
+        else if(value > MAX_VALUE) {
+            value = MAX_VALUE;
+        }
+        counts[indexOf(value)]++;
+        totalCount++;
+        totalValue += value;
+        if(value > max) {
+            max = value;
+        }
+    }
+
+    private static int indexOf(long value) {
+        if(value < 2 * HALF_COUNT) {
+            return (int) value;
+        }
+        int magnitude = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return magnitude * HALF_COUNT + (int) (value >>> magnitude);
+    }
+
+    private static long lowestValueAt(int index) {
+        if(index < 2 * HALF_COUNT) {
+            return index;
+        }
+        int magnitude = index / HALF_COUNT - 1;
+        return ((long) (index % HALF_COUNT + HALF_COUNT)) << magnitude;
+    }
+
+    private static long highestValueAt(int index) {
+        if(index < 2 * HALF_COUNT) {
+            return index;
+        }
+        int magnitude = index / HALF_COUNT - 1;
+        return lowestValueAt(index) + (1L << magnitude) - 1;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return totalCount == 0 ? 0 : ((double) totalValue) / totalCount;
+    }
+
+    /**
+     * latency at the given percentile (reported as the highest value of the bucket)
+     * @param percentile between 0 and 100
+     * @return latency in nanoseconds
+     */
+    public long getValueAtPercentile(double percentile) {
+        if(totalCount == 0) {
+            return 0;
+        }
+        long countAtPercentile = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * totalCount));
+        long count = 0;
+        for(int index = 0; index < BUCKET_NUM; index++) {
+            count += counts[index];
+            if(count >= countAtPercentile) {
+                return Math.min(highestValueAt(index), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * add the counts of another histogram
+     * @param other
+     */
+    public void add(LatencyHistogram other) {
+        for(int index = 0; index < BUCKET_NUM; index++) {
+            counts[index] += other.counts[index];
+        }
+        totalCount += other.totalCount;
+        totalValue += other.totalValue;
+        max = Math.max(max, other.max);
+    }
+
+    public void reset() {
+        Arrays.fill(counts, 0);
+        totalCount = 0;
+        totalValue = 0;
+        max = 0;
+    }
+
+    /**
+     * write the percentile distribution in the text format of HdrHistogram
+     * @param out
+     * @param scalingRatio values are divided by this ratio (e.g., 1000.0 for microseconds)
+     */
+    public void outputPercentileDistribution(PrintStream out, double scalingRatio) {
+        out.println(String.format("%12s %14s %10s %14s", "Value", "Percentile", "TotalCount", "1/(1-Percentile)"));
+        out.println();
+        long count = 0;
+        for(int index = 0; index < BUCKET_NUM; index++) {
+            if(counts[index] == 0) {
+                continue;
+            }
+            count += counts[index];
+            double quantile = ((double) count) / totalCount;
+            String inverse = quantile < 1 ? String.format("%14.2f", 1 / (1 - quantile)) : "";
+            out.println(String.format("%12.3f %2.12f %10d %s",
+                    Math.min(highestValueAt(index), max) / scalingRatio, quantile, count, inverse));
+        }
+        out.println(String.format("#[Mean    = %12.3f, StdDeviation   = %12.3f]", getMean() / scalingRatio, getStdDeviation() / scalingRatio));
+        out.println(String.format("#[Max     = %12.3f, Total count    = %12d]", max / scalingRatio, totalCount));
+        out.println(String.format("#[Buckets = %12d, SubBuckets     = %12d]", BUCKET_NUM / HALF_COUNT, 2 * HALF_COUNT));
+    }
+
+    private double getStdDeviation() {
+        if(totalCount == 0) {
+            return 0;
+        }
+        double mean = getMean();
+        double sum = 0;
+        for(int index = 0; index < BUCKET_NUM; index++) {
+            if(counts[index] > 0) {
+                double deviation = (lowestValueAt(index) + highestValueAt(index)) / 2.0 - mean;
+                sum += deviation * deviation * counts[index];
+            }
+        }
+        return Math.sqrt(sum / totalCount);
+    }
+}
@@ -0,0 +1,109 @@
+/* =================================================================================
+ *
+ * DenseAlert: Incremental Dense-Block Detection in Tensor Streams
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: Oct 24, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package densealert;
+
+import java.io.PrintStream;
+
+/**
+ * Latency histograms of the operations of an engine, for the current interval and since enabled
+ * should be used by the thread updating the engine
+ *
+ * @author kijungs
+ */
+public class LatencyStatistics {
+
+    public enum Operation {
+        INSERT, // a call of insert (including expiries in DenseAlert)
+        DELETE, // a single deletion (including each expiry in DenseAlert)
+        EXPIRY, // all expiries triggered by a call of insert in DenseAlert
+        BLOCK_RETRIEVAL // a call of getBlockIndices
+    }
+
+    private final LatencyHistogram[] intervalHistograms;
+    private final LatencyHistogram[] totalHistograms;
+    private long intervalStartTime;
+
+    LatencyStatistics() {
+        int operationNum = Operation.values().length;
+        intervalHistograms = new LatencyHistogram[operationNum];
+        totalHistograms = new LatencyHistogram[operationNum];
+        for(int i = 0; i < operationNum; i++) {
+            intervalHistograms[i] = new LatencyHistogram();
+            totalHistograms[i] = new LatencyHistogram();
+        }
+        intervalStartTime = System.currentTimeMillis();
+    }
+
+    void record(Operation operation, long latency) {
+        intervalHistograms[operation.ordinal()].record(latency);
+    }
+
+    /**
+     * histogram of the current interval
+     * @param operation
+     * @return
+     */
+    public LatencyHistogram getIntervalHistogram(Operation operation) {
+        return intervalHistograms[operation.ordinal()];
+    }
+
+    /**
+     * histogram of the finished intervals
+     * @param operation
+     * @return
+     */
+    public LatencyHistogram getTotalHistogram(Operation operation) {
+        return totalHistograms[operation.ordinal()];
+    }
+
+    /**
+     * write p50, p99, p99.9 and max (in microseconds) of the current interval as CSV lines, and start a new interval
+     * @param out
+     */
+    public void nextInterval(PrintStream out) {
+        long now = System.currentTimeMillis();
+        for(Operation operation : Operation.values()) {
+            LatencyHistogram histogram = intervalHistograms[operation.ordinal()];
+            if(out != null) {
+                out.println(String.format("%d,%d,%s,%d,%.3f,%.3f,%.3f,%.3f", intervalStartTime, now, operation, histogram.getTotalCount(),
+                        histogram.getValueAtPercentile(50) / 1000.0, histogram.getValueAtPercentile(99) / 1000.0,
+                        histogram.getValueAtPercentile(99.9) / 1000.0, histogram.getMax() / 1000.0));
+            }
+            totalHistograms[operation.ordinal()].add(histogram);
+            histogram.reset();
+        }
+        intervalStartTime = now;
+    }
+
+    /**
+     * header of the CSV lines written by nextInterval
+     * @param out
+     */
+    public static void printHeader(PrintStream out) {
+        out.println("StartTimestamp,EndTimestamp,Operation,Count,P50(us),P99(us),P99.9(us),Max(us)");
+    }
+
+    /**
+     * write the percentile distribution of the finished intervals of each operation in the text format of HdrHistogram
+     * @param out
+     */
+    public void outputPercentileDistributions(PrintStream out) {
+        for(Operation operation : Operation.values()) {
+            out.println("#[Operation: " + operation + "]");
+            totalHistograms[operation.ordinal()].outputPercentileDistribution(out, 1000.0);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/* =================================================================================
+ *
+ * DenseAlert: Incremental Dense-Block Detection in Tensor Streams
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: Oct 24, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package densealert;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Cost of the incremental algorithm (DenseStream) compared to recomputing the block by the batch algorithm at checkpoints
+ *
+ * At every checkpoint, the updates since the previous checkpoint are applied to DenseStream, and the batch algorithm is rerun on the same tensor.
+ * The speedup is the batch time divided by the incremental time per update,
+ * i.e., the number of updates between recomputations below which recomputation is cheaper.
+ * Each checkpoint is reported as a line of JSON, which can be compared across releases.
+ *
+ * usage: java densealert.MacroBenchmark [options]
+ *   --input [path]          input stream (default: synthetic), in the format of EntryReader
+ *   --format text|binary    input format (default: text)
+ *   --delim D               delimiter of the text format (default: ,)
+ *   --order N               order of the input tensor (default: 3)
+ *   --interval R            number of updates between checkpoints (default: 100000)
+ *   --window W              number of latest insertions kept, older ones are deleted (default: 0, no deletion)
+ *   --entries E             number of synthetic insertions (default: 50000)
+ *   --cardinality C         number of attribute values of each mode in the synthetic stream (default: 1000)
+ *   --block-size B          number of attribute values of each mode in the injected dense block (default: 20)
+ *   --block-ratio P         fraction of the synthetic insertions in the dense block (default: 0.01)
+ *   --seed S                seed of the synthetic stream (default: 0)
+ *   --output [path]         file to which the results are written (default: standard output)
+ *
+ * @author kijungs
+ */
+public class MacroBenchmark {
+
+    public static void main(String[] ar) throws IOException {
+
+        final Map<String, String> options = new HashMap<String, String>();
+        for(int i = 0; i < ar.length; i += 2) {
+            if(!ar[i].startsWith("--")) {
+                throw new IllegalArgumentException("unexpected argument: " + ar[i]);
+            }
+            if(i + 1 == ar.length) {
+                throw new IllegalArgumentException("missing value of " + ar[i]);
+            }
+            options.put(ar[i].substring(2), ar[i + 1]);
+        }
+
+        final String dataPath = options.get("input");
+        final String format = get(options, "format", EntryReader.TEXT);
+        final String delim = get(options, "delim", ",");
+        final int order = Integer.valueOf(get(options, "order", "3"));
+        final int interval = Integer.valueOf(get(options, "interval", "100000"));
+        final int window = Integer.valueOf(get(options, "window", "0"));
+        final long entryNum = Long.valueOf(get(options, "entries", "50000"));
+        final int cardinality = Integer.valueOf(get(options, "cardinality", "1000"));
+        final int blockSize = Integer.valueOf(get(options, "block-size", "20"));
+        final double blockRatio = Double.valueOf(get(options, "block-ratio", "0.01"));
+        final long seed = Long.valueOf(get(options, "seed", "0"));
+        final PrintStream output = options.containsKey("output") ? new PrintStream(new FileOutputStream(options.get("output"))) : null;
+
+        final String streamName = dataPath != null ? dataPath
+                : String.format(Locale.ROOT, "synthetic(entries=%d,cardinality=%d,block-size=%d,block-ratio=%s,seed=%d)",
+                entryNum, cardinality, blockSize, blockRatio, seed);
+        System.out.println("Stream: " + streamName + ", Order: " + order + ", Interval: " + interval + ", Window: " + window);
+
+        final EntryReader reader = dataPath != null ? new EntryReader(dataPath, format, delim, order) : null;
+        final Random random = new Random(seed);
+
+        // incremental algorithm
+        final DenseStream denseStream = new DenseStream(order);
+
+        // the same tensor, from which the block is recomputed at each checkpoint
+        final IndexMatching indexMatching = new IndexMatching(order);
+        final TensorFull tensor = new TensorFull(order, indexMatching.modeToIndicesNum);
+        final CapacityCoordinator capacity = new CapacityCoordinator(indexMatching, tensor, null);
+
+        final ArrayDeque<int[]> insertedEntries = new ArrayDeque<int[]>();
+        final List<int[]> updates = new ArrayList<int[]>(interval);
+        final List<Boolean> isInsertions = new ArrayList<Boolean>(interval);
+        long insertedNum = 0;
+        long updateNum = 0;
+        int checkpoint = 0;
+        boolean isEnd = false;
+        while(!isEnd) {
+
+            /**
+             * collect the updates until the next checkpoint
+             */
+            updates.clear();
+            isInsertions.clear();
+            while(updates.size() < interval) {
+                int[] entry = new int[order + 1];
+                if(reader != null ? !reader.read(entry) : insertedNum >= entryNum) {
+                    isEnd = true;
+                    break;
+                }
+                if(reader == null) {
+                    generate(entry, random, cardinality, blockSize, blockRatio);
+                }
+                insertedNum++;
+                updates.add(entry);
+                isInsertions.add(true);
+                if(window > 0) {
+                    insertedEntries.add(entry);
+                    if(insertedEntries.size() > window) {
+                        updates.add(insertedEntries.poll());
+                        isInsertions.add(false);
+                    }
+                }
+            }
+            if(updates.isEmpty()) {
+                break;
+            }
+
+            /**
+             * incremental algorithm
+             */
+            long start = System.nanoTime();
+            for(int i = 0; i < updates.size(); i++) {
+                if(isInsertions.get(i)) {
+                    denseStream.insert(updates.get(i));
+                }
+                else {
+                    denseStream.delete(updates.get(i));
+                }
+            }
+            final double incrementalTime = (System.nanoTime() - start) / 1e6;
+            updateNum += updates.size();
+
+            /**
+             * batch algorithm
+             */
+            for(int i = 0; i < updates.size(); i++) {
+                int[] entry = capacity.changeToIndex(updates.get(i).clone());
+                if(isInsertions.get(i)) {
+                    tensor.insert(entry);
+                }
+                else {
+                    tensor.delete(entry);
+                }
+            }
+            start = System.nanoTime();
+            final Core core = Core.create(tensor);
+            final double batchTime = (System.nanoTime() - start) / 1e6;
+
+            checkpoint++;
+            final double timePerUpdate = incrementalTime * 1000 / updates.size();
+            final double speedup = batchTime * 1000 / timePerUpdate;
+            final double incrementalDensity = denseStream.getDensity();
+            final double batchDensity = core.getDensity();
+            final double densityRatio = batchDensity > 0 ? incrementalDensity / batchDensity : 1;
+
+            System.out.println(String.format(Locale.ROOT, "Checkpoint: %d, Updates: %d, Entries: %d, Incremental (us/update): %.3f, Batch (ms): %.3f, Speedup: %.1f, Density Ratio: %.4f",
+                    checkpoint, updateNum, tensor.omega, timePerUpdate, batchTime, speedup, densityRatio));
+            final String result = String.format(Locale.ROOT, "{\"stream\":\"%s\",\"order\":%d,\"window\":%d,\"checkpoint\":%d,\"updates\":%d,\"entries\":%d,\"mass\":%d,"
+                            + "\"incremental_ms\":%s,\"incremental_us_per_update\":%s,\"batch_ms\":%s,\"speedup\":%s,"
+                            + "\"incremental_density\":%s,\"batch_density\":%s,\"density_ratio\":%s}",
+                    streamName.replace("\\", "\\\\").replace("\"", "\\\""), order, window, checkpoint, updateNum, tensor.omega, tensor.mass,
+                    toJson(incrementalTime, 3), toJson(timePerUpdate, 3), toJson(batchTime, 3), toJson(speedup, 3),
+                    toJson(incrementalDensity, 6), toJson(batchDensity, 6), toJson(densityRatio, 6));
+            (output != null ? output : System.out).println(result);
+        }
+
+        if(reader != null) {
+            reader.close();
+        }
+        if(output != null) {
+            output.close();
+        }
+    }
+
+    /**
+     * generate a synthetic insertion, uniformly at random or within the dense block
+     */
+    private static void generate(int[] entry, Random random, int cardinality, int blockSize, double blockRatio) {
+        final int order = entry.length - 1;
+        final int range = random.nextDouble() < blockRatio ? blockSize : cardinality;
+        for(int mode = 0; mode < order; mode++) {
+            entry[mode] = random.nextInt(range);
+        }
+        entry[order] = 1;
+    }
+
+    /**
+     * format a number as JSON, where NaN and infinity (e.g., the speedup over an update taking no measurable time) are written as null
+     * @param value
+     * @param digits number of digits after the decimal point
+     * @return
+     */
+    static String toJson(double value, int digits) {
+        return Double.isFinite(value) ? String.format(Locale.ROOT, "%." + digits + "f", value) : "null";
+    }
+
+    private static String get(Map<String, String> options, String key, String defaultValue) {
+        return options.containsKey(key) ? options.get(key) : defaultValue;
+    }
+}
@@ -0,0 +1,80 @@
+/* =================================================================================
+ *
+ * DenseAlert: Incremental Dense-Block Detection in Tensor Streams
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: Oct 24, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package densealert;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Entries stored in direct buffers outside the Java heap
+ * the buffers are fixed-size chunks, which are added without copying existing entries,
+ * and the number of entries is not limited by the maximum length of an array
+ * only the entry records are stored here: the entry lists of attribute values (N ids per entry in total), degrees and cardinalities
+ * stay on the heap in primitive arrays, whose number grows with the number of attribute values rather than entries
+ * and which the garbage collector does not need to trace, but which still count towards the heap size
+ * @author kijungs
+ */
+class OffHeapEntryArena extends EntryArena {
+
+    // number of entries in a chunk is 2^CHUNK_BITS
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+    // chunk index -> entries in the chunk
+    private IntBuffer[] chunks = new IntBuffer[16];
+
+    // chunk index -> processed flags of the entries in the chunk (1 if processed)
+    private ByteBuffer[] processedChunks = new ByteBuffer[16];
+    private int chunkNum = 0;
+
+    OffHeapEntryArena(int order) {
+        super(order);
+    }
+
+    @Override
+    int get(int id, int field) {
+        return chunks[id >>> CHUNK_BITS].get((id & CHUNK_MASK) * stride + field);
+    }
+
+    @Override
+    void set(int id, int field, int value) {
+        chunks[id >>> CHUNK_BITS].put((id & CHUNK_MASK) * stride + field, value);
+    }
+
+    @Override
+    boolean isProcessed(int id) {
+        return processedChunks[id >>> CHUNK_BITS].get(id & CHUNK_MASK) != 0;
+    }
+
+    @Override
+    void setProcessed(int id, boolean processed) {
+        processedChunks[id >>> CHUNK_BITS].put(id & CHUNK_MASK, processed ? (byte) 1 : (byte) 0);
+    }
+
+    @Override
+    void ensureCapacity(int size) {
+        while((long) chunkNum << CHUNK_BITS < size) {
+            if(chunkNum == chunks.length) {
+                chunks = Arrays.copyOf(chunks, chunkNum * 2);
+                processedChunks = Arrays.copyOf(processedChunks, chunkNum * 2);
+            }
+            processedChunks[chunkNum] = ByteBuffer.allocateDirect(1 << CHUNK_BITS);
+            chunks[chunkNum++] = ByteBuffer.allocateDirect((stride << CHUNK_BITS) * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+        }
+    }
+}
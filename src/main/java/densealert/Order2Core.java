@@ -0,0 +1,84 @@
+/* =================================================================================
+ *
+ * DenseAlert: Incremental Dense-Block Detection in Tensor Streams
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: Oct 24, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package densealert;
+
+import java.util.Queue;
+
+/**
+ * Core of a tensor of order 2 (i.e., a matrix), where the loops over the modes of each entry are unrolled
+ * @author kijungs
+ */
+class Order2Core extends Core {
+
+    Order2Core(TensorFull tensor) {
+        super(tensor);
+    }
+
+    @Override
+    int peelEntries(int dim, int[] indexToEntry, int cardinality) {
+        final EntryArena arena = oriTensor.arena;
+        final int otherDim = 1 - dim;
+        final HashIndexedMinHeap minHeap = modeToMinHeap[otherDim];
+        int heapOperationNum = 0;
+        for(int i=0; i<cardinality; i++) {
+            final int id = indexToEntry[i];
+            if(!arena.isProcessed(id)) { // if this entry is not removed yet
+                final int key = arena.get(id, otherDim);
+                if (minHeap.containsKey(key)) {
+                    minHeap.refreshPriority(key, minHeap.getPriority(key) - arena.get(id, 2));
+                    heapOperationNum++;
+                }
+                arena.setProcessed(id, true); // this entry is removed
+            }
+        }
+        return heapOperationNum;
+    }
+
+    @Override
+    void expandEntries(int seedDim, int[] indexToEntry, int cardinality, int minCoreNum, int maxCoreNum, Queue<int[]> queue) {
+        final EntryArena arena = oriTensor.arena;
+        final int otherDim = 1 - seedDim;
+        final int[] attValToCoreNumber = table.modeToAttValToCoreNumber[otherDim];
+        final byte[] attValToStatus = modeToAttValToStatus[otherDim];
+
+        for(int i=0; i<cardinality; i++) {
+            final int id = indexToEntry[i];
+            if(!arena.isProcessed(id)) { //already added to the subtensor
+                continue;
+            }
+
+            final int attVal = arena.get(id, otherDim);
+            final int coreNumber = attValToCoreNumber[attVal];
+            if(coreNumber < minCoreNum || (coreNumber == minCoreNum && attValToStatus[attVal] == 1)) { //removed
+                continue;
+            }
+
+            if(coreNumber < maxCoreNum && attValToStatus[attVal] >= 2) { // appropriate core number
+                if(attValToStatus[attVal] != 3) { // not added to the queue yet
+                    queue.add(new int[]{otherDim, attVal});
+                    attValToStatus[attVal] = 3;
+                }
+                arena.setProcessed(id, false);
+                subTensor.insert(id, seedDim);
+                subTensor.insert(id, otherDim);
+            }
+            else {
+                arena.setProcessed(id, true);
+                subTensor.addDegree(id, seedDim);
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/* =================================================================================
+ *
+ * DenseAlert: Incremental Dense-Block Detection in Tensor Streams
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: Oct 24, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package densealert;
+
+import java.util.Queue;
+
+/**
+ * Core of a tensor of order 3, where the loops over the modes of each entry are unrolled
+ * @author kijungs
+ */
+class Order3Core extends Core {
+
+    Order3Core(TensorFull tensor) {
+        super(tensor);
+    }
+
+    @Override
+    int peelEntries(int dim, int[] indexToEntry, int cardinality) {
+        final EntryArena arena = oriTensor.arena;
+        final int dim1 = dim == 0 ? 1 : 0;
+        final int dim2 = dim == 2 ? 1 : 2;
+        final HashIndexedMinHeap minHeap1 = modeToMinHeap[dim1];
+        final HashIndexedMinHeap minHeap2 = modeToMinHeap[dim2];
+        int heapOperationNum = 0;
+        for(int i=0; i<cardinality; i++) {
+            final int id = indexToEntry[i];
+            if(!arena.isProcessed(id)) { // if this entry is not removed yet
+                final int value = arena.get(id, 3);
+                final int key1 = arena.get(id, dim1);
+                if (minHeap1.containsKey(key1)) {
+                    minHeap1.refreshPriority(key1, minHeap1.getPriority(key1) - value);
+                    heapOperationNum++;
+                }
+                final int key2 = arena.get(id, dim2);
+                if (minHeap2.containsKey(key2)) {
+                    minHeap2.refreshPriority(key2, minHeap2.getPriority(key2) - value);
+                    heapOperationNum++;
+                }
+                arena.setProcessed(id, true); // this entry is removed
+            }
+        }
+        return heapOperationNum;
+    }
+
+    @Override
+    void expandEntries(int seedDim, int[] indexToEntry, int cardinality, int minCoreNum, int maxCoreNum, Queue<int[]> queue) {
+        final EntryArena arena = oriTensor.arena;
+        final int dim1 = seedDim == 0 ? 1 : 0;
+        final int dim2 = seedDim == 2 ? 1 : 2;
+        final int[] attValToCoreNumber1 = table.modeToAttValToCoreNumber[dim1];
+        final int[] attValToCoreNumber2 = table.modeToAttValToCoreNumber[dim2];
+        final byte[] attValToStatus1 = modeToAttValToStatus[dim1];
+        final byte[] attValToStatus2 = modeToAttValToStatus[dim2];
+
+        for(int i=0; i<cardinality; i++) {
+            final int id = indexToEntry[i];
+            if(!arena.isProcessed(id)) { //already added to the subtensor
+                continue;
+            }
+
+            final int attVal1 = arena.get(id, dim1);
+            final int coreNumber1 = attValToCoreNumber1[attVal1];
+            if(coreNumber1 < minCoreNum || (coreNumber1 == minCoreNum && attValToStatus1[attVal1] == 1)) { //removed
+                continue;
+            }
+            final int attVal2 = arena.get(id, dim2);
+            final int coreNumber2 = attValToCoreNumber2[attVal2];
+            if(coreNumber2 < minCoreNum || (coreNumber2 == minCoreNum && attValToStatus2[attVal2] == 1)) { //removed
+                continue;
+            }
+
+            final boolean isInserted1 = coreNumber1 < maxCoreNum && attValToStatus1[attVal1] >= 2; // appropriate core number
+            if(isInserted1 && attValToStatus1[attVal1] != 3) { // not added to the queue yet
+                queue.add(new int[]{dim1, attVal1});
+                attValToStatus1[attVal1] = 3;
+            }
+            final boolean isInserted2 = coreNumber2 < maxCoreNum && attValToStatus2[attVal2] >= 2; // appropriate core number
+            if(isInserted2 && attValToStatus2[attVal2] != 3) { // not added to the queue yet
+                queue.add(new int[]{dim2, attVal2});
+                attValToStatus2[attVal2] = 3;
+            }
+
+            if(!isInserted1 && !isInserted2) {
+                arena.setProcessed(id, true);
+                subTensor.addDegree(id, seedDim);
+            }
+            else {
+                arena.setProcessed(id, false);
+                subTensor.insert(id, seedDim);
+                if(isInserted1) {
+                    subTensor.insert(id, dim1);
+                }
+                if(isInserted2) {
+                    subTensor.insert(id, dim2);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/* =================================================================================
+ *
+ * DenseAlert: Incremental Dense-Block Detection in Tensor Streams
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: Oct 24, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package densealert;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Speedup of the parallel core decomposition over the sequential batch algorithm
+ *
+ * @author kijungs
+ */
+public class ParallelBatchBenchmark {
+
+    /**
+     * usage: java densealert.ParallelBatchBenchmark [data path] [order] [delimiter] [comma-separated thread numbers] [repetitions]
+     * each time is the minimum over the repetitions (default: 3), which excludes the warm-up of the first run.
+     * the speedup is over the sequential batch algorithm, and the scaling is over the parallel algorithm with the first thread number;
+     * neither can exceed the number of available processors, which is reported with the tensor
+     * @throws IOException
+     */
+    public static void main(String[] ar) throws IOException {
+
+        final String dataPath = ar.length > 0 ? ar[0] : "example_data.txt";
+        final int order = ar.length > 1 ? Integer.valueOf(ar[1]) : 3;
+        final String delim = ar.length > 2 ? ar[2] : ",";
+        final String[] threadNums = (ar.length > 3 ? ar[3] : "1,8,16,32,64").split(",");
+        final int repetitionNum = ar.length > 4 ? Integer.valueOf(ar[4]) : 3;
+
+        /**
+         * load the input tensor
+         */
+        final IndexMatching indexMatching = new IndexMatching(order);
+        final TensorFull tensor = new TensorFull(order, indexMatching.modeToIndicesNum);
+        final CapacityCoordinator capacity = new CapacityCoordinator(indexMatching, tensor, null);
+        BufferedReader br = new BufferedReader(new FileReader(dataPath));
+        while(true) {
+            final String line = br.readLine();
+            if(line == null) {
+                break;
+            }
+            tensor.insert(capacity.changeToIndex(parseEntry(line, delim, order)));
+        }
+        br.close();
+        System.out.println("Entry Num: " + tensor.omega + ", Attribute Value Num: " + tensor.cardinality + ", Mass: " + tensor.mass
+                + ", Available Processors: " + Runtime.getRuntime().availableProcessors());
+
+        /**
+         * sequential batch algorithm
+         */
+        final Core core = Core.create(tensor);
+        double batchTime = Double.MAX_VALUE;
+        for(int repetition = 0; repetition < repetitionNum; repetition++) {
+            long start = System.nanoTime();
+            core.rebatch();
+            batchTime = Math.min(batchTime, (System.nanoTime() - start) / 1e6);
+        }
+        final double batchDensity = core.getDensity();
+        final int[][] batchCoreNumbers = copy(core.getCoreNumbers());
+        System.out.println("Batch: " + batchTime + "ms, Density: " + batchDensity);
+
+        /**
+         * parallel core decomposition
+         */
+        double firstParallelTime = 0;
+        for(String threadNum : threadNums) {
+            ForkJoinPool pool = new ForkJoinPool(Integer.valueOf(threadNum.trim()));
+            double parallelTime = Double.MAX_VALUE;
+            for(int repetition = 0; repetition < repetitionNum; repetition++) {
+                long start = System.nanoTime();
+                core.parallelBatch(pool);
+                parallelTime = Math.min(parallelTime, (System.nanoTime() - start) / 1e6);
+            }
+            pool.shutdown();
+            if(firstParallelTime == 0) {
+                firstParallelTime = parallelTime;
+            }
+
+            int mismatchNum = 0;
+            final int[][] coreNumbers = core.getCoreNumbers();
+            for(int mode = 0; mode < order; mode++) {
+                for(int attVal = 0; attVal < batchCoreNumbers[mode].length; attVal++) {
+                    if(tensor.modeToAttValToCardinality[mode][attVal] > 0 && coreNumbers[mode][attVal] != batchCoreNumbers[mode][attVal]) {
+                        mismatchNum++;
+                    }
+                }
+            }
+            System.out.println("Threads: " + threadNum.trim() + ", " + parallelTime + "ms, Speedup: " + (batchTime / parallelTime)
+                    + ", Scaling: " + (firstParallelTime / parallelTime)
+                    + ", Density: " + core.getDensity() + ", Mismatched Core Numbers: " + mismatchNum);
+        }
+    }
+
+    private static int[][] copy(int[][] array) {
+        int[][] result = new int[array.length][];
+        for(int mode = 0; mode < array.length; mode++) {
+            result[mode] = array[mode].clone();
+        }
+        return result;
+    }
+
+    private static int[] parseEntry(String line, String delim, int order) {
+
+        String[] tokens = line.split(delim);
+
+        int[] entry = new int[order + 1];
+
+        for(int mode = 0; mode < order; mode++) {
+            entry[mode] = Integer.valueOf(tokens[mode]);
+        }
+        entry[order] = Integer.valueOf(tokens[order]);
+
+        return entry;
+    }
+}
@@ -0,0 +1,479 @@
+/* =================================================================================
+ *
+ * DenseAlert: Incremental Dense-Block Detection in Tensor Streams
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: Oct 24, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package densealert;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Parallel peeling of a tensor into an ordering of its attribute values, which the incremental algorithm continues from
+ * @author kijungs
+ */
+class ParallelPeeling {
+
+    // number of attribute values (or positions) processed by a single task
+    private static final int LEAF_SIZE = 4096;
+
+    private final TensorFull tensor;
+    private final ForkJoinPool pool;
+    private final int order;
+
+    // entries of the tensor
+    private final EntryArena arena;
+
+    // mode, attVal -> position in the ordering (-1: not removed yet)
+    private final int[][] modeToAttValToRank;
+
+    // mode, attVal -> degree in the remaining tensor
+    private final AtomicIntegerArray[] modeToAttValToDegree;
+
+    // position -> mode, attribute value, and mass removed with the attribute value
+    int[] orderToMode;
+    int[] orderToAttVal;
+    int[] orderToRemoveMass;
+
+    // number of attribute values in the ordering
+    int length = 0;
+
+    // mode, attVal -> core number (used only when peeling by core numbers)
+    private int[][] modeToAttValToCoreNumber;
+
+    ParallelPeeling(TensorFull tensor, ForkJoinPool pool) {
+        this.tensor = tensor;
+        this.pool = pool;
+        this.order = tensor.order;
+        this.arena = tensor.arena;
+        this.modeToAttValToRank = new int[order][];
+        this.modeToAttValToDegree = new AtomicIntegerArray[order];
+        for(int dim = 0; dim < order; dim++) {
+            int[] attValToDegree = tensor.modeToAttValToDegree[dim];
+            modeToAttValToRank[dim] = new int[attValToDegree.length];
+            Arrays.fill(modeToAttValToRank[dim], -1);
+            modeToAttValToDegree[dim] = new AtomicIntegerArray(attValToDegree);
+        }
+        this.orderToMode = new int[tensor.cardinality];
+        this.orderToAttVal = new int[tensor.cardinality];
+        this.orderToRemoveMass = new int[tensor.cardinality];
+    }
+
+    /**
+     * remove, in each round, every attribute value whose degree is at most (1+epsilon) * N * (density of the remaining tensor)
+     * attribute values removed in the same round are ordered by their degrees at the beginning of the round
+     * @param epsilon approximation parameter
+     */
+    void peelApproximately(double epsilon) {
+
+        long mass = tensor.mass;
+        int remainedNum = tensor.cardinality;
+
+        while(remainedNum > 0) {
+            final double threshold = (1 + epsilon) * order * ((double) mass) / remainedNum;
+            final int roundStart = length;
+            appendRound(threshold);
+            mass -= pool.invoke(new RemoveTask(roundStart, length));
+            remainedNum -= length - roundStart;
+        }
+
+        markProcessed();
+    }
+
+    /**
+     * append the remaining attribute values whose degree is at most the given threshold to the ordering
+     * if there is no such attribute value, the ones with the minimum degree are appended
+     * @param threshold
+     * @return number of appended attribute values
+     */
+    int appendRound(double threshold) {
+
+        int[][] modeToCandidates = new int[order][];
+        int candidateNum = 0;
+        for(int dim = 0; dim < order; dim++) {
+            modeToCandidates[dim] = pool.invoke(new CollectTask(dim, 0, modeToAttValToRank[dim].length, threshold));
+            candidateNum += modeToCandidates[dim].length;
+        }
+
+        if(candidateNum == 0) {
+            return appendRound(minDegree());
+        }
+
+        final int[] candidateToMode = new int[candidateNum];
+        final int[] candidateToAttVal = new int[candidateNum];
+        int loc = 0;
+        for(int dim = 0; dim < order; dim++) {
+            for(int attVal : modeToCandidates[dim]) {
+                candidateToMode[loc] = dim;
+                candidateToAttVal[loc] = attVal;
+                loc++;
+            }
+        }
+        append(candidateToMode, candidateToAttVal, candidateNum);
+
+        return candidateNum;
+    }
+
+    /**
+     * peel the tensor into the ordering of the sequential peeling, given the core numbers of attribute values
+     * attribute values with core number k are removed after those with smaller core numbers, and the entries removed with them
+     * are exactly the entries whose smallest core number is k, hence each core number is peeled independently in parallel
+     * @param modeToAttValToCoreNumber mode, attVal -> core number
+     */
+    void peelByCoreNumbers(int[][] modeToAttValToCoreNumber) {
+
+        this.modeToAttValToCoreNumber = modeToAttValToCoreNumber;
+
+        // sort attribute values by core numbers
+        final int n = tensor.cardinality;
+        final int[] indexToMode = new int[n];
+        final int[] indexToAttVal = new int[n];
+        final long[] keys = new long[n];
+        int loc = 0;
+        for(int dim = 0; dim < order; dim++) {
+            int[] attValToCardinality = tensor.modeToAttValToCardinality[dim];
+            for(int attVal = 0; attVal < attValToCardinality.length; attVal++) {
+                if(attValToCardinality[attVal] > 0) {
+                    indexToMode[loc] = dim;
+                    indexToAttVal[loc] = attVal;
+                    keys[loc] = (((long) modeToAttValToCoreNumber[dim][attVal]) << 32) | loc;
+                    loc++;
+                }
+            }
+        }
+        Arrays.parallelSort(keys);
+
+        // attribute values are placed in the ordering by core numbers, and each core number occupies a range of positions
+        int levelNum = 0;
+        final int[] levelToStart = new int[n + 1];
+        for(int position = 0; position < n; position++) {
+            int index = (int) keys[position];
+            orderToMode[position] = indexToMode[index];
+            orderToAttVal[position] = indexToAttVal[index];
+            modeToAttValToRank[indexToMode[index]][indexToAttVal[index]] = position;
+            if(position == 0 || (keys[position] >>> 32) != (keys[position - 1] >>> 32)) {
+                levelToStart[levelNum++] = position;
+            }
+        }
+        levelToStart[levelNum] = n;
+        length = n;
+
+        pool.invoke(new MarkTask(0, tensor.modeToAttValToEntries[0].length, false));
+        pool.invoke(new LevelTask(levelToStart, 0, levelNum));
+    }
+
+    /**
+     * peel the attribute values with the same core number in a range of positions, where they are reordered by the peeling
+     * @param start
+     * @param end
+     */
+    private void peelLevel(int start, int end) {
+
+        final int coreNumber = modeToAttValToCoreNumber[orderToMode[start]][orderToAttVal[start]];
+        final int size = end - start;
+        final int[] localToMode = Arrays.copyOfRange(orderToMode, start, end);
+        final int[] localToAttVal = Arrays.copyOfRange(orderToAttVal, start, end);
+
+        // ranks are reused as local indices within the level
+        final HashIndexedMinHeap minHeap = new HashIndexedMinHeap(size);
+        for(int local = 0; local < size; local++) {
+            int dim = localToMode[local];
+            int attVal = localToAttVal[local];
+            modeToAttValToRank[dim][attVal] = local;
+            int degree = 0;
+            int cardinality = tensor.modeToAttValToCardinality[dim][attVal];
+            int[] indexToEntry = tensor.modeToAttValToEntries[dim][attVal];
+            for(int i = 0; i < cardinality; i++) {
+                int id = indexToEntry[i];
+                if(minCoreNumber(id) == coreNumber) {
+                    degree += arena.get(id, order);
+                }
+            }
+            minHeap.insert(local, degree);
+        }
+
+        int position = start;
+        while(minHeap.size() > 0) {
+            final int[] pair = minHeap.poll();
+            final int dim = localToMode[pair[0]];
+            final int attVal = localToAttVal[pair[0]];
+            orderToMode[position] = dim;
+            orderToAttVal[position] = attVal;
+            orderToRemoveMass[position] = pair[1];
+            position++;
+
+            int cardinality = tensor.modeToAttValToCardinality[dim][attVal];
+            int[] indexToEntry = tensor.modeToAttValToEntries[dim][attVal];
+            for(int i = 0; i < cardinality; i++) {
+                int id = indexToEntry[i];
+                if(minCoreNumber(id) == coreNumber && !arena.isProcessed(id)) {
+                    for(int _dim = 0; _dim < order; _dim++) {
+                        int key = arena.get(id, _dim);
+                        if(_dim != dim && modeToAttValToCoreNumber[_dim][key] == coreNumber) {
+                            int local = modeToAttValToRank[_dim][key];
+                            if(minHeap.containsKey(local)) {
+                                minHeap.refreshPriority(local, minHeap.getPriority(local) - arena.get(id, order));
+                            }
+                        }
+                    }
+                    arena.setProcessed(id, true);
+                }
+            }
+        }
+
+        for(position = start; position < end; position++) {
+            modeToAttValToRank[orderToMode[position]][orderToAttVal[position]] = position;
+        }
+    }
+
+    /**
+     * smallest core number among the attribute values of the given entry
+     * @param id id of the entry in the arena
+     * @return
+     */
+    private int minCoreNumber(int id) {
+        int minCoreNumber = Integer.MAX_VALUE;
+        for(int dim = 0; dim < order; dim++) {
+            minCoreNumber = Math.min(minCoreNumber, modeToAttValToCoreNumber[dim][arena.get(id, dim)]);
+        }
+        return minCoreNumber;
+    }
+
+    /**
+     * append the given attribute values to the ordering in the increasing order of their degrees
+     * @param candidateToMode
+     * @param candidateToAttVal
+     * @param candidateNum
+     */
+    private void append(int[] candidateToMode, int[] candidateToAttVal, int candidateNum) {
+
+        // order candidates by (degree, given order)
+        final long[] keys = new long[candidateNum];
+        for(int i = 0; i < candidateNum; i++) {
+            keys[i] = (((long) modeToAttValToDegree[candidateToMode[i]].get(candidateToAttVal[i])) << 32) | i;
+        }
+        Arrays.sort(keys);
+
+        for(int i = 0; i < candidateNum; i++) {
+            int candidate = (int) keys[i];
+            int dim = candidateToMode[candidate];
+            int attVal = candidateToAttVal[candidate];
+            modeToAttValToRank[dim][attVal] = length;
+            orderToMode[length] = dim;
+            orderToAttVal[length] = attVal;
+            length++;
+        }
+    }
+
+    /**
+     * minimum degree among the remaining attribute values
+     * @return
+     */
+    private int minDegree() {
+        int minDegree = Integer.MAX_VALUE;
+        for(int dim = 0; dim < order; dim++) {
+            int[] attValToRank = modeToAttValToRank[dim];
+            int[] attValToCardinality = tensor.modeToAttValToCardinality[dim];
+            AtomicIntegerArray attValToDegree = modeToAttValToDegree[dim];
+            for(int attVal = 0; attVal < attValToRank.length; attVal++) {
+                if(attValToRank[attVal] == -1 && attValToCardinality[attVal] > 0) {
+                    minDegree = Math.min(minDegree, attValToDegree.get(attVal));
+                }
+            }
+        }
+        return minDegree;
+    }
+
+    /**
+     * mark every entry of the tensor as processed, as the incremental algorithm expects
+     */
+    private void markProcessed() {
+        pool.invoke(new MarkTask(0, tensor.modeToAttValToEntries[0].length, true));
+    }
+
+    /**
+     * collect the remaining attribute values of a mode in a range whose degree is at most the threshold
+     */
+    private class CollectTask extends RecursiveTask<int[]> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int mode;
+        private final int from;
+        private final int to;
+        private final double threshold;
+
+        CollectTask(int mode, int from, int to, double threshold) {
+            this.mode = mode;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected int[] compute() {
+            if(to - from > LEAF_SIZE) {
+                int mid = (from + to) >>> 1;
+                CollectTask left = new CollectTask(mode, from, mid, threshold);
+                left.fork();
+                int[] right = new CollectTask(mode, mid, to, threshold).compute();
+                int[] leftResult = left.join();
+                int[] merged = Arrays.copyOf(leftResult, leftResult.length + right.length);
+                System.arraycopy(right, 0, merged, leftResult.length, right.length);
+                return merged;
+            }
+
+            final int[] attValToRank = modeToAttValToRank[mode];
+            final int[] attValToCardinality = tensor.modeToAttValToCardinality[mode];
+            final AtomicIntegerArray attValToDegree = modeToAttValToDegree[mode];
+            int[] result = new int[16];
+            int num = 0;
+            for(int attVal = from; attVal < to; attVal++) {
+                if(attValToRank[attVal] == -1 && attValToCardinality[attVal] > 0 && attValToDegree.get(attVal) <= threshold) {
+                    if(num == result.length) {
+                        result = Arrays.copyOf(result, num * 2);
+                    }
+                    result[num++] = attVal;
+                }
+            }
+            return Arrays.copyOf(result, num);
+        }
+    }
+
+    /**
+     * remove the attribute values in a range of positions
+     * each entry is removed with its attribute value that comes first in the ordering
+     * returns the removed mass
+     */
+    private class RemoveTask extends RecursiveTask<Long> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        RemoveTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Long compute() {
+            if(to - from > LEAF_SIZE / 16) {
+                int mid = (from + to) >>> 1;
+                RemoveTask left = new RemoveTask(from, mid);
+                left.fork();
+                long right = new RemoveTask(mid, to).compute();
+                return left.join() + right;
+            }
+
+            long removedMass = 0;
+            for(int position = from; position < to; position++) {
+                final int dim = orderToMode[position];
+                final int attVal = orderToAttVal[position];
+                final int cardinality = tensor.modeToAttValToCardinality[dim][attVal];
+                final int[] indexToEntry = tensor.modeToAttValToEntries[dim][attVal];
+                int removeMass = 0;
+                out:for(int i = 0; i < cardinality; i++) {
+                    int id = indexToEntry[i];
+                    for(int _dim = 0; _dim < order; _dim++) {
+                        int rank = modeToAttValToRank[_dim][arena.get(id, _dim)];
+                        if(rank != -1 && rank < position) { // removed with another attribute value
+                            continue out;
+                        }
+                    }
+                    removeMass += arena.get(id, order);
+                    for(int _dim = 0; _dim < order; _dim++) {
+                        int key = arena.get(id, _dim);
+                        if(_dim != dim && modeToAttValToRank[_dim][key] == -1) {
+                            modeToAttValToDegree[_dim].addAndGet(key, -arena.get(id, order));
+                        }
+                    }
+                }
+                orderToRemoveMass[position] = removeMass;
+                removedMass += removeMass;
+            }
+            return removedMass;
+        }
+    }
+
+    /**
+     * set the processed flag of the entries of the attribute values (of the first mode) in a range
+     */
+    private class MarkTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final boolean processed;
+
+        MarkTask(int from, int to, boolean processed) {
+            this.from = from;
+            this.to = to;
+            this.processed = processed;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from > LEAF_SIZE) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new MarkTask(from, mid, processed), new MarkTask(mid, to, processed));
+                return;
+            }
+
+            final int[][] attValToEntries = tensor.modeToAttValToEntries[0];
+            final int[] attValToCardinality = tensor.modeToAttValToCardinality[0];
+            for(int attVal = from; attVal < to; attVal++) {
+                int entryNum = attValToCardinality[attVal];
+                for(int index = 0; index < entryNum; index++) {
+                    arena.setProcessed(attValToEntries[attVal][index], processed);
+                }
+            }
+        }
+    }
+
+    /**
+     * peel the core numbers in a range of levels, split by the number of attribute values
+     */
+    private class LevelTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int[] levelToStart;
+        private final int from;
+        private final int to;
+
+        LevelTask(int[] levelToStart, int from, int to) {
+            this.levelToStart = levelToStart;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from > 1 && levelToStart[to] - levelToStart[from] > LEAF_SIZE) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new LevelTask(levelToStart, from, mid), new LevelTask(levelToStart, mid, to));
+                return;
+            }
+            for(int level = from; level < to; level++) {
+                peelLevel(levelToStart[level], levelToStart[level + 1]);
+            }
+        }
+    }
+
+}
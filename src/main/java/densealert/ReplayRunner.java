@@ -0,0 +1,266 @@
+/* =================================================================================
+ *
+ * DenseAlert: Incremental Dense-Block Detection in Tensor Streams
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: Oct 24, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package densealert;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Command-line runner replaying a stream file through DenseStream, DenseAlert, or DenseWindows
+ *
+ * usage: java densealert.ReplayRunner --input [path] [options]
+ *   --engine stream|alert|windows   engine to run (default: alert)
+ *   --order N               order of the input tensor (default: 3)
+ *   --window W              window size in seconds, for alert and windows (default: 60)
+ *   --slide S               interval between the starts of windows in seconds, for windows (default: W, tumbling windows)
+ *   --delim D               delimiter of the text format (default: ,)
+ *   --format text|binary    input format (default: text), see EntryReader
+ *   --warmup K              number of entries processed before measurement (default: 0)
+ *   --interval R            number of entries between reports (default: 100000)
+ *   --latency true|false    whether to report latency percentiles (default: false)
+ *   --offheap true|false    whether to store entries outside the Java heap (default: false)
+ *   --compaction R          ratio of attribute values in use to capacity triggering compaction (default: 0, disabled)
+ *   --expiry-batch R        ratio of entries expiring at once to entries in the window, above which they are deleted
+ *                           by a single reordering, for alert (default: 0.005, 0 to delete them one by one)
+ *   --reorder-budget B      maximum number of attribute values reordered by an update, beyond which reordering is delayed
+ *                           until the next report and the reported density is a lower bound (default: 0, no bound)
+ *   --background-batch U    number of updates between recomputations of the ordering on a background thread (default: 0, disabled)
+ *   --alerts P              file to write the changes in the block to on a background thread, for stream and alert (default: none)
+ *   --alert-format ndjson|binary   format of the alerts (default: ndjson), see AlertWriter
+ *   --alert-queue Q         number of alerts queued before the overflow policy is applied (default: 65536)
+ *   --alert-overflow drop-newest|drop-oldest|spill   what to do with alerts arriving when the queue is full (default: drop-newest)
+ *
+ * @author kijungs
+ */
+public class ReplayRunner {
+
+    public static void main(String[] ar) throws IOException {
+
+        final Map<String, String> options = parseOptions(ar);
+        if(!options.containsKey("input")) {
+            System.out.println("usage: java densealert.ReplayRunner --input [path] [--engine stream|alert|windows] [--order N] [--window W] [--slide S]"
+                    + " [--delim D] [--format text|binary] [--warmup K] [--interval R] [--latency true|false] [--offheap true|false] [--compaction R]"
+                    + " [--expiry-batch R] [--reorder-budget B] [--background-batch U] [--alerts P] [--alert-format ndjson|binary] [--alert-queue Q]"
+                    + " [--alert-overflow drop-newest|drop-oldest|spill]");
+            return;
+        }
+
+        final String dataPath = options.get("input");
+        final String engine = get(options, "engine", "alert");
+        final int order = Integer.valueOf(get(options, "order", "3"));
+        final int window = Integer.valueOf(get(options, "window", "60"));
+        final String delim = get(options, "delim", ",");
+        final String format = get(options, "format", EntryReader.TEXT);
+        final long warmup = Long.valueOf(get(options, "warmup", "0"));
+        final long interval = Long.valueOf(get(options, "interval", "100000"));
+        final boolean isLatencyTracked = Boolean.valueOf(get(options, "latency", "false"));
+        final boolean isOffHeap = Boolean.valueOf(get(options, "offheap", "false"));
+        final double compactionRatio = Double.valueOf(get(options, "compaction", "0"));
+        final double expiryBatchRatio = Double.valueOf(get(options, "expiry-batch", String.valueOf(DenseAlert.DEFAULT_EXPIRY_BATCH_RATIO)));
+        final int reorderBudget = Integer.valueOf(get(options, "reorder-budget", "0"));
+        final long backgroundBatchInterval = Long.valueOf(get(options, "background-batch", "0"));
+        final String alertPath = options.get("alerts");
+        final String alertFormat = get(options, "alert-format", AlertWriter.NDJSON);
+        final int alertQueueCapacity = Integer.valueOf(get(options, "alert-queue", "65536"));
+        final AlertWriter.OverflowPolicy alertOverflow = AlertWriter.OverflowPolicy.valueOf(get(options, "alert-overflow", "drop-newest").toUpperCase().replace('-', '_'));
+
+        if("windows".equals(engine)) {
+            final int slide = Integer.valueOf(get(options, "slide", String.valueOf(window)));
+            replayWindows(dataPath, format, delim, order, window, slide, isOffHeap);
+            return;
+        }
+
+        final DenseStream denseStream = "stream".equals(engine) ? new DenseStream(order, isOffHeap) : null;
+        final DenseAlert denseAlert = denseStream == null ? new DenseAlert(order, window, isOffHeap) : null;
+        if(denseStream != null) {
+            denseStream.setCompactionRatio(compactionRatio);
+            denseStream.setReorderBudget(reorderBudget);
+            denseStream.setBackgroundBatchInterval(backgroundBatchInterval);
+        }
+        else {
+            denseAlert.setCompactionRatio(compactionRatio);
+            denseAlert.setExpiryBatchRatio(expiryBatchRatio);
+            denseAlert.setReorderBudget(reorderBudget);
+            denseAlert.setBackgroundBatchInterval(backgroundBatchInterval);
+        }
+        final AlertWriter alertWriter = alertPath == null ? null : new AlertWriter(alertPath, alertFormat, alertQueueCapacity, alertOverflow);
+        if(alertWriter != null) {
+            if(denseStream != null) {
+                denseStream.setAlertSink(alertWriter);
+            }
+            else {
+                denseAlert.setAlertSink(alertWriter);
+            }
+        }
+        LatencyStatistics latency = null;
+        if(isLatencyTracked) {
+            latency = denseStream != null ? denseStream.enableLatencyTracking() : denseAlert.enableLatencyTracking();
+        }
+
+        System.out.println("Engine: " + (denseStream != null ? "DenseStream" : "DenseAlert (window: " + window + ")")
+                + ", Order: " + order + ", Input: " + dataPath + " (" + format + ")");
+
+        final EntryReader reader = new EntryReader(dataPath, format, delim, order);
+        final int[] entry = new int[order + 1];
+
+        long count = 0;
+        long measuredCount = 0;
+        long lastTimestamp = 0;
+        long startTime = System.nanoTime();
+        long intervalStartTime = startTime;
+        long startGcTime = gcTime();
+        while(reader.read(entry)) {
+
+            if(denseStream != null) {
+                denseStream.insert(entry);
+            }
+            else {
+                lastTimestamp = reader.getTimestamp();
+                denseAlert.insert(entry, lastTimestamp);
+            }
+            count++;
+
+            if(count == warmup) {
+                startTime = System.nanoTime();
+                intervalStartTime = startTime;
+                startGcTime = gcTime();
+                if(latency != null) {
+                    latency.nextInterval(null);
+                }
+                System.out.println("Warmup finished after " + warmup + " entries");
+                continue;
+            }
+
+            if(count > warmup) {
+                measuredCount++;
+                if(measuredCount % interval == 0) {
+                    long now = System.nanoTime();
+                    double density = denseStream != null ? denseStream.getDensity() : denseAlert.getDensity();
+                    System.out.println(String.format("Processed Entry Num: %d, Updates/s: %.1f, Density: %.4f, Heap Used (MB): %.1f, GC Time (ms): %d",
+                            count, interval / ((now - intervalStartTime) / 1e9), density, heapUsed(), gcTime() - startGcTime)
+                            + (reorderBudget > 0 ? ", Exact: " + (denseStream != null ? denseStream.isDensityExact() : denseAlert.isDensityExact()) : ""));
+                    if(latency != null) {
+                        latency.nextInterval(System.out);
+                    }
+                    if(reorderBudget > 0) { // start (or swap in) the background recomputation between reports
+                        try {
+                            if(denseStream != null) {
+                                denseStream.catchUp();
+                            }
+                            else {
+                                denseAlert.catchUp();
+                            }
+                        } catch (IllegalStateException e) { // retried at the next report
+                            System.out.println("Background batch failed: " + e.getCause());
+                        }
+                    }
+                    intervalStartTime = System.nanoTime();
+                }
+            }
+        }
+        reader.close();
+        if(alertWriter != null && denseAlert != null && count > 0) {
+            denseAlert.advanceTime(lastTimestamp); // the alert for the last timestamp
+        }
+
+        final double elapsed = (System.nanoTime() - startTime) / 1e9;
+        final double density = denseStream != null ? denseStream.getDensity() : denseAlert.getDensity();
+        System.out.println(String.format("Total Entry Num: %d, Measured Entry Num: %d, Elapsed (s): %.3f, Updates/s: %.1f, Density: %.4f, Heap Used (MB): %.1f, GC Time (ms): %d",
+                count, measuredCount, elapsed, measuredCount / elapsed, density, heapUsed(), gcTime() - startGcTime));
+        if(latency != null) {
+            latency.nextInterval(System.out);
+            latency.outputPercentileDistributions(System.out);
+        }
+        if(alertWriter != null) {
+            alertWriter.close();
+            System.out.println(String.format("Written Alert Num: %d, Dropped Alert Num: %d, Spilled Alert Num: %d",
+                    alertWriter.getWrittenNum(), alertWriter.getDroppedNum(), alertWriter.getSpilledNum()));
+        }
+    }
+
+    /**
+     * replay a stream file through DenseWindows, reporting the block in each window
+     */
+    private static void replayWindows(String dataPath, String format, String delim, int order, int window, int slide, boolean isOffHeap) throws IOException {
+
+        System.out.println("Engine: DenseWindows (window: " + window + ", slide: " + slide + "), Order: " + order + ", Input: " + dataPath + " (" + format + ")");
+
+        final DenseWindows denseWindows = new DenseWindows(order, window, slide, new WindowListener() {
+            @Override
+            public void onWindow(WindowResult result) {
+                StringBuilder blockSize = new StringBuilder();
+                for(int mode = 0; mode < result.getBlockIds().size(); mode++) {
+                    blockSize.append(mode == 0 ? "" : "x").append(result.getBlockIds().get(mode).length);
+                }
+                System.out.println(String.format("Window: [%d, %d), Entry Num: %d, Density: %.4f, Block Size: %s",
+                        result.getStart(), result.getEnd(), result.getEntryNum(), result.getDensity(), blockSize));
+            }
+        }, isOffHeap);
+
+        final EntryReader reader = new EntryReader(dataPath, format, delim, order);
+        final int[] entry = new int[order + 1];
+        long count = 0;
+        long lastTimestamp = 0;
+        final long startTime = System.nanoTime();
+        final long startGcTime = gcTime();
+        while(reader.read(entry)) {
+            lastTimestamp = reader.getTimestamp();
+            denseWindows.insert(entry, lastTimestamp);
+            count++;
+        }
+        reader.close();
+        if(count > 0) {
+            denseWindows.advanceTime(lastTimestamp + window); // end the remaining windows
+        }
+
+        final double elapsed = (System.nanoTime() - startTime) / 1e9;
+        System.out.println(String.format("Total Entry Num: %d, Elapsed (s): %.3f, Updates/s: %.1f, Heap Used (MB): %.1f, GC Time (ms): %d",
+                count, elapsed, count / elapsed, heapUsed(), gcTime() - startGcTime));
+    }
+
+    private static Map<String, String> parseOptions(String[] ar) {
+        Map<String, String> options = new HashMap<String, String>();
+        for(int i = 0; i < ar.length; i += 2) {
+            if(!ar[i].startsWith("--")) {
+                throw new IllegalArgumentException("unexpected argument: " + ar[i]);
+            }
+            if(i + 1 == ar.length) {
+                throw new IllegalArgumentException("missing value of " + ar[i]);
+            }
+            options.put(ar[i].substring(2), ar[i + 1]);
+        }
+        return options;
+    }
+
+    private static String get(Map<String, String> options, String key, String defaultValue) {
+        return options.containsKey(key) ? options.get(key) : defaultValue;
+    }
+
+    private static double heapUsed() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / 1048576.0;
+    }
+
+    private static long gcTime() {
+        long time = 0;
+        for(GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, bean.getCollectionTime());
+        }
+        return time;
+    }
+}
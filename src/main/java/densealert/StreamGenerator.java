@@ -0,0 +1,404 @@
+/* =================================================================================
+ *
+ * DenseAlert: Incremental Dense-Block Detection in Tensor Streams
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: Oct 24, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package densealert;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Seeded generator of an endless tensor stream with injected dense blocks
+ *
+ * Background entries arrive at a fixed rate, and the attribute values of each mode follow a power law (Zipf) distribution,
+ * where the attribute value of rank k (1, 2, ...) is chosen with probability proportional to k^{-exponent}.
+ * Each injected block has its own attribute values (ids from the cardinality of the mode upward),
+ * and adds entries chosen uniformly from them at its own rate between its start and end.
+ * Every entry has value 1, and timestamps are in seconds.
+ * The same seed and blocks always give the same stream, and memory use does not depend on the length of the stream.
+ *
+ * usage: java densealert.StreamGenerator [options]
+ *   --order N               order of the tensor (default: 3)
+ *   --cardinality C         number of background attribute values of each mode (default: 100000)
+ *   --exponent S            exponent of the power law (default: 1.0, 0 for uniform)
+ *   --rate R                number of background entries per second (default: 1000)
+ *   --blocks B              injected blocks, separated by ';', each "size:rate:start:end"
+ *                           where size is a number of attribute values per mode, or one per mode separated by 'x' (e.g., 20x20x5),
+ *                           rate is a number of entries per second, and start and end are in seconds (default: none)
+ *   --entries E             number of generated entries (default: 1000000)
+ *   --seed S                seed (default: 0)
+ *   --output [path]         file to which the stream is written, in the format of EntryReader
+ *   --format text|binary    output format (default: text)
+ *   --delim D               delimiter of the text format (default: ,)
+ *   --engine stream|alert   instead of writing, feed the stream to an engine, and report throughput and detection latency
+ *   --window W              window size in seconds, for alert (default: 60)
+ *
+ * @author kijungs
+ */
+public class StreamGenerator {
+
+    private final int order;
+    private final double rate;
+    private final Random random;
+    private final ZipfSampler[] modeToSampler;
+
+    // block -> mode -> (number of attribute values, first id)
+    private final List<int[]> blockToSizes = new ArrayList<int[]>();
+    private final List<int[]> blockToFirstIds = new ArrayList<int[]>();
+
+    // block -> (rate, start, end)
+    private final List<double[]> blockToSchedule = new ArrayList<double[]>();
+
+    // block -> number of entries generated
+    private long[] blockToCount = new long[0];
+
+    // mode -> next id assigned to an injected block
+    private final int[] modeToNextBlockId;
+
+    private long backgroundCount = 0;
+    private int lastBlock = -1;
+
+    /**
+     * @param order order of the tensor
+     * @param modeToCardinality mode -> number of background attribute values
+     * @param exponent exponent of the power law (0 for uniform)
+     * @param rate number of background entries per second
+     * @param seed
+     */
+    public StreamGenerator(int order, int[] modeToCardinality, double exponent, double rate, long seed) {
+        if(rate <= 0) {
+            throw new IllegalArgumentException("rate should be positive: " + rate);
+        }
+        if(exponent < 0) {
+            throw new IllegalArgumentException("exponent should not be negative: " + exponent);
+        }
+        this.order = order;
+        this.rate = rate;
+        this.random = new Random(seed);
+        this.modeToSampler = new ZipfSampler[order];
+        this.modeToNextBlockId = new int[order];
+        for(int mode = 0; mode < order; mode++) {
+            modeToSampler[mode] = new ZipfSampler(modeToCardinality[mode], exponent);
+            modeToNextBlockId[mode] = modeToCardinality[mode];
+        }
+    }
+
+    /**
+     * inject a dense block
+     * @param modeToSize mode -> number of attribute values in the block
+     * @param rate number of entries of the block per second
+     * @param start start time of the block (in seconds)
+     * @param end end time of the block (in seconds)
+     * @return index of the block
+     */
+    public int addBlock(int[] modeToSize, double rate, long start, long end) {
+        if(rate <= 0 || end < start) {
+            throw new IllegalArgumentException("invalid block: rate " + rate + ", start " + start + ", end " + end);
+        }
+        final int[] firstIds = new int[order];
+        for(int mode = 0; mode < order; mode++) {
+            firstIds[mode] = modeToNextBlockId[mode];
+            modeToNextBlockId[mode] += modeToSize[mode];
+        }
+        blockToSizes.add(modeToSize.clone());
+        blockToFirstIds.add(firstIds);
+        blockToSchedule.add(new double[]{rate, start, end});
+        blockToCount = Arrays.copyOf(blockToCount, blockToCount.length + 1);
+        return blockToSizes.size() - 1;
+    }
+
+    /**
+     * get the ids of the given mode in an injected block
+     * @param block index of the block
+     * @param mode
+     * @return
+     */
+    public int[] getBlockIds(int block, int mode) {
+        final int[] ids = new int[blockToSizes.get(block)[mode]];
+        for(int i = 0; i < ids.length; i++) {
+            ids[i] = blockToFirstIds.get(block)[mode] + i;
+        }
+        return ids;
+    }
+
+    /**
+     * generate the next entry in the order of time
+     * @param entry array of length at least N+1 filled with (i_{1}, i_{2}, ..., i_{N}, 1)
+     * @return timestamp of the entry (in seconds)
+     */
+    public long next(int[] entry) {
+
+        // the earliest among the next background entry and the next entry of each block
+        double time = backgroundCount / rate;
+        int source = -1;
+        for(int block = 0; block < blockToSchedule.size(); block++) {
+            final double[] schedule = blockToSchedule.get(block);
+            final double blockTime = schedule[1] + blockToCount[block] / schedule[0];
+            if(blockTime < schedule[2] && blockTime < time) {
+                time = blockTime;
+                source = block;
+            }
+        }
+
+        if(source < 0) {
+            for(int mode = 0; mode < order; mode++) {
+                entry[mode] = modeToSampler[mode].sample(random) - 1;
+            }
+            backgroundCount++;
+        }
+        else {
+            final int[] sizes = blockToSizes.get(source);
+            final int[] firstIds = blockToFirstIds.get(source);
+            for(int mode = 0; mode < order; mode++) {
+                entry[mode] = firstIds[mode] + random.nextInt(sizes[mode]);
+            }
+            blockToCount[source]++;
+        }
+        entry[order] = 1;
+        lastBlock = source;
+        return (long) time;
+    }
+
+    /**
+     * index of the injected block that generated the last entry
+     * @return -1 if the last entry is a background entry
+     */
+    public int getLastBlock() {
+        return lastBlock;
+    }
+
+    /**
+     * write the next entries in the format of EntryReader
+     * @param output
+     * @param format EntryReader.TEXT or EntryReader.BINARY
+     * @param delim delimiter of the text format
+     * @param entryNum number of entries to write
+     * @throws IOException
+     */
+    public void write(OutputStream output, String format, String delim, long entryNum) throws IOException {
+        final int[] entry = new int[order + 1];
+        if(EntryReader.BINARY.equals(format)) {
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output, 1 << 16));
+            for(long i = 0; i < entryNum; i++) {
+                final long timestamp = next(entry);
+                for(int mode = 0; mode <= order; mode++) {
+                    out.writeInt(entry[mode]);
+                }
+                out.writeLong(timestamp);
+            }
+            out.flush();
+        }
+        else if(EntryReader.TEXT.equals(format)) {
+            final Writer out = new BufferedWriter(new OutputStreamWriter(output), 1 << 16);
+            final StringBuilder line = new StringBuilder();
+            for(long i = 0; i < entryNum; i++) {
+                final long timestamp = next(entry);
+                line.setLength(0);
+                for(int mode = 0; mode <= order; mode++) {
+                    line.append(entry[mode]).append(delim);
+                }
+                line.append(timestamp).append('\n');
+                out.append(line);
+            }
+            out.flush();
+        }
+        else {
+            throw new IllegalArgumentException("unknown format: " + format);
+        }
+    }
+
+    /**
+     * Zipf distribution over 1, 2, ..., n by rejection-inversion sampling (Hormann and Derflinger, 1996),
+     * which takes constant time and memory regardless of n
+     */
+    private static class ZipfSampler {
+
+        private final int n;
+        private final double exponent;
+        private final double hIntegralX1;
+        private final double hIntegralN;
+        private final double s;
+
+        ZipfSampler(int n, double exponent) {
+            this.n = n;
+            this.exponent = exponent;
+            this.hIntegralX1 = hIntegral(1.5) - 1;
+            this.hIntegralN = hIntegral(n + 0.5);
+            this.s = 2 - hIntegralInverse(hIntegral(2.5) - h(2));
+        }
+
+        int sample(Random random) {
+            while(true) {
+                final double u = hIntegralN + random.nextDouble() * (hIntegralX1 - hIntegralN);
+                final double x = hIntegralInverse(u);
+                int k = (int) (x + 0.5);
+                if(k < 1) {
+                    k = 1;
+                }
+                else if(k > n) {
+                    k = n;
+                }
+                if(k - x <= s || u >= hIntegral(k + 0.5) - h(k)) {
+                    return k;
+                }
+            }
+        }
+
+        private double h(double x) {
+            return Math.exp(-exponent * Math.log(x));
+        }
+
+        private double hIntegral(double x) {
+            final double logX = Math.log(x);
+            return helper2((1 - exponent) * logX) * logX;
+        }
+
+        private double hIntegralInverse(double x) {
+            double t = x * (1 - exponent);
+            if(t < -1) {
+                t = -1;
+            }
+            return Math.exp(helper1(t) * x);
+        }
+
+        // log(1 + x) / x
+        private static double helper1(double x) {
+            return Math.abs(x) > 1e-8 ? Math.log1p(x) / x : 1 - x * (0.5 - x * (1.0 / 3 - 0.25 * x));
+        }
+
+        // (exp(x) - 1) / x
+        private static double helper2(double x) {
+            return Math.abs(x) > 1e-8 ? Math.expm1(x) / x : 1 + x * 0.5 * (1 + x / 3 * (1 + 0.25 * x));
+        }
+    }
+
+    public static void main(String[] ar) throws IOException {
+
+        final Map<String, String> options = new HashMap<String, String>();
+        for(int i = 0; i < ar.length; i += 2) {
+            if(!ar[i].startsWith("--")) {
+                throw new IllegalArgumentException("unexpected argument: " + ar[i]);
+            }
+            if(i + 1 == ar.length) {
+                throw new IllegalArgumentException("missing value of " + ar[i]);
+            }
+            options.put(ar[i].substring(2), ar[i + 1]);
+        }
+
+        final int order = Integer.valueOf(get(options, "order", "3"));
+        final int cardinality = Integer.valueOf(get(options, "cardinality", "100000"));
+        final double exponent = Double.valueOf(get(options, "exponent", "1.0"));
+        final double rate = Double.valueOf(get(options, "rate", "1000"));
+        final String blocks = get(options, "blocks", "");
+        final long entryNum = Long.valueOf(get(options, "entries", "1000000"));
+        final long seed = Long.valueOf(get(options, "seed", "0"));
+        final String format = get(options, "format", EntryReader.TEXT);
+        final String delim = get(options, "delim", ",");
+        final String engine = options.get("engine");
+        final int window = Integer.valueOf(get(options, "window", "60"));
+
+        final int[] modeToCardinality = new int[order];
+        Arrays.fill(modeToCardinality, cardinality);
+        final StreamGenerator generator = new StreamGenerator(order, modeToCardinality, exponent, rate, seed);
+        for(String block : blocks.split(";")) {
+            if(block.trim().isEmpty()) {
+                continue;
+            }
+            final String[] tokens = block.trim().split(":");
+            final String[] sizeTokens = tokens[0].split("x");
+            final int[] modeToSize = new int[order];
+            for(int mode = 0; mode < order; mode++) {
+                modeToSize[mode] = Integer.valueOf(sizeTokens[sizeTokens.length == 1 ? 0 : mode]);
+            }
+            generator.addBlock(modeToSize, Double.valueOf(tokens[1]), Long.valueOf(tokens[2]), Long.valueOf(tokens[3]));
+        }
+
+        if(engine == null) {
+            if(!options.containsKey("output")) {
+                System.out.println("usage: java densealert.StreamGenerator --output [path] [--format text|binary] [options], or --engine stream|alert [options]");
+                return;
+            }
+            final OutputStream output = new FileOutputStream(options.get("output"));
+            final long start = System.nanoTime();
+            generator.write(output, format, delim, entryNum);
+            output.close();
+            final double elapsed = (System.nanoTime() - start) / 1e9;
+            System.out.println(String.format(Locale.ROOT, "Written Entry Num: %d, Elapsed (s): %.3f, Entries/s: %.1f", entryNum, elapsed, entryNum / elapsed));
+            return;
+        }
+
+        /**
+         * feed the stream to an engine, and find when each block is first detected,
+         * i.e., when an entry of the block is inserted with all its attribute values in the maintained block
+         */
+        final DenseStream denseStream = "stream".equals(engine) ? new DenseStream(order) : null;
+        final DenseAlert denseAlert = denseStream == null ? new DenseAlert(order, window) : null;
+        final int blockNum = generator.blockToSizes.size();
+        final long[] blockToFirstTime = new long[blockNum];
+        final long[] blockToFirstCount = new long[blockNum];
+        final boolean[] blockToStarted = new boolean[blockNum];
+        final boolean[] blockToDetected = new boolean[blockNum];
+        final EntryScore score = new EntryScore();
+        final int[] entry = new int[order + 1];
+        final long start = System.nanoTime();
+        for(long count = 0; count < entryNum; count++) {
+            final long timestamp = generator.next(entry);
+            final int block = generator.getLastBlock();
+            if(denseStream != null) {
+                denseStream.insert(entry, block >= 0 && !blockToDetected[block] ? score : null);
+            }
+            else {
+                denseAlert.insert(entry, timestamp, block >= 0 && !blockToDetected[block] ? score : null);
+            }
+            if(block < 0 || blockToDetected[block]) {
+                continue;
+            }
+            if(!blockToStarted[block]) {
+                blockToStarted[block] = true;
+                blockToFirstTime[block] = timestamp;
+                blockToFirstCount[block] = count;
+            }
+            if(score.isInBlock()) {
+                blockToDetected[block] = true;
+                System.out.println(String.format(Locale.ROOT, "Block %d detected at Entry Num: %d, Timestamp: %d, Latency: %d entries, %d seconds, %d entries of the block",
+                        block, count + 1, timestamp, count - blockToFirstCount[block], timestamp - blockToFirstTime[block], generator.blockToCount[block]));
+            }
+        }
+        final double elapsed = (System.nanoTime() - start) / 1e9;
+        for(int block = 0; block < blockNum; block++) {
+            if(!blockToDetected[block]) {
+                System.out.println("Block " + block + " not detected");
+            }
+        }
+        System.out.println(String.format(Locale.ROOT, "Processed Entry Num: %d, Elapsed (s): %.3f, Updates/s: %.1f, Density: %.4f",
+                entryNum, elapsed, entryNum / elapsed, denseStream != null ? denseStream.getDensity() : denseAlert.getDensity()));
+    }
+
+    private static String get(Map<String, String> options, String key, String defaultValue) {
+        return options.containsKey(key) ? options.get(key) : defaultValue;
+    }
+}
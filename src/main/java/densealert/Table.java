@@ -101,6 +101,27 @@ class Table {
         modeToAttValToCoreNumber[col.mode][col.attVal] = col.coreNumber;
     }
 
+    /**
+     * move the columns of the given mode to new attribute values, and change the size of the mode
+     * @param mode
+     * @param oldToNew old attribute value -> new attribute value
+     * @param newSize
+     */
+    public void remap(int mode, int[] oldToNew, int newSize) {
+        final TableCol[] attValToCol = new TableCol[newSize];
+        final int[] attValToCoreNumber = new int[newSize];
+        for(TableCol col = head; col != null; col = col.next) {
+            if(col.mode == mode) {
+                int attVal = oldToNew[col.attVal];
+                attValToCoreNumber[attVal] = modeToAttValToCoreNumber[mode][col.attVal];
+                attValToCol[attVal] = col;
+                col.attVal = attVal;
+            }
+        }
+        modeToAttValToCol[mode] = attValToCol;
+        modeToAttValToCoreNumber[mode] = attValToCoreNumber;
+    }
+
     /**
      * resize the table
      * @param mode
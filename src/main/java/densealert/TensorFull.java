@@ -15,10 +15,13 @@
 
 package densealert;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 /**
  * A data structure for storing tensor (full feature)
+ * entries are kept in an arena and the entry list of each attribute value holds entry ids
  * @author kijungs
  */
 class TensorFull {
@@ -27,21 +30,44 @@ class TensorFull {
     public long mass;
     public long omega;
     public int cardinality;
-    public int[][][][] modeToAttValToEntries;
+    public EntryArena arena;
+    public int[][][] modeToAttValToEntries;
     public int[][] modeToAttValToDegree;
     public int[][] modeToAttValToCardinality;
-    private int locateBase = order+2;
+
+    // mode -> number of attribute values with at least one entry
+    public final int[] modeToLiveAttValNum;
+
+    // mode -> new length of the entry list of the attribute value in the last insertion or deletion (0: not changed, -1: removed)
+    public final int[] modeToNewLength;
+
+    private int locateBase = order+1;
+
+    // recomputation copying the entries on another thread, to which every change is logged while holding its lock (null if none)
+    BackgroundBatch observer = null;
 
     public TensorFull(int order, int[] modeToIndicesNum) {
+        this(order, modeToIndicesNum, new HeapEntryArena(order));
+    }
+
+    /**
+     * @param order
+     * @param modeToIndicesNum
+     * @param arena storage of entries
+     */
+    public TensorFull(int order, int[] modeToIndicesNum, EntryArena arena) {
         this.order = order;
-        locateBase = order+2;
-        modeToAttValToEntries = new int[order][][][];
+        locateBase = order+1;
+        this.arena = arena;
+        modeToNewLength = new int[order];
+        modeToLiveAttValNum = new int[order];
+        modeToAttValToEntries = new int[order][][];
         modeToAttValToDegree = new int[order][];
         modeToAttValToCardinality = new int[order][];
         for(int mode = 0; mode < order; mode++) {
             modeToAttValToDegree[mode] = new int[modeToIndicesNum[mode]];
             modeToAttValToCardinality[mode] = new int[modeToIndicesNum[mode]];
-            modeToAttValToEntries[mode] = new int[modeToIndicesNum[mode]][][];
+            modeToAttValToEntries[mode] = new int[modeToIndicesNum[mode]][];
         }
     }
 
@@ -54,34 +80,60 @@ class TensorFull {
         modeToAttValToCardinality[mode] = Arrays.copyOf(modeToAttValToCardinality[mode], newLength);
 
         // entries
-        {
-            final int[][][] oldArray = modeToAttValToEntries[mode];
-            int oldLength = oldArray.length;
-            final int[][][] newArray = new int[newLength][][];
-            modeToAttValToEntries[mode] = newArray;
-            for (int i = 0; i < oldLength; i++) {
-                newArray[i] = oldArray[i];
+        modeToAttValToEntries[mode] = Arrays.copyOf(modeToAttValToEntries[mode], newLength);
+    }
+
+    /**
+     * move the attribute values of the given mode to new indices, and change the size of the mode
+     * @param mode
+     * @param oldToNew old attribute value -> new attribute value (-1 for those without entries)
+     * @param newLength
+     */
+    public void remap(int mode, int[] oldToNew, int newLength) {
+        final int[] attValToDegree = new int[newLength];
+        final int[] attValToCardinality = new int[newLength];
+        final int[][] attValToEntries = new int[newLength][];
+        final int oldLength = Math.min(oldToNew.length, modeToAttValToCardinality[mode].length);
+        for(int attVal = 0; attVal < oldLength; attVal++) {
+            final int cardinality = modeToAttValToCardinality[mode][attVal];
+            if(cardinality == 0) {
+                continue;
+            }
+            final int newAttVal = oldToNew[attVal];
+            final int[] entries = modeToAttValToEntries[mode][attVal];
+            attValToDegree[newAttVal] = modeToAttValToDegree[mode][attVal];
+            attValToCardinality[newAttVal] = cardinality;
+            attValToEntries[newAttVal] = entries;
+            for(int i = 0; i < cardinality; i++) {
+                arena.set(entries[i], mode, newAttVal);
             }
         }
+        modeToAttValToDegree[mode] = attValToDegree;
+        modeToAttValToCardinality[mode] = attValToCardinality;
+        modeToAttValToEntries[mode] = attValToEntries;
     }
 
     /**
-     * insert the given entry or increment the value if exist
-     * @param entry
-     * @return
+     * delete every entry at once, keeping the arrays of each mode and the entry lists for the next entries
      */
-    public int[] insert(int[] entry) {
-
+    public void reset() {
         for(int mode = 0; mode < order; mode++) {
-            int attVal = entry[mode];
-            if(attVal == modeToAttValToDegree[mode].length) {
-                resize(mode, modeToAttValToDegree[mode].length * 2);
-            }
+            Arrays.fill(modeToAttValToDegree[mode], 0);
+            Arrays.fill(modeToAttValToCardinality[mode], 0);
+            modeToLiveAttValNum[mode] = 0;
         }
+        mass = 0;
+        omega = 0;
+        cardinality = 0;
+        arena.reset();
+    }
 
-        int[] modeToNewLength = new int[order];
-
-        //check whether the same entry exists
+    /**
+     * find the id of the entry with the given attribute values
+     * @param entry (i_{1}, i_{2}, ..., i_{N})
+     * @return -1 if no such entry exists
+     */
+    public int find(int[] entry) {
         int minMode = 0;
         int minEntryNum = Integer.MAX_VALUE;
         for(int mode = 0; mode < order; mode++) {
@@ -91,49 +143,103 @@ class TensorFull {
                 minEntryNum = entryNum;
             }
         }
-        int[][] entries = modeToAttValToEntries[minMode][entry[minMode]];
+        final int[] entries = modeToAttValToEntries[minMode][entry[minMode]];
         out:for(int i=minEntryNum-1; i>=0; i--) { //from last one
-            int[] existingEntry = entries[i];
+            int id = entries[i];
             for(int mode = 0; mode < order; mode++) {
-                if(existingEntry[mode] != entry[mode])
+                if(arena.get(id, mode) != entry[mode])
                     continue out;
             }
+            return entries[i];
+        }
+        return -1;
+    }
+
+    /**
+     * copy the entries with the given attribute value
+     * @param mode
+     * @param attVal
+     * @return list of (i_{1}, i_{2}, ..., i_{N}, Delta)
+     */
+    public List<int[]> getEntries(int mode, int attVal) {
+        final int entryNum = modeToAttValToCardinality[mode][attVal];
+        final int[] ids = modeToAttValToEntries[mode][attVal];
+        final List<int[]> entries = new ArrayList<int[]>(entryNum);
+        for(int i = 0; i < entryNum; i++) {
+            int[] entry = new int[order + 1];
+            for(int dim = 0; dim <= order; dim++) {
+                entry[dim] = arena.get(ids[i], dim);
+            }
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    /**
+     * insert the given entry or increment the value if exist
+     * the arrays of each mode should already hold the attribute values of the entry (see CapacityCoordinator)
+     * the lengths of resized entry lists are stored in modeToNewLength
+     * @param entry (i_{1}, i_{2}, ..., i_{N}, Delta)
+     * @return id of the inserted or incremented entry
+     */
+    public int insert(int[] entry) {
+        final BackgroundBatch observer = this.observer;
+        if(observer == null) {
+            return insertEntry(entry);
+        }
+        synchronized (observer) {
+            final int id = insertEntry(entry);
+            observer.log(entry, true);
+            return id;
+        }
+    }
+
+    private int insertEntry(int[] entry) {
+
+        Arrays.fill(modeToNewLength, 0);
+
+        //check whether the same entry exists
+        int id = find(entry);
+        if(observer != null) {
+            observer.beforeChange(id >= 0 ? id : arena.nextId());
+        }
+        if(id >= 0) {
             //exists
-            existingEntry[order] += entry[order];
+            arena.set(id, order, arena.get(id, order) + entry[order]);
             mass += entry[order];
             for(int mode = 0; mode < order; mode++) {
                 modeToAttValToDegree[mode][entry[mode]] += entry[order];
             }
-            return modeToNewLength;
+            return id;
+        }
+
+        id = arena.allocate();
+        for(int mode = 0; mode <= order; mode++) {
+            arena.set(id, mode, entry[mode]);
         }
 
         for(int mode=0; mode < order; mode++) {
             int attVal = entry[mode];
-            int[][][] attValToEntries = modeToAttValToEntries[mode];
+            int[][] attValToEntries = modeToAttValToEntries[mode];
             int[] attValToDegree = modeToAttValToDegree[mode];
             int[] attValToCardinality = modeToAttValToCardinality[mode];
             int cardinality = attValToCardinality[attVal];
             if(cardinality==0) {
                 if(attValToEntries[attVal]==null) {
-                    attValToEntries[attVal] = new int[4][];
+                    attValToEntries[attVal] = new int[4];
                 }
                 this.cardinality += 1;
+                modeToLiveAttValNum[mode]++;
             }
             else if(cardinality == attValToEntries[attVal].length) {
                 //resize
-                int oldLength = attValToEntries[attVal].length;
-                int newLength = oldLength * 2;
-                int[][] oldArray = attValToEntries[attVal];
-                attValToEntries[attVal] = new int[newLength][];
-                int[][] newArray = attValToEntries[attVal];
-                for(int i=0; i < oldLength; i++) {
-                    newArray[i] = oldArray[i];
-                }
+                int newLength = attValToEntries[attVal].length * 2;
+                attValToEntries[attVal] = Arrays.copyOf(attValToEntries[attVal], newLength);
                 modeToNewLength[mode] = newLength;
             }
 
-            entry[locateBase + mode] = cardinality;
-            attValToEntries[attVal][cardinality] = entry;
+            arena.set(id, locateBase + mode, cardinality);
+            attValToEntries[attVal][cardinality] = id;
             attValToDegree[attVal] += entry[order];
             attValToCardinality[attVal] += 1;
 
@@ -141,91 +247,84 @@ class TensorFull {
         mass += entry[order];
         omega += 1;
 
-        return modeToNewLength;
+        return id;
     }
 
     /**
      * delete the given entry or decrement the value if exist
-     * @param entry
-     * @return null if non corresponding entry is found;
+     * the lengths of resized entry lists are stored in modeToNewLength
+     * @param entry (i_{1}, i_{2}, ..., i_{N}, Delta)
+     * @return false if non corresponding entry is found;
      */
-    public int[] delete(int[] entry) {
+    public boolean delete(int[] entry) {
+        final BackgroundBatch observer = this.observer;
+        if(observer == null) {
+            return deleteEntry(entry);
+        }
+        synchronized (observer) {
+            if(!deleteEntry(entry)) {
+                return false;
+            }
+            observer.log(entry, false);
+            return true;
+        }
+    }
+
+    private boolean deleteEntry(int[] entry) {
 
-        int[] modeToNewLength = new int[order];
+        Arrays.fill(modeToNewLength, 0);
 
         //check whether the same entry exists
-        int minMode = 0;
-        int minEntryNum = Integer.MAX_VALUE;
-        for(int mode = 0; mode < order; mode++) {
-            int entryNum = modeToAttValToCardinality[mode][entry[mode]];
-            if(entryNum < minEntryNum) {
-                minMode = mode;
-                minEntryNum = entryNum;
-            }
+        final int idToRemove = find(entry);
+        if(idToRemove < 0) { // no entry is found
+            return false;
         }
-        int minAttVal = entry[minMode];
-        int[][] entries = modeToAttValToEntries[minMode][minAttVal];
-
-        int[] entryToRemove = null;
-        out:for(int minModeIndex=0; minModeIndex<minEntryNum; minModeIndex++) {
-            int[] existingEntry = entries[minModeIndex];
-            for(int mode = 0; mode < order; mode++) {
-                if(existingEntry[mode] != entry[mode])
-                    continue out;
-            }
-            entryToRemove = existingEntry; //found
-            break out;
+        if(observer != null) {
+            observer.beforeChange(idToRemove);
         }
 
-        if(entryToRemove == null) { // no entry is found
-            return null;
-        }
-        else if(entryToRemove[order] > entry[order]) { // only change value
-            entryToRemove[order] -= entry[order];
+        final int valueToRemove = arena.get(idToRemove, order);
+        if(valueToRemove > entry[order]) { // only change value
+            arena.set(idToRemove, order, valueToRemove - entry[order]);
             mass -= entry[order];
             for(int mode = 0; mode < order; mode++) {
                 modeToAttValToDegree[mode][entry[mode]] -= entry[order];
             }
-            return modeToNewLength;
+            return true;
         }
         else { //should remove entry
-            int massToRemove = entryToRemove[order];
+            int massToRemove = valueToRemove;
             for(int mode = 0; mode < order; mode++) {
 
                 int attVal = entry[mode];
                 int entryNum = modeToAttValToCardinality[mode][attVal]--;
                 modeToAttValToDegree[mode][attVal] -= massToRemove;
-                entries = modeToAttValToEntries[mode][attVal];
+                int[] entries = modeToAttValToEntries[mode][attVal];
 
-                int modeIndex = entryToRemove[locateBase + mode];
+                int modeIndex = arena.get(idToRemove, locateBase + mode);
 
                 // relocate
-                int[] entryToMove = modeToAttValToEntries[mode][attVal][entryNum - 1];
-                entryToMove[locateBase + mode] = modeIndex;
-                modeToAttValToEntries[mode][attVal][modeIndex] = entryToMove;
+                int idToMove = entries[entryNum - 1];
+                arena.set(idToMove, locateBase + mode, modeIndex);
+                entries[modeIndex] = idToMove;
 
                 //if this attribute value should be removed
                 if(entryNum == 1) {
                     modeToNewLength[mode] = -1; //remove
                     modeToAttValToEntries[mode][attVal] = null;
                     this.cardinality--;
+                    modeToLiveAttValNum[mode]--;
                 }
                 else if (entryNum >= 4 && entryNum < entries.length / 4) { //should be resized
-                    int[][][] attValToEntries = modeToAttValToEntries[mode];
-                    int oldLength = entries.length;
-                    int newLength = oldLength / 2;
-                    int[][] oldArray = entries;
-                    int[][] newArray = new int[newLength][];
-                    attValToEntries[attVal] = newArray;
-                    for (int i = 0; i < entryNum; i++) {
-                        newArray[i] = oldArray[i];
-                    }
+                    int newLength = entries.length / 2;
+                    modeToAttValToEntries[mode][attVal] = Arrays.copyOf(entries, newLength);
                     modeToNewLength[mode] = newLength;
                 }
             }
+            arena.release(idToRemove);
             mass -= massToRemove;
             this.omega--;
-            return modeToNewLength;
+            return true;
         }
     }
 
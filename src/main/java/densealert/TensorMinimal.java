@@ -15,6 +15,8 @@
 
 package densealert;
 
+import java.util.Arrays;
+
 /**
  * A data structure for storing tensor (minimal feature)
  * @author kijungs
@@ -22,19 +24,21 @@ package densealert;
 class TensorMinimal {
 
     public int order;
-    public int[][][][] modeToAttValToEntries;
+    public EntryArena arena; // shared with the tensor the entries come from
+    public int[][][] modeToAttValToEntries;
     public int[][] modeToAttValToDegree;
     public int[][] modeToAttValToCardinality;
 
-    public TensorMinimal(int order, int[] modeToIndicesNum) {
+    public TensorMinimal(int order, int[] modeToIndicesNum, EntryArena arena) {
         this.order = order;
-        modeToAttValToEntries = new int[order][][][];
+        this.arena = arena;
+        modeToAttValToEntries = new int[order][][];
         modeToAttValToDegree = new int[order][];
         modeToAttValToCardinality = new int[order][];
         for(int mode = 0; mode < order; mode++) {
             modeToAttValToDegree[mode] = new int[modeToIndicesNum[mode]];
             modeToAttValToCardinality[mode] = new int[modeToIndicesNum[mode]];
-            modeToAttValToEntries[mode] = new int[modeToIndicesNum[mode]][][];
+            modeToAttValToEntries[mode] = new int[modeToIndicesNum[mode]][];
         }
     }
 
@@ -47,54 +51,55 @@ class TensorMinimal {
         modeToAttValToCardinality[mode] = new int[newLength];
 
         // entries
-        {
-            final int[][][] oldArray = modeToAttValToEntries[mode];
-            int oldLength = oldArray.length;
-            final int[][][] newArray = new int[newLength][][];
-            modeToAttValToEntries[mode] = newArray;
-            for (int i = 0; i < oldLength; i++) {
-                newArray[i] = oldArray[i];
-            }
-        }
+        modeToAttValToEntries[mode] = Arrays.copyOf(modeToAttValToEntries[mode], newLength);
     }
 
     public void resize(int mode, int attVal, int newLength) {
-        modeToAttValToEntries[mode][attVal] = new int[newLength][];
+        modeToAttValToEntries[mode][attVal] = new int[newLength];
     }
 
     /**
      * insert without considering resizing
-     * @param entry
+     * @param id id of the entry in the arena
      * @param insertFlag whether each attribute should be actually inserted
      */
-    public void insert(int[] entry, boolean[] insertFlag) {
+    public void insert(int id, boolean[] insertFlag) {
         for(int mode=0; mode < order; mode++) {
             if(insertFlag[mode]) {
-                int attVal = entry[mode];
-                int[][][] attValToEntries = modeToAttValToEntries[mode];
-                int[] attValToDegree = modeToAttValToDegree[mode];
-                int[] attValToCardinality = modeToAttValToCardinality[mode];
-                int cardinality = attValToCardinality[attVal];
-                if(cardinality==0) { // new entry
-                    if(attValToEntries[attVal]==null) {
-                        attValToEntries[attVal] = new int[4][];
-                    }
-                }
-                attValToEntries[attVal][cardinality] = entry;
-                attValToDegree[attVal] += entry[order];
-                attValToCardinality[attVal] += 1;
+                insert(id, mode);
+            }
+        }
+    }
+
+    /**
+     * insert the attribute value of the given mode only, without considering resizing
+     * @param id id of the entry in the arena
+     * @param mode
+     */
+    public void insert(int id, int mode) {
+        int attVal = arena.get(id, mode);
+        int[][] attValToEntries = modeToAttValToEntries[mode];
+        int[] attValToDegree = modeToAttValToDegree[mode];
+        int[] attValToCardinality = modeToAttValToCardinality[mode];
+        int cardinality = attValToCardinality[attVal];
+        if(cardinality==0) { // new entry
+            if(attValToEntries[attVal]==null) {
+                attValToEntries[attVal] = new int[4];
             }
         }
+        attValToEntries[attVal][cardinality] = id;
+        attValToDegree[attVal] += arena.get(id, order);
+        attValToCardinality[attVal] += 1;
     }
 
     /**
      * do not add an entry, but increase its degree as it is added
-     * @param entry
+     * @param id id of the entry in the arena
      * @param mode
      */
-    public void addDegree(int[] entry, int mode) {
-        int attVal = entry[mode];
-        int increment = entry[order];
+    public void addDegree(int id, int mode) {
+        int attVal = arena.get(id, mode);
+        int increment = arena.get(id, order);
 
         int[] attValToDegree = modeToAttValToDegree[mode];
         attValToDegree[attVal] += increment;
@@ -0,0 +1,30 @@
+/* =================================================================================
+ *
+ * DenseAlert: Incremental Dense-Block Detection in Tensor Streams
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: Oct 24, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package densealert;
+
+/**
+ * Receiver of the dense block found in each window by DenseWindows
+ *
+ * @author kijungs
+ */
+public interface WindowListener {
+
+    /**
+     * called on the thread inserting entries, whenever a window ends
+     * @param result dense block in the window
+     */
+    void onWindow(WindowResult result);
+}
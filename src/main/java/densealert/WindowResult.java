@@ -0,0 +1,80 @@
+/* =================================================================================
+ *
+ * DenseAlert: Incremental Dense-Block Detection in Tensor Streams
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: Oct 24, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package densealert;
+
+import java.util.Map;
+
+/**
+ * Dense block found in a window by DenseWindows
+ *
+ * @author kijungs
+ */
+public class WindowResult {
+
+    private final long start;
+    private final long end;
+    private final long entryNum;
+    private final double density;
+    private final Map<Integer, int[]> blockIds;
+
+    WindowResult(long start, long end, long entryNum, double density, Map<Integer, int[]> blockIds) {
+        this.start = start;
+        this.end = end;
+        this.entryNum = entryNum;
+        this.density = density;
+        this.blockIds = blockIds;
+    }
+
+    /**
+     * start of the window (inclusive)
+     * @return
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * end of the window (exclusive)
+     * @return
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    /**
+     * number of distinct entries in the window
+     * @return
+     */
+    public long getEntryNum() {
+        return entryNum;
+    }
+
+    /**
+     * density of the block
+     * @return
+     */
+    public double getDensity() {
+        return density;
+    }
+
+    /**
+     * get mode and ids composing the block
+     * @return mode to ids
+     */
+    public Map<Integer, int[]> getBlockIds() {
+        return blockIds;
+    }
+}
@@ -0,0 +1,99 @@
+/* =================================================================================
+ *
+ * DenseAlert: Incremental Dense-Block Detection in Tensor Streams
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: Oct 24, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+
+package densealert;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of AlertWriter
+ * @author kijungs
+ */
+public class AlertWriterTest {
+
+    private static BlockAlert alert(long timestamp, double density) {
+        Map<Integer, int[]> enteredIds = new HashMap<Integer, int[]>();
+        enteredIds.put(0, new int[]{(int) timestamp});
+        Map<Integer, int[]> leftIds = new HashMap<Integer, int[]>();
+        leftIds.put(0, new int[0]);
+        return new BlockAlert(timestamp, density, false, enteredIds, leftIds);
+    }
+
+    private static List<Long> timestamps(byte[] bytes) {
+        List<Long> timestamps = new ArrayList<Long>();
+        for(String line : new String(bytes, StandardCharsets.UTF_8).split("\n")) {
+            if(!line.isEmpty()) {
+                timestamps.add(Long.parseLong(line.substring("{\"timestamp\":".length(), line.indexOf(','))));
+            }
+        }
+        return timestamps;
+    }
+
+    @Test
+    public void testNonFiniteDensity() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        AlertWriter writer = new AlertWriter(bytes, AlertWriter.NDJSON, 16, AlertWriter.OverflowPolicy.DROP_NEWEST);
+        writer.accept(alert(1, Double.NaN));
+        writer.accept(alert(2, Double.POSITIVE_INFINITY));
+        writer.accept(alert(3, 1.5));
+        writer.close();
+        String[] lines = new String(bytes.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        assertEquals(3, lines.length);
+        assertTrue(lines[0], lines[0].contains("\"density\":null,"));
+        assertTrue(lines[1], lines[1].contains("\"density\":null,"));
+        assertTrue(lines[2], lines[2].contains("\"density\":1.5,"));
+    }
+
+    @Test
+    public void testSpillKeepsOrder() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        AlertWriter writer = new AlertWriter(bytes, AlertWriter.NDJSON, 4, AlertWriter.OverflowPolicy.SPILL);
+        for(long timestamp = 0; timestamp < 10000; timestamp++) {
+            writer.accept(alert(timestamp, 1));
+        }
+        writer.close();
+        assertEquals(0, writer.getDroppedNum());
+        assertEquals(10000, writer.getWrittenNum());
+        List<Long> timestamps = timestamps(bytes.toByteArray());
+        for(int i = 0; i < timestamps.size(); i++) {
+            assertEquals(i, (long) timestamps.get(i));
+        }
+    }
+
+    @Test
+    public void testDropOldest() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        AlertWriter writer = new AlertWriter(bytes, AlertWriter.NDJSON, 4, AlertWriter.OverflowPolicy.DROP_OLDEST);
+        for(long timestamp = 0; timestamp < 10000; timestamp++) {
+            writer.accept(alert(timestamp, 1));
+            assertTrue(writer.getQueuedNum() <= 4);
+        }
+        writer.close();
+        assertEquals(10000, writer.getWrittenNum() + writer.getDroppedNum());
+        List<Long> timestamps = timestamps(bytes.toByteArray());
+        assertEquals(writer.getWrittenNum(), timestamps.size());
+        for(int i = 1; i < timestamps.size(); i++) {
+            assertTrue(timestamps.get(i - 1) < timestamps.get(i));
+        }
+        assertEquals(9999, (long) timestamps.get(timestamps.size() - 1)); // the newest alert is never dropped
+    }
+}
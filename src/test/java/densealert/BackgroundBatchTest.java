@@ -0,0 +1,169 @@
+/* =================================================================================
+ *
+ * DenseAlert: Incremental Dense-Block Detection in Tensor Streams
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: Oct 24, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+
+package densealert;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of BackgroundBatch
+ * @author kijungs
+ */
+public class BackgroundBatchTest {
+
+    private static final int ORDER = 3;
+
+    private static Map<List<Integer>, Integer> entries(TensorFull tensor) {
+        Map<List<Integer>, Integer> entryToValue = new HashMap();
+        for(int attVal = 0; attVal < tensor.modeToAttValToCardinality[0].length; attVal++) {
+            for(int[] entry : tensor.getEntries(0, attVal)) {
+                assertNull(entryToValue.put(Arrays.asList(entry[0], entry[1], entry[2]), entry[ORDER]));
+            }
+        }
+        return entryToValue;
+    }
+
+    /**
+     * the entries are copied while another thread keeps changing the tensor, releasing and reusing ids
+     */
+    @Test
+    public void testCopyWhileChanging() throws InterruptedException {
+        for(int seed = 0; seed < 5; seed++) {
+            final Random random = new Random(seed);
+            final int cardinality = 50;
+            final TensorFull tensor = new TensorFull(ORDER, new int[]{cardinality, cardinality, cardinality});
+            for(int i = 0; i < 50000; i++) {
+                tensor.insert(new int[]{random.nextInt(cardinality), random.nextInt(cardinality), random.nextInt(cardinality), 1 + random.nextInt(3)});
+            }
+
+            // the replay only checks the entries, and thus it is kept cheap by deferring the reordering
+            final BackgroundBatch backgroundBatch = new BackgroundBatch(tensor, 1);
+            final Thread changer = new Thread() {
+                @Override
+                public void run() {
+                    for(int i = 0; i < 200000; i++) {
+                        int[] entry = new int[]{random.nextInt(cardinality), random.nextInt(cardinality), random.nextInt(cardinality), 1 + random.nextInt(3)};
+                        if(random.nextBoolean()) {
+                            tensor.insert(entry);
+                        }
+                        else {
+                            tensor.delete(entry);
+                        }
+                    }
+                }
+            };
+            changer.start();
+            backgroundBatch.run();
+            changer.join();
+            assertNull(backgroundBatch.getError());
+            assertTrue(backgroundBatch.isReady());
+            backgroundBatch.finish(new int[]{cardinality, cardinality, cardinality});
+
+            assertNull(tensor.observer);
+            final TensorFull copied = backgroundBatch.getTensor();
+            assertEquals(entries(tensor), entries(copied));
+            assertEquals(tensor.mass, copied.mass);
+            assertEquals(tensor.omega, copied.omega);
+        }
+    }
+
+    @Test
+    public void testCancel() {
+        final TensorFull tensor = new TensorFull(ORDER, new int[]{10, 10, 10});
+        tensor.insert(new int[]{1, 2, 3, 1});
+        final BackgroundBatch backgroundBatch = new BackgroundBatch(tensor, 0);
+        assertSame(backgroundBatch, tensor.observer);
+        backgroundBatch.cancel();
+        assertNull(tensor.observer);
+        backgroundBatch.run();
+        assertFalse(backgroundBatch.isReady());
+    }
+
+    /**
+     * arena failing on reads by the background thread, as if the copy ran out of memory
+     */
+    private static class FailingArena extends HeapEntryArena {
+
+        private volatile boolean isFailing = true;
+
+        FailingArena() {
+            super(ORDER);
+        }
+
+        @Override
+        int get(int id, int field) {
+            if(isFailing && Thread.currentThread().getName().equals("densealert-batch")) {
+                throw new OutOfMemoryError("injected");
+            }
+            return super.get(id, field);
+        }
+    }
+
+    @Test
+    public void testFailure() throws InterruptedException {
+        final FailingArena arena = new FailingArena();
+        final EngineState state = new EngineState(ORDER, null, 0, false);
+        state.tensor = new TensorFull(ORDER, state.indexMatching.modeToIndicesNum.clone(), arena);
+        state.core = new Core(state.tensor);
+        for(int i = 0; i < 100; i++) {
+            state.core.insert(new int[]{i % 10, i / 10, (i * 7) % 10, 1});
+        }
+        final Core core = state.core;
+        final double density = core.getDensity();
+
+        // the failure is found by an update, which keeps the current core
+        assertTrue(state.startBackgroundBatch());
+        while(state.isBackgroundBatchRunning()) {
+            state.swapIfReady();
+            Thread.sleep(1);
+        }
+        assertTrue(state.getBackgroundBatchError() instanceof OutOfMemoryError);
+        assertSame(core, state.core);
+        assertEquals(density, state.core.getDensity(), 0);
+
+        // catchUp rethrows the failure of the recomputation it waits for
+        assertTrue(state.startBackgroundBatch());
+        IllegalStateException thrown = null;
+        while(thrown == null && state.isBackgroundBatchRunning()) {
+            try {
+                state.catchUp();
+            }
+            catch(IllegalStateException e) {
+                thrown = e;
+            }
+            Thread.sleep(1);
+        }
+        assertNotNull(thrown);
+        assertTrue(thrown.getCause() instanceof OutOfMemoryError);
+        assertFalse(state.isBackgroundBatchRunning());
+        assertSame(core, state.core);
+
+        // a recomputation that succeeds clears the error
+        arena.isFailing = false;
+        assertTrue(state.startBackgroundBatch());
+        while(state.isBackgroundBatchRunning()) {
+            state.swapIfReady();
+            Thread.sleep(1);
+        }
+        assertNull(state.getBackgroundBatchError());
+        assertNotSame(core, state.core);
+        assertEquals(density, state.core.getDensity(), 1e-9);
+    }
+}
@@ -0,0 +1,98 @@
+/* =================================================================================
+ *
+ * DenseAlert: Incremental Dense-Block Detection in Tensor Streams
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: Oct 24, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+
+package densealert;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of DenseAlert against the ordering of the entries in the window computed from scratch
+ * @author kijungs
+ */
+public class DenseAlertTest {
+
+    private static final int ORDER = 3;
+
+    /**
+     * insert a stream whose entries arrive a few per second, with a dense block in the middle,
+     * and check the engine whenever the entries inserted before the window expire
+     * @param expiryBatchRatio
+     * @param seed
+     */
+    private static void checkExpiry(double expiryBatchRatio, long seed) {
+        final Random random = new Random(seed);
+        final int cardinality = 60;
+        final int window = 40;
+        final DenseAlert denseAlert = new DenseAlert(ORDER, window);
+        denseAlert.setExpiryBatchRatio(expiryBatchRatio);
+        final Reference reference = new Reference(ORDER);
+        final Queue<Pair<Long, int[]>> inWindow = new LinkedList();
+
+        for(long timestamp = 0; timestamp < 300; timestamp++) {
+            // as in DenseAlert, an entry inserted at t expires once the time passes t + window
+            while(!inWindow.isEmpty() && inWindow.peek().getKey() + window < timestamp) {
+                reference.delete(inWindow.poll().getValue());
+            }
+            final boolean isBurst = timestamp >= 100 && timestamp < 150;
+            final int entryNum = isBurst ? 20 : 1 + random.nextInt(10);
+            for(int i = 0; i < entryNum; i++) {
+                int[] entry = isBurst
+                        ? new int[]{cardinality + random.nextInt(5), cardinality + random.nextInt(5), cardinality + random.nextInt(5), 1}
+                        : new int[]{random.nextInt(cardinality), random.nextInt(cardinality), random.nextInt(cardinality), 1 + random.nextInt(2)};
+                denseAlert.insert(entry, timestamp);
+                reference.insert(entry);
+                inWindow.add(new Pair<Long, int[]>(timestamp, entry));
+            }
+            if(timestamp % 10 == 0) {
+                denseAlert.advanceTime(timestamp);
+                reference.check("time " + timestamp, denseAlert::getCoreNumber, denseAlert.getDensity(), denseAlert.getBlockIndices());
+            }
+        }
+    }
+
+    @Test
+    public void testExpiryOneByOne() {
+        checkExpiry(0, 0);
+    }
+
+    @Test
+    public void testBatchedExpiry() {
+        checkExpiry(1e-6, 1); // every sweep of two or more entries is deleted by a single reordering
+    }
+
+    @Test
+    public void testCancelledExpiry() {
+        // the same entries every second, whose expirations and insertions cancel out
+        final int window = 5;
+        final DenseAlert denseAlert = new DenseAlert(ORDER, window);
+        final Reference reference = new Reference(ORDER);
+        final int[][] entries = new int[][]{{0, 0, 0, 1}, {0, 1, 0, 1}, {1, 0, 1, 2}, {2, 2, 2, 1}};
+        for(long timestamp = 0; timestamp < 30; timestamp++) {
+            for(int[] entry : entries) {
+                denseAlert.insert(entry, timestamp);
+                if(timestamp <= window) {
+                    reference.insert(entry);
+                }
+            }
+            denseAlert.advanceTime(timestamp);
+            reference.check("time " + timestamp, denseAlert::getCoreNumber, denseAlert.getDensity(), denseAlert.getBlockIndices());
+        }
+    }
+}
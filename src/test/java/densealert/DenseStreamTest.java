@@ -0,0 +1,526 @@
+/* =================================================================================
+ *
+ * DenseAlert: Incremental Dense-Block Detection in Tensor Streams
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: Oct 24, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+
+package densealert;
+
+import org.junit.Test;
+
+import javax.management.JMException;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of DenseStream against the ordering computed from scratch
+ * @author kijungs
+ */
+public class DenseStreamTest {
+
+    private static final int ORDER = 3;
+
+    /**
+     * uniform entries with a planted dense block
+     */
+    private static List<int[]> plantedEntries(Random random, int entryNum, int cardinality, int blockSize) {
+        List<int[]> entries = new ArrayList();
+        for(int i = 0; i < entryNum; i++) {
+            entries.add(new int[]{random.nextInt(cardinality), random.nextInt(cardinality), random.nextInt(cardinality), 1});
+        }
+        for(int i = 0; i < blockSize; i++) {
+            for(int j = 0; j < blockSize; j++) {
+                for(int k = 0; k < blockSize; k++) {
+                    entries.add(new int[]{cardinality + i, cardinality + j, cardinality + k, 1});
+                }
+            }
+        }
+        return entries;
+    }
+
+    @Test
+    public void testInsertAfterApproximateBootstrap() throws JMException, InterruptedException {
+        final Random random = new Random(0);
+        final int cardinality = 1000;
+        final List<int[]> entries = plantedEntries(random, 100000, cardinality, 20);
+        final Reference reference = new Reference(ORDER);
+        for(int[] entry : entries) {
+            reference.insert(entry);
+        }
+
+        final double epsilon = 0.1;
+        final DenseStream denseStream = new DenseStream(ORDER);
+        denseStream.bootstrap(entries, epsilon, 4);
+        assertFalse(denseStream.isDensityExact());
+        assertTrue(denseStream.getDensity() * ORDER * (1 + epsilon) >= reference.batch().getDensity());
+        assertEquals(reference.getDensity(denseStream.getBlockIndices()), denseStream.getDensity(), 1e-9);
+        assertTrue(denseStream.isBackgroundBatchRunning());
+
+        // the exact ordering is computed in the background, and thus the first insertion is applied without reordering
+        final EngineStatistics statistics = denseStream.enableStatistics(null);
+        for(int i = 0; i < 1000; i++) {
+            int[] entry = new int[]{random.nextInt(cardinality + 20), random.nextInt(cardinality + 20), random.nextInt(cardinality + 20), 1};
+            denseStream.insert(entry);
+            reference.insert(entry);
+            if(i == 0 && !denseStream.isDensityExact()) {
+                assertEquals(0, statistics.getBatchNum());
+                assertEquals(1, statistics.getDeferredNum());
+            }
+            if(i % 250 == 0) {
+                assertEquals("insertion " + i, reference.getDensity(denseStream.getBlockIndices()), denseStream.getDensity(), 1e-9);
+            }
+        }
+        while(denseStream.catchUp()) {
+            Thread.sleep(1);
+        }
+        assertEquals(0, statistics.getBatchNum());
+        reference.check("insertions", denseStream::getCoreNumber, denseStream.getDensity(), denseStream.getBlockIndices());
+    }
+
+    @Test
+    public void testInsertOutsideEntireBlock() {
+        // the block is the entire tensor until an entry with new attribute values arrives, which makes a part of it denser
+        final DenseStream denseStream = new DenseStream(ORDER);
+        final Reference reference = new Reference(ORDER);
+        for(int[] entry : new int[][]{{0, 0, 0, 1}, {0, 1, 0, 1}, {1, 0, 1, 2}, {2, 2, 2, 1}}) {
+            denseStream.insert(entry);
+            reference.insert(entry);
+        }
+        assertEquals(4.0 / 6, denseStream.getDensity(), 1e-9);
+        reference.check("insertion", denseStream::getCoreNumber, denseStream.getDensity(), denseStream.getBlockIndices());
+    }
+
+    @Test
+    public void testOrders() {
+        // orders 2 and 3 are processed by specialized engines, which are checked against the generic one used by the reference
+        for(int order = 2; order <= 4; order++) {
+            final Random random = new Random(order);
+            final DenseStream denseStream = new DenseStream(order);
+            final Reference reference = new Reference(order);
+            final List<int[]> insertedEntries = new ArrayList();
+            for(int i = 0; i < 1500; i++) {
+                final boolean isInBlock = random.nextInt(4) == 0;
+                int[] entry = new int[order + 1];
+                for(int dim = 0; dim < order; dim++) {
+                    entry[dim] = isInBlock ? random.nextInt(5) : random.nextInt(40);
+                }
+                entry[order] = 1 + random.nextInt(3);
+                denseStream.insert(entry);
+                reference.insert(entry);
+                insertedEntries.add(entry);
+                if(i % 3 == 2) {
+                    int[] deletedEntry = insertedEntries.remove(random.nextInt(insertedEntries.size()));
+                    denseStream.delete(deletedEntry);
+                    reference.delete(deletedEntry);
+                }
+                if(i % 300 == 299) {
+                    reference.check("order " + order + ", update " + i, denseStream::getCoreNumber, denseStream.getDensity(), denseStream.getBlockIndices());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBackgroundBatch() {
+        final Random random = new Random(1);
+        final int cardinality = 100;
+        final DenseStream denseStream = new DenseStream(ORDER);
+        final Reference reference = new Reference(ORDER);
+        final List<int[]> inserted = new ArrayList();
+        for(int[] entry : plantedEntries(random, 5000, cardinality, 10)) {
+            denseStream.insert(entry);
+            reference.insert(entry);
+            inserted.add(entry);
+        }
+
+        for(int round = 0; round < 3; round++) {
+            assertTrue(denseStream.startBackgroundBatch());
+            int updateNum = 0;
+            while(denseStream.isBackgroundBatchRunning()) {
+                // deletions release ids, which are reused by the following insertions while the entries are being copied
+                int[] deleted = inserted.remove(random.nextInt(inserted.size()));
+                denseStream.delete(deleted);
+                reference.delete(deleted);
+                int[] entry = new int[]{random.nextInt(cardinality + 10), random.nextInt(cardinality + 10), random.nextInt(cardinality + 10), 1 + random.nextInt(3)};
+                denseStream.insert(entry);
+                reference.insert(entry);
+                inserted.add(entry);
+                updateNum++;
+            }
+            assertTrue(updateNum > 0);
+            reference.check("round " + round, denseStream::getCoreNumber, denseStream.getDensity(), denseStream.getBlockIndices());
+        }
+    }
+
+    @Test
+    public void testCatchUpAfterReorderBudget() throws InterruptedException {
+        final Random random = new Random(2);
+        final int cardinality = 100;
+        final DenseStream denseStream = new DenseStream(ORDER);
+        final Reference reference = new Reference(ORDER);
+        denseStream.setReorderBudget(5);
+        for(int round = 0; round < 3; round++) {
+            for(int[] entry : plantedEntries(random, 2000, cardinality, 5)) {
+                denseStream.insert(entry);
+                reference.insert(entry);
+            }
+            // once deferred, every update is applied without reordering until the recomputation started by the deferral replaces the ordering
+            while(denseStream.catchUp()) {
+                Thread.sleep(1);
+            }
+            assertTrue(denseStream.isDensityExact());
+            assertFalse(denseStream.isBackgroundBatchRunning());
+            reference.check("round " + round, denseStream::getCoreNumber, denseStream.getDensity(), denseStream.getBlockIndices());
+        }
+    }
+
+    @Test(timeout = 120000)
+    public void testDeferralEndsWithoutCatchUp() throws JMException, InterruptedException {
+        final Random random = new Random(8);
+        final int cardinality = 100;
+        final DenseStream denseStream = new DenseStream(ORDER);
+        final Reference reference = new Reference(ORDER);
+        final EngineStatistics statistics = denseStream.enableStatistics(null);
+        denseStream.setReorderBudget(5);
+        int isolated = cardinality + 5;
+        for(int round = 0; round < 3; round++) {
+            final long deferredNum = statistics.getDeferredNum();
+            for(int[] entry : plantedEntries(random, 2000, cardinality, 5)) {
+                denseStream.insert(entry);
+                reference.insert(entry);
+            }
+            assertTrue(statistics.getDeferredNum() > deferredNum);
+
+            // updates within the budget, which swap in the recomputation once it is ready
+            final long batchNum = statistics.getBatchNum();
+            while(!denseStream.isDensityExact()) {
+                Thread.sleep(1);
+                int[] entry = new int[]{isolated, isolated, isolated, 1};
+                denseStream.insert(entry);
+                reference.insert(entry);
+                isolated++;
+            }
+            assertEquals(batchNum, statistics.getBatchNum());
+            reference.check("round " + round, denseStream::getCoreNumber, denseStream.getDensity(), denseStream.getBlockIndices());
+        }
+    }
+
+    @Test
+    public void testExactBootstrap() {
+        checkExactBootstrap(4);
+    }
+
+    @Test
+    public void testSequentialBootstrap() {
+        checkExactBootstrap(1); // by the sequential batch algorithm
+    }
+
+    /**
+     * bootstrap from planted entries, and check the engine after the bootstrap and while deletions and insertions continue from it
+     * @param parallelism
+     */
+    private static void checkExactBootstrap(int parallelism) {
+        final Random random = new Random(3);
+        final int cardinality = 200;
+        final List<int[]> entries = plantedEntries(random, 20000, cardinality, 10);
+        final Reference reference = new Reference(ORDER);
+        for(int[] entry : entries) {
+            reference.insert(entry);
+        }
+        final DenseStream denseStream = new DenseStream(ORDER);
+        denseStream.bootstrap(entries, parallelism);
+        assertTrue(denseStream.isDensityExact());
+        reference.check("bootstrap", denseStream::getCoreNumber, denseStream.getDensity(), denseStream.getBlockIndices());
+
+        final List<int[]> inserted = new ArrayList(entries);
+        for(int i = 0; i < 500; i++) {
+            int[] entry = inserted.remove(random.nextInt(inserted.size()));
+            denseStream.delete(entry);
+            reference.delete(entry);
+            entry = new int[]{random.nextInt(cardinality + 10), random.nextInt(cardinality + 10), random.nextInt(cardinality + 10), 1};
+            denseStream.insert(entry);
+            reference.insert(entry);
+            if(i % 100 == 0) {
+                reference.check("update " + i, denseStream::getCoreNumber, denseStream.getDensity(), denseStream.getBlockIndices());
+            }
+        }
+    }
+
+    @Test
+    public void testDeleteAttribute() {
+        final Random random = new Random(4);
+        final int cardinality = 100;
+        final DenseStream denseStream = new DenseStream(ORDER);
+        final Reference reference = new Reference(ORDER);
+        for(int[] entry : plantedEntries(random, 3000, cardinality, 8)) {
+            denseStream.insert(entry);
+            reference.insert(entry);
+        }
+        // attribute values both in and out of the planted block
+        for(int id : new int[]{cardinality, cardinality + 3, 7, 42, cardinality + 3}) {
+            for(int mode = 0; mode < ORDER; mode++) {
+                denseStream.deleteAttribute(mode, id);
+                reference.deleteAttribute(mode, id);
+                assertEquals(0, denseStream.getDegree(mode, id));
+                reference.check("attribute " + id + " in mode " + mode, denseStream::getCoreNumber, denseStream.getDensity(), denseStream.getBlockIndices());
+            }
+        }
+        // a deleted attribute value appears again
+        for(int i = 0; i < 50; i++) {
+            int[] entry = new int[]{cardinality, random.nextInt(cardinality), cardinality + random.nextInt(8), 1};
+            denseStream.insert(entry);
+            reference.insert(entry);
+        }
+        reference.check("reinsertion", denseStream::getCoreNumber, denseStream.getDensity(), denseStream.getBlockIndices());
+    }
+
+    @Test
+    public void testCompaction() {
+        final Random random = new Random(5);
+        final int liveAttNum = 30;
+        final DenseStream denseStream = new DenseStream(ORDER, new int[]{20, 20, 20}, 0, false);
+        denseStream.setCompactionRatio(0.25);
+        final Reference reference = new Reference(ORDER);
+        final LinkedList<int[]> inserted = new LinkedList();
+        // the ids in use move forward, and thus the capacity grows and the indices of old ids become sparse
+        for(int start = 0; start < 600; start += 5) {
+            for(int i = 0; i < 40; i++) {
+                int[] entry = new int[]{start + random.nextInt(liveAttNum), start + random.nextInt(liveAttNum), start + random.nextInt(liveAttNum), 1};
+                denseStream.insert(entry);
+                reference.insert(entry);
+                inserted.add(entry);
+            }
+            while(inserted.size() > 400) {
+                int[] entry = inserted.poll();
+                denseStream.delete(entry);
+                reference.delete(entry);
+            }
+            if(start % 100 == 0) {
+                denseStream.compact();
+            }
+            if(start % 50 == 0) {
+                reference.check("start " + start, denseStream::getCoreNumber, denseStream.getDensity(), denseStream.getBlockIndices());
+            }
+        }
+    }
+
+    @Test
+    public void testOffHeap() {
+        // more entries than a chunk of the off-heap arena (2^16), so that the ids and the processed flags cross the chunk boundary
+        final Random random = new Random(6);
+        final int cardinality = 300;
+        final List<int[]> entries = plantedEntries(random, 70000, cardinality, 10);
+        final Reference reference = new Reference(ORDER);
+        for(int[] entry : entries) {
+            reference.insert(entry);
+        }
+        final DenseStream denseStream = new DenseStream(ORDER, true);
+        denseStream.bootstrap(entries, 1);
+        reference.check("bootstrap", denseStream::getCoreNumber, denseStream.getDensity(), denseStream.getBlockIndices());
+
+        // deletions release ids on both sides of the boundary, which the following insertions reuse
+        final List<int[]> inserted = new ArrayList(entries);
+        for(int i = 0; i < 300; i++) {
+            int[] entry = inserted.remove(random.nextInt(inserted.size()));
+            denseStream.delete(entry);
+            reference.delete(entry);
+            entry = new int[]{random.nextInt(cardinality + 10), random.nextInt(cardinality + 10), random.nextInt(cardinality + 10), 1};
+            denseStream.insert(entry);
+            reference.insert(entry);
+            inserted.add(entry);
+            if(i % 100 == 99) {
+                reference.check("update " + i, denseStream::getCoreNumber, denseStream.getDensity(), denseStream.getBlockIndices());
+            }
+        }
+    }
+
+    @Test
+    public void testEntryScoreInPlace() throws JMException {
+        // (0, 1) is removed first with (1, 1, 1), and incrementing the entry keeps it in front of the others
+        final DenseStream denseStream = new DenseStream(ORDER);
+        final Reference reference = new Reference(ORDER);
+        for(int[] entry : new int[][]{{1, 1, 1, 1}, {2, 1, 1, 3}, {0, 0, 0, 10}}) {
+            denseStream.insert(entry);
+            reference.insert(entry);
+        }
+        final EngineStatistics statistics = denseStream.enableStatistics(null);
+        final EntryScore score = new EntryScore();
+
+        int[] entry = new int[]{1, 1, 1, 1};
+        denseStream.insert(entry, score);
+        reference.insert(entry);
+        assertEquals(1, statistics.getFastPathNum());
+        assertEquals(reference.batch().getCoreNumber(0, 1), score.getCoreNumber());
+        assertEquals(2, score.getCoreNumber());
+        assertFalse(score.isInBlock());
+        reference.check("increment outside the block", denseStream::getCoreNumber, denseStream.getDensity(), denseStream.getBlockIndices());
+
+        entry = new int[]{0, 0, 0, 1};
+        denseStream.insert(entry, score);
+        reference.insert(entry);
+        assertEquals(11, score.getCoreNumber());
+        assertTrue(score.isInBlock());
+        assertEquals(11.0 / 3, denseStream.getDensity(), 1e-9);
+        reference.check("increment in the block", denseStream::getCoreNumber, denseStream.getDensity(), denseStream.getBlockIndices());
+    }
+
+    @Test
+    public void testEntryScore() throws JMException {
+        // skewed ids spread the core numbers, and thus increments of existing entries are mostly applied in place
+        final Random random = new Random(7);
+        final int cardinality = 200;
+        final DenseStream denseStream = new DenseStream(ORDER);
+        final Reference reference = new Reference(ORDER);
+        final List<int[]> inserted = new ArrayList();
+        for(int i = 0; i < 3000; i++) {
+            int[] entry = new int[]{random.nextInt(1 + random.nextInt(cardinality)), random.nextInt(1 + random.nextInt(cardinality)),
+                    random.nextInt(1 + random.nextInt(cardinality)), 1};
+            denseStream.insert(entry);
+            reference.insert(entry);
+            inserted.add(entry);
+        }
+        final EngineStatistics statistics = denseStream.enableStatistics(null);
+        final EntryScore score = new EntryScore();
+        long fastPathNum = 0;
+        long reorderNum = 0;
+        for(int i = 0; i < 300; i++) {
+            int[] entry = i % 2 == 0 ? inserted.get(random.nextInt(inserted.size()))
+                    : new int[]{random.nextInt(cardinality + 5), random.nextInt(cardinality + 5), random.nextInt(cardinality + 5), 1};
+            long prevFastPathNum = statistics.getFastPathNum();
+            denseStream.insert(entry, score);
+            reference.insert(entry);
+            if(statistics.getFastPathNum() > prevFastPathNum) {
+                fastPathNum++;
+            }
+            else {
+                reorderNum++;
+            }
+
+            Core core = reference.batch();
+            Map<Integer, int[]> block = denseStream.getBlockIndices();
+            int coreNumber = Integer.MAX_VALUE;
+            boolean isInBlock = true;
+            for(int dim = 0; dim < ORDER; dim++) {
+                coreNumber = Math.min(coreNumber, core.getCoreNumber(dim, entry[dim]));
+                final int attVal = entry[dim];
+                isInBlock &= Arrays.stream(block.get(dim)).anyMatch(id -> id == attVal);
+            }
+            assertEquals("core number of insertion " + i, coreNumber, score.getCoreNumber());
+            assertEquals("insertion " + i + " in the block", isInBlock, score.isInBlock());
+            if(i % 50 == 0) {
+                reference.check("insertion " + i, denseStream::getCoreNumber, denseStream.getDensity(), block);
+            }
+        }
+        assertTrue(fastPathNum > 0);
+        assertTrue(reorderNum > 0);
+    }
+
+    @Test
+    public void testBlockChanges() {
+        final DenseStream denseStream = new DenseStream(ORDER);
+        denseStream.insert(new int[]{7, 7, 7, 10});
+        denseStream.insert(new int[]{1, 1, 1, 1});
+        final long version = denseStream.getBlockVersion();
+        assertArrayEquals(new int[]{7}, denseStream.getBlockIndices().get(0));
+
+        // (5, 5, 5) replaces (7, 7, 7) in the block
+        denseStream.insert(new int[]{5, 5, 5, 100});
+        final BlockChanges changes = denseStream.getBlockChanges(version);
+        assertFalse(changes.isReset());
+        for(int mode = 0; mode < ORDER; mode++) {
+            assertArrayEquals(new int[]{5}, changes.getEnteredIds().get(mode));
+            assertArrayEquals(new int[]{7}, changes.getLeftIds().get(mode));
+        }
+
+        // (7, 7, 7) comes back, and thus (5, 5, 5) enters and leaves, and (7, 7, 7) leaves and enters within the interval
+        denseStream.insert(new int[]{7, 7, 7, 1000});
+        final BlockChanges netChanges = denseStream.getBlockChanges(version);
+        final BlockChanges lastChanges = denseStream.getBlockChanges(changes.getVersion());
+        assertEquals(denseStream.getBlockVersion(), netChanges.getVersion());
+        for(int mode = 0; mode < ORDER; mode++) {
+            assertEquals(0, netChanges.getEnteredIds().get(mode).length);
+            assertEquals(0, netChanges.getLeftIds().get(mode).length);
+            assertArrayEquals(new int[]{7}, lastChanges.getEnteredIds().get(mode));
+            assertArrayEquals(new int[]{5}, lastChanges.getLeftIds().get(mode));
+        }
+    }
+
+    @Test
+    public void testBlockChangesReset() {
+        final DenseStream denseStream = new DenseStream(ORDER);
+        denseStream.insert(new int[]{7, 7, 7, 10});
+        final long version = denseStream.getBlockVersion();
+
+        // the bootstrap replaces the block without logging
+        final List<int[]> entries = new ArrayList();
+        entries.add(new int[]{5, 5, 5, 100});
+        denseStream.bootstrap(entries, 1);
+        final BlockChanges changes = denseStream.getBlockChanges(version);
+        assertTrue(changes.isReset());
+        assertEquals(denseStream.getBlockVersion(), changes.getVersion());
+        assertTrue(changes.getVersion() > version);
+        assertFalse(denseStream.getBlockChanges(changes.getVersion()).isReset());
+        assertTrue(denseStream.getBlockChanges(changes.getVersion() + 1).isReset());
+
+        // once full, the log is cleared
+        final BlockChangeLog changeLog = new BlockChangeLog(1, new int[][]{{3, 4}});
+        changeLog.add(0, 0, true);
+        final long first = changeLog.getVersion();
+        for(int change = 1; change < BlockChangeLog.MAX_SIZE; change++) {
+            changeLog.add(0, change % 2, change % 2 == 0);
+        }
+        assertArrayEquals(new int[]{4}, changeLog.getChangesSince(first).getLeftIds().get(0));
+        changeLog.add(0, 1, true);
+        assertEquals(BlockChangeLog.MAX_SIZE + 1, changeLog.getVersion());
+        assertTrue(changeLog.getChangesSince(first).isReset());
+        assertFalse(changeLog.getChangesSince(BlockChangeLog.MAX_SIZE).isReset());
+    }
+
+    @Test
+    public void testBlockIteratorOverEntireTensor() {
+        // every entry of a full 2 x 2 x 2 tensor is needed for the densest block
+        final DenseStream denseStream = new DenseStream(ORDER);
+        final int[] ids = new int[]{9, 4};
+        for(int i : ids) {
+            for(int j : ids) {
+                for(int k : ids) {
+                    denseStream.insert(new int[]{i, j, k, 1});
+                }
+            }
+        }
+        assertEquals(8.0 / 6, denseStream.getDensity(), 1e-9);
+        for(int mode = 0; mode < ORDER; mode++) {
+            List<Integer> iterated = new ArrayList();
+            PrimitiveIterator.OfInt iterator = denseStream.getBlockIterator(mode);
+            while(iterator.hasNext()) {
+                iterated.add(iterator.nextInt());
+            }
+            Collections.sort(iterated);
+            assertEquals(Arrays.asList(4, 9), iterated);
+            int[] block = denseStream.getBlockIndices().get(mode).clone();
+            Arrays.sort(block);
+            assertArrayEquals(new int[]{4, 9}, block);
+        }
+        try {
+            PrimitiveIterator.OfInt iterator = denseStream.getBlockIterator(0);
+            iterator.nextInt();
+            iterator.nextInt();
+            iterator.nextInt();
+            fail();
+        }
+        catch(NoSuchElementException e) {
+        }
+    }
+}
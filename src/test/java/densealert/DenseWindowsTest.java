@@ -0,0 +1,88 @@
+/* =================================================================================
+ *
+ * DenseAlert: Incremental Dense-Block Detection in Tensor Streams
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: Oct 24, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+
+package densealert;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of DenseWindows against the ordering of the entries in each window computed from scratch
+ * @author kijungs
+ */
+public class DenseWindowsTest {
+
+    private static final int ORDER = 3;
+
+    /**
+     * insert a random stream, and check the block of each window against the entries inserted within it
+     * @param size
+     * @param slide
+     * @param isOffHeap
+     */
+    private static void checkWindows(int size, int slide, boolean isOffHeap) {
+        final Random random = new Random(size * 31 + slide);
+        final int cardinality = 50;
+        final List<Pair<Long, int[]>> stream = new ArrayList();
+        for(long timestamp = 0; timestamp < 200; timestamp++) {
+            final boolean isBurst = timestamp >= 60 && timestamp < 70;
+            final int entryNum = isBurst ? 30 : random.nextInt(8);
+            for(int i = 0; i < entryNum; i++) {
+                stream.add(new Pair<Long, int[]>(timestamp, isBurst
+                        ? new int[]{cardinality + random.nextInt(4), cardinality + random.nextInt(4), cardinality + random.nextInt(4), 1}
+                        : new int[]{random.nextInt(cardinality), random.nextInt(cardinality), random.nextInt(cardinality), 1 + random.nextInt(2)}));
+            }
+        }
+
+        final List<WindowResult> results = new ArrayList();
+        final DenseWindows denseWindows = new DenseWindows(ORDER, size, slide, results::add, isOffHeap);
+        for(Pair<Long, int[]> timestampAndEntry : stream) {
+            denseWindows.insert(timestampAndEntry.getValue(), timestampAndEntry.getKey());
+        }
+        denseWindows.advanceTime(200 + size);
+
+        assertFalse(results.isEmpty());
+        for(WindowResult result : results) {
+            final Reference reference = new Reference(ORDER);
+            for(Pair<Long, int[]> timestampAndEntry : stream) {
+                if(timestampAndEntry.getKey() >= result.getStart() && timestampAndEntry.getKey() < result.getEnd()) {
+                    reference.insert(timestampAndEntry.getValue());
+                }
+            }
+            final String message = "window [" + result.getStart() + ", " + result.getEnd() + ")";
+            assertTrue(message + " is empty", reference.getMass() > 0);
+            reference.check(message, null, result.getDensity(), result.getBlockIds());
+        }
+    }
+
+    @Test
+    public void testTumblingWindows() {
+        checkWindows(20, 20, false);
+    }
+
+    @Test
+    public void testHoppingWindows() {
+        checkWindows(20, 5, false);
+    }
+
+    @Test
+    public void testOffHeapWindows() {
+        checkWindows(20, 5, true); // the entries of each window are dropped at once by resetting the arena, and their ids are reused
+    }
+}
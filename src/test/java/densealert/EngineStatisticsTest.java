@@ -0,0 +1,52 @@
+/* =================================================================================
+ *
+ * DenseAlert: Incremental Dense-Block Detection in Tensor Streams
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: Oct 24, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+
+package densealert;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of EngineStatistics
+ * @author kijungs
+ */
+public class EngineStatisticsTest {
+
+    @Test
+    public void testReset() {
+        final EngineStatistics statistics = new EngineStatistics();
+        statistics.record(true, false, false, false, 5, 2, 1, 3, 7);
+        statistics.record(false, true, false, false, 1, 1, 0, 0, 2);
+        statistics.reset();
+        assertEquals(0, statistics.getInsertNum());
+        assertEquals(0, statistics.getBatchNum());
+        assertEquals(0, statistics.getTraversedColNum());
+        assertEquals(0, statistics.getMaxTraversedColNum());
+
+        // counted from the reset, and the maxima only over the updates after it
+        statistics.record(true, false, true, false, 1, 0, 0, 0, 3);
+        statistics.recordBatchDeletion(4);
+        assertEquals(1, statistics.getInsertNum());
+        assertEquals(4, statistics.getDeleteNum());
+        assertEquals(1, statistics.getBatchNum());
+        assertEquals(1, statistics.getFastPathNum());
+        assertEquals(1, statistics.getWideRangeAttNum());
+        assertEquals(3, statistics.getTraversedColNum());
+        assertEquals(1, statistics.getMaxWideRangeAttNum());
+        assertEquals(3, statistics.getMaxTraversedColNum());
+    }
+}
@@ -0,0 +1,91 @@
+/* =================================================================================
+ *
+ * DenseAlert: Incremental Dense-Block Detection in Tensor Streams
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: Oct 24, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+
+package densealert;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the off-heap entry arena against the heap one, across the boundaries of the off-heap chunks (2^16 entries each)
+ * @author kijungs
+ */
+public class EntryArenaTest {
+
+    private static final int ORDER = 3;
+
+    // more than two chunks
+    private static final int ENTRY_NUM = (1 << 17) + 100;
+
+    private static void fill(EntryArena arena, int id) {
+        for(int field = 0; field < arena.stride; field++) {
+            arena.set(id, field, id * 31 + field);
+        }
+        arena.setProcessed(id, id % 3 == 0);
+    }
+
+    private static void assertSame(EntryArena expected, EntryArena actual, int id) {
+        for(int field = 0; field < expected.stride; field++) {
+            assertEquals("field " + field + " of " + id, expected.get(id, field), actual.get(id, field));
+        }
+        assertEquals("processed flag of " + id, expected.isProcessed(id), actual.isProcessed(id));
+    }
+
+    @Test
+    public void testOffHeapArena() {
+        final EntryArena heap = EntryArena.create(ORDER, false);
+        final EntryArena offHeap = EntryArena.create(ORDER, true);
+        for(int i = 0; i < ENTRY_NUM; i++) {
+            assertEquals(heap.allocate(), offHeap.allocate());
+            fill(heap, i);
+            fill(offHeap, i);
+        }
+        for(int id = 0; id < ENTRY_NUM; id++) {
+            assertSame(heap, offHeap, id);
+        }
+
+        // released ids around the chunk boundaries, reused in the reverse order of release
+        final int[] releasedIds = {0, (1 << 16) - 1, 1 << 16, (1 << 17) - 1, 1 << 17, ENTRY_NUM - 1};
+        for(int id : releasedIds) {
+            heap.release(id);
+            offHeap.release(id);
+            assertTrue(offHeap.isReleased(id));
+        }
+        assertEquals(ENTRY_NUM - releasedIds.length, offHeap.getEntryNum());
+        for(int i = releasedIds.length - 1; i >= 0; i--) {
+            final int id = offHeap.allocate();
+            assertEquals(releasedIds[i], id);
+            assertEquals(heap.allocate(), id);
+            assertFalse(offHeap.isProcessed(id));
+            for(int field = 0; field < offHeap.stride; field++) {
+                assertEquals(0, offHeap.get(id, field));
+            }
+        }
+
+        // after reset, ids start from zero again and hold no field or flag of the dropped entries
+        heap.reset();
+        offHeap.reset();
+        assertEquals(0, offHeap.getEntryNum());
+        for(int i = 0; i < (1 << 16) + 10; i++) {
+            final int id = offHeap.allocate();
+            assertEquals(i, id);
+            assertEquals(heap.allocate(), id);
+            assertFalse(offHeap.isProcessed(id));
+            assertEquals(0, offHeap.get(id, ORDER));
+        }
+    }
+}
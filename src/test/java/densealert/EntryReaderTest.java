@@ -0,0 +1,75 @@
+/* =================================================================================
+ *
+ * DenseAlert: Incremental Dense-Block Detection in Tensor Streams
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: Oct 24, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+
+package densealert;
+
+import org.junit.Test;
+
+import java.io.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of EntryReader
+ * @author kijungs
+ */
+public class EntryReaderTest {
+
+    private static byte[] binaryRecords(int[][] entries, long[] timestamps) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        for(int i = 0; i < entries.length; i++) {
+            for(int value : entries[i]) {
+                output.writeInt(value);
+            }
+            output.writeLong(timestamps[i]);
+        }
+        output.close();
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void testBinaryRecords() throws IOException {
+        byte[] bytes = binaryRecords(new int[][]{{1, 2, 3, 4}, {-5, 70000, 0, 1}}, new long[]{10, Long.MAX_VALUE});
+        EntryReader reader = new EntryReader(new ByteArrayInputStream(bytes), EntryReader.BINARY, ",", 3);
+        int[] entry = new int[4];
+        assertTrue(reader.read(entry));
+        assertArrayEquals(new int[]{1, 2, 3, 4}, entry);
+        assertEquals(10, reader.getTimestamp());
+        assertTrue(reader.read(entry));
+        assertArrayEquals(new int[]{-5, 70000, 0, 1}, entry);
+        assertEquals(Long.MAX_VALUE, reader.getTimestamp());
+        assertFalse(reader.read(entry));
+    }
+
+    @Test
+    public void testTruncatedBinaryRecord() throws IOException {
+        byte[] bytes = binaryRecords(new int[][]{{1, 2, 3, 4}, {5, 6, 7, 8}}, new long[]{10, 20});
+        for(int length : new int[]{bytes.length - 1, bytes.length - 8, bytes.length - 23}) {
+            byte[] truncated = new byte[length];
+            System.arraycopy(bytes, 0, truncated, 0, length);
+            EntryReader reader = new EntryReader(new ByteArrayInputStream(truncated), EntryReader.BINARY, ",", 3);
+            int[] entry = new int[4];
+            assertTrue(reader.read(entry));
+            try {
+                reader.read(entry);
+                fail("a truncated record of " + (length - bytes.length / 2) + " bytes was accepted");
+            } catch (IOException e) {
+                // expected
+            }
+        }
+    }
+}
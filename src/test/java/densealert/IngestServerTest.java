@@ -0,0 +1,224 @@
+/* =================================================================================
+ *
+ * DenseAlert: Incremental Dense-Block Detection in Tensor Streams
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: Oct 24, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+
+package densealert;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of IngestServer through connections on the loopback address
+ * @author kijungs
+ */
+public class IngestServerTest {
+
+    private static final int ORDER = 3;
+
+    private static List<int[]> entries(Random random, int entryNum, int cardinality) {
+        List<int[]> entries = new ArrayList();
+        for(int i = 0; i < entryNum; i++) {
+            entries.add(new int[]{random.nextInt(cardinality), random.nextInt(cardinality), random.nextInt(cardinality), 1 + random.nextInt(3)});
+        }
+        return entries;
+    }
+
+    private static byte[] encode(List<int[]> entries, String format) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        if(EntryReader.BINARY.equals(format)) {
+            DataOutputStream output = new DataOutputStream(bytes);
+            for(int i = 0; i < entries.size(); i++) {
+                for(int value : entries.get(i)) {
+                    output.writeInt(value);
+                }
+                output.writeLong(i);
+            }
+            output.close();
+        }
+        else {
+            PrintWriter output = new PrintWriter(bytes);
+            for(int i = 0; i < entries.size(); i++) {
+                int[] entry = entries.get(i);
+                output.println(entry[0] + "," + entry[1] + "," + entry[2] + "," + entry[3] + "," + i);
+            }
+            output.close();
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * send the given bytes through a new connection, and return the reply
+     */
+    private static String send(int port, byte[] bytes) throws IOException {
+        try(Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            OutputStream output = socket.getOutputStream();
+            output.write(bytes);
+            output.flush();
+            socket.shutdownOutput();
+            return new BufferedReader(new InputStreamReader(socket.getInputStream())).readLine();
+        }
+    }
+
+    @Test
+    public void testText() throws IOException {
+        checkReply(EntryReader.TEXT);
+    }
+
+    @Test
+    public void testBinary() throws IOException {
+        checkReply(EntryReader.BINARY);
+    }
+
+    /**
+     * the reply of each connection should match a DenseStream fed the same entries
+     */
+    private static void checkReply(String format) throws IOException {
+        final Random random = new Random(0);
+        final DenseStream expected = new DenseStream(ORDER);
+        final IngestServer server = new IngestServer(new DenseStream(ORDER), ORDER, format, ",", 4);
+        final int port = server.start(0);
+        try {
+            long entryNum = 0;
+            for(int connection = 0; connection < 3; connection++) {
+                // more than a chunk of entries
+                List<int[]> entries = entries(random, 1500, 30);
+                for(int[] entry : entries) {
+                    expected.insert(entry);
+                }
+                entryNum += entries.size();
+                String[] tokens = send(port, encode(entries, format)).split(" ");
+                assertEquals("OK", tokens[0]);
+                assertEquals(entries.size(), Integer.parseInt(tokens[1]));
+                assertEquals(expected.getDensity(), Double.parseDouble(tokens[2]), 0);
+                assertEquals(entryNum, server.getReceivedNum());
+                assertEquals(entryNum, server.getProcessedNum());
+            }
+            assertTrue(send(port, "1,2\n".getBytes()).startsWith("ERROR"));
+        }
+        finally {
+            server.close();
+        }
+        assertNull(server.getError());
+    }
+
+    @Test(timeout = 120000)
+    public void testBackpressure() throws Exception {
+        // the writer thread is held by the alert sink at the first alert
+        final CountDownLatch release = new CountDownLatch(1);
+        final DenseStream denseStream = new DenseStream(ORDER);
+        denseStream.setAlertSink(new AlertSink() {
+            @Override
+            public void accept(BlockAlert alert) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        final IngestServer server = new IngestServer(denseStream, ORDER, EntryReader.BINARY, ",", 1);
+        final int port = server.start(0);
+        try {
+            // more bytes than the socket buffers hold, of sparse entries around a small block, which are cheap to insert
+            final Random random = new Random(1);
+            final List<int[]> entries = new ArrayList();
+            for(int i = 0; i < 1 << 15; i++) {
+                entries.add(i % 8 == 0 ? new int[]{random.nextInt(5), random.nextInt(5), random.nextInt(5), 1}
+                        : new int[]{5 + random.nextInt(100000), 5 + random.nextInt(100000), 5 + random.nextInt(100000), 1});
+            }
+            final byte[] bytes = encode(entries, EntryReader.BINARY);
+            final CountDownLatch written = new CountDownLatch(1);
+            final String[] reply = new String[1];
+            final Thread sender = new Thread() {
+                @Override
+                public void run() {
+                    try(Socket socket = new Socket()) {
+                        socket.setSendBufferSize(1 << 12);
+                        socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+                        OutputStream output = socket.getOutputStream();
+                        output.write(bytes);
+                        output.flush();
+                        socket.shutdownOutput();
+                        written.countDown();
+                        reply[0] = new BufferedReader(new InputStreamReader(socket.getInputStream())).readLine();
+                    } catch (IOException e) {
+                        reply[0] = e.toString();
+                    }
+                }
+            };
+            sender.start();
+
+            while(server.getBlockedNum() == 0) {
+                Thread.sleep(1);
+            }
+            // the queue holds a single chunk (and the writer thread another one at most), and the connection stops reading
+            assertFalse(written.await(500, TimeUnit.MILLISECONDS));
+            assertEquals(0, server.getProcessedNum());
+            assertTrue(server.getReceivedNum() <= 2 * 1024);
+
+            release.countDown();
+            sender.join();
+            final DenseStream expected = new DenseStream(ORDER);
+            for(int[] entry : entries) {
+                expected.insert(entry);
+            }
+            assertEquals("OK " + entries.size() + " " + expected.getDensity(), reply[0]);
+            assertEquals(entries.size(), server.getProcessedNum());
+            assertTrue(server.getBlockedNum() > 0);
+        }
+        finally {
+            release.countDown();
+            server.close();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testEngineFailure() throws Exception {
+        // the engine throws at the first insertion, after which the server should neither process entries nor hang
+        final DenseStream denseStream = new DenseStream(ORDER);
+        denseStream.setAlertSink(new AlertSink() {
+            @Override
+            public void accept(BlockAlert alert) {
+                if(alert.getDensity() > 0) { // not the empty block sent while idle
+                    throw new IllegalStateException("injected");
+                }
+            }
+        });
+        final IngestServer server = new IngestServer(denseStream, ORDER, EntryReader.TEXT, ",", 1);
+        final int port = server.start(0);
+        // a single chunk, which the connection waits for
+        final byte[] bytes = encode(entries(new Random(2), 500, 10), EntryReader.TEXT);
+        final String reply = send(port, bytes);
+        assertTrue(reply, reply.startsWith("ERROR engine failed"));
+        assertTrue(server.getError() instanceof IllegalStateException);
+        assertEquals(0, server.getProcessedNum());
+        try {
+            send(port, bytes);
+            fail("a connection was accepted after the engine failed");
+        } catch (IOException e) {
+            // refused
+        }
+        server.close();
+    }
+}
@@ -0,0 +1,134 @@
+/* =================================================================================
+ *
+ * DenseAlert: Incremental Dense-Block Detection in Tensor Streams
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: Oct 24, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+
+package densealert;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of LatencyHistogram
+ * @author kijungs
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void testExactSmallValues() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for(long value = 1; value <= 200; value++) {
+            histogram.record(value);
+        }
+        assertEquals(200, histogram.getTotalCount());
+        assertEquals(200, histogram.getMax());
+        assertEquals(100.5, histogram.getMean(), 1e-9);
+        assertEquals(1, histogram.getValueAtPercentile(0));
+        assertEquals(100, histogram.getValueAtPercentile(50));
+        assertEquals(198, histogram.getValueAtPercentile(99));
+        assertEquals(200, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testBucketEdges() {
+        // a power of two starts a bucket, and the value below it ends the previous one
+        final long large = (1L << 42) - 1; // the largest trackable value
+        for(int bits = 8; bits < 42; bits++) {
+            final long powerOfTwo = 1L << bits;
+            final long bucketWidth = 1L << (bits - 7);
+
+            LatencyHistogram histogram = new LatencyHistogram();
+            histogram.record(powerOfTwo - 1);
+            histogram.record(large);
+            assertEquals("below 2^" + bits, powerOfTwo - 1, histogram.getValueAtPercentile(50));
+
+            histogram = new LatencyHistogram();
+            histogram.record(powerOfTwo);
+            histogram.record(large);
+            assertEquals("at 2^" + bits, powerOfTwo + bucketWidth - 1, histogram.getValueAtPercentile(50));
+            assertTrue("relative error at 2^" + bits, bucketWidth - 1 < 0.01 * powerOfTwo);
+
+            histogram = new LatencyHistogram();
+            histogram.record(powerOfTwo + bucketWidth - 1);
+            histogram.record(powerOfTwo + bucketWidth);
+            histogram.record(large);
+            assertEquals("last value of the first bucket at 2^" + bits, powerOfTwo + bucketWidth - 1, histogram.getValueAtPercentile(33));
+            assertEquals("first value of the second bucket at 2^" + bits, powerOfTwo + 2 * bucketWidth - 1, histogram.getValueAtPercentile(66));
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for(long value = 1; value <= 100000; value++) {
+            histogram.record(value * 1000);
+        }
+        for(double percentile : new double[]{10, 50, 90, 99, 99.9}) {
+            long expected = (long) Math.ceil(percentile * 1000) * 1000;
+            long value = histogram.getValueAtPercentile(percentile);
+            assertTrue(percentile + "th percentile " + value + " below " + expected, value >= expected);
+            assertTrue(percentile + "th percentile " + value + " too far above " + expected, value < expected * 1.01);
+        }
+        assertEquals(100000000L, histogram.getValueAtPercentile(100)); // the maximum rather than the end of its bucket
+    }
+
+    @Test
+    public void testOutOfRangeValues() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(2, histogram.getTotalCount());
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        assertEquals((1L << 42) - 1, histogram.getMax());
+        assertEquals((1L << 42) - 1, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testAddAndReset() {
+        final LatencyHistogram first = new LatencyHistogram();
+        final LatencyHistogram second = new LatencyHistogram();
+        for(long value = 1; value <= 100; value++) {
+            first.record(value);
+            second.record(value + 100);
+        }
+        first.add(second);
+        assertEquals(200, first.getTotalCount());
+        assertEquals(200, first.getMax());
+        assertEquals(100, first.getValueAtPercentile(50));
+        first.reset();
+        assertEquals(0, first.getTotalCount());
+        assertEquals(0, first.getMax());
+        assertEquals(0, first.getValueAtPercentile(50));
+    }
+
+    @Test
+    public void testPercentileDistribution() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for(long value = 1; value <= 4; value++) {
+            histogram.record(value * 1000);
+        }
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        histogram.outputPercentileDistribution(new PrintStream(bytes), 1000.0);
+        final String[] lines = bytes.toString().split("\n");
+        // header, blank line, one line per non-empty bucket, and three summary lines
+        assertEquals(2 + 4 + 3, lines.length);
+        assertTrue(lines[2], lines[2].trim().startsWith("1.003 0.250000000000"));
+        assertTrue(lines[5], lines[5].trim().startsWith("4.000 1.000000000000"));
+        assertTrue(lines[7], lines[7].contains("Max     =        4.000") && lines[7].contains("Total count    =            4"));
+    }
+}
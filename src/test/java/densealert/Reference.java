@@ -0,0 +1,167 @@
+/* =================================================================================
+ *
+ * DenseAlert: Incremental Dense-Block Detection in Tensor Streams
+ * Authors: Kijung Shin, Bryan Hooi, Jisu Kim, and Christos Faloutsos
+ *
+ * Version: 1.0
+ * Date: Oct 24, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+
+package densealert;
+
+import java.util.*;
+import java.util.function.IntBinaryOperator;
+
+import static org.junit.Assert.*;
+
+/**
+ * Entries of a stream kept aside from an engine, and the block computed from them from scratch by batch(),
+ * against which the results of the engine are checked
+ * Ids are used as indices, so they should be small non-negative integers.
+ * @author kijungs
+ */
+class Reference {
+
+    private final int order;
+
+    // (i_{1}, i_{2}, ..., i_{N}) -> value
+    private final HashMap<List<Integer>, Integer> entryToValue = new HashMap();
+
+    Reference(int order) {
+        this.order = order;
+    }
+
+    void insert(int[] entry) {
+        if(entry[order] != 0) {
+            entryToValue.merge(key(entry), entry[order], Integer::sum);
+        }
+    }
+
+    void delete(int[] entry) {
+        List<Integer> key = key(entry);
+        Integer value = entryToValue.get(key);
+        if(value == null || entry[order] == 0) {
+            return;
+        }
+        if(value <= entry[order]) {
+            entryToValue.remove(key);
+        }
+        else {
+            entryToValue.put(key, value - entry[order]);
+        }
+    }
+
+    void deleteAttribute(int mode, int id) {
+        entryToValue.keySet().removeIf(key -> key.get(mode) == id);
+    }
+
+    void clear() {
+        entryToValue.clear();
+    }
+
+    long getMass() {
+        long mass = 0;
+        for(int value : entryToValue.values()) {
+            mass += value;
+        }
+        return mass;
+    }
+
+    /**
+     * compute the ordering of the current entries from scratch
+     * @return
+     */
+    Core batch() {
+        int[] modeToIndicesNum = new int[order];
+        for(List<Integer> key : entryToValue.keySet()) {
+            for(int dim = 0; dim < order; dim++) {
+                modeToIndicesNum[dim] = Math.max(modeToIndicesNum[dim], key.get(dim) + 1);
+            }
+        }
+        TensorFull tensor = new TensorFull(order, modeToIndicesNum);
+        for(Map.Entry<List<Integer>, Integer> entryAndValue : entryToValue.entrySet()) {
+            int[] entry = new int[order + 1];
+            for(int dim = 0; dim < order; dim++) {
+                entry[dim] = entryAndValue.getKey().get(dim);
+            }
+            entry[order] = entryAndValue.getValue();
+            tensor.insert(entry);
+        }
+        return new Core(tensor);
+    }
+
+    /**
+     * compute the density of a block from the current entries
+     * @param block mode -> ids
+     * @return
+     */
+    double getDensity(Map<Integer, int[]> block) {
+        List<Set<Integer>> modeToIds = new ArrayList();
+        int attNum = 0;
+        for(int dim = 0; dim < order; dim++) {
+            Set<Integer> ids = new HashSet();
+            for(int id : block.get(dim)) {
+                ids.add(id);
+            }
+            modeToIds.add(ids);
+            attNum += ids.size();
+        }
+        long mass = 0;
+        for(Map.Entry<List<Integer>, Integer> entryAndValue : entryToValue.entrySet()) {
+            boolean isInBlock = true;
+            for(int dim = 0; dim < order && isInBlock; dim++) {
+                isInBlock = modeToIds.get(dim).contains(entryAndValue.getKey().get(dim));
+            }
+            if(isInBlock) {
+                mass += entryAndValue.getValue();
+            }
+        }
+        return attNum == 0 ? 0 : ((double) mass) / attNum;
+    }
+
+    /**
+     * check the results of an engine against the ordering computed from scratch:
+     * the core numbers should be equal (they do not depend on how ties are broken), the density should be that of the reported block,
+     * and it should be at least 1/N of the maximum core number
+     * @param message
+     * @param coreNumbers mode, id -> core number reported by the engine (null if the engine does not report them)
+     * @param density density reported by the engine
+     * @param block block reported by the engine
+     */
+    void check(String message, IntBinaryOperator coreNumbers, double density, Map<Integer, int[]> block) {
+        Core core = batch();
+        int maxCoreNumber = 0;
+        for(List<Integer> key : entryToValue.keySet()) {
+            for(int dim = 0; dim < order; dim++) {
+                int expected = core.getCoreNumber(dim, key.get(dim));
+                if(coreNumbers != null) {
+                    assertEquals(message + ": core number of " + key.get(dim) + " in mode " + dim,
+                            expected, coreNumbers.applyAsInt(dim, key.get(dim)));
+                }
+                maxCoreNumber = Math.max(maxCoreNumber, expected);
+            }
+        }
+        if(entryToValue.isEmpty()) {
+            assertEquals(message + ": density of an empty tensor", 0, density, 0);
+            return;
+        }
+        assertEquals(message + ": density of the reported block", getDensity(block), density, 1e-9 * density);
+        assertTrue(message + ": density " + density + " below the maximum core number " + maxCoreNumber,
+                density * order >= maxCoreNumber - 1e-9);
+    }
+
+    private List<Integer> key(int[] entry) {
+        List<Integer> key = new ArrayList(order);
+        for(int dim = 0; dim < order; dim++) {
+            key.add(entry[dim]);
+        }
+        return key;
+    }
+}